@@ -0,0 +1,103 @@
+package com.erp.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and garbage per amount on the import and aggregation paths: {@link Money#parseUnits} on the CSV bytes
+ * against {@code new BigDecimal(String)} on split fields, and summing long cents against summing BigDecimals
+ * exactly or through {@code doubleValue()}. Run with the gc profiler for the B/op figures.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="MoneyBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(MoneyBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class MoneyBenchmark {
+    
+    static final int ROWS = 100_000;
+    
+    private byte[] bytes;
+    private int[] starts;
+    private int[] ends;
+    private String[] fields;
+    private long[] units;
+    private BigDecimal[] decimals;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        starts = new int[ROWS];
+        ends = new int[ROWS];
+        fields = new String[ROWS];
+        units = new long[ROWS];
+        decimals = new BigDecimal[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            long cents = 1_000 + random.nextInt(10_000_000);
+            String field = BigDecimal.valueOf(cents, 2).toPlainString();
+            starts[i] = text.length();
+            text.append(field);
+            ends[i] = text.length();
+            text.append(',');
+            fields[i] = field;
+            units[i] = cents;
+            decimals[i] = new BigDecimal(field);
+        }
+        bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    @Benchmark
+    public long parseUnits() {
+        long total = 0;
+        for (int i = 0; i < ROWS; i++) {
+            total += Money.parseUnits(bytes, starts[i], ends[i], Money.DEFAULT_SCALE);
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ROWS; i++) {
+            total = total.add(new BigDecimal(fields[i]));
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public long sumUnits() {
+        long total = 0;
+        for (int i = 0; i < ROWS; i++) {
+            total = Math.addExact(total, units[i]);
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ROWS; i++) {
+            total = total.add(decimals[i]);
+        }
+        return total;
+    }
+    
+    // Inexact: the analytics sums before Money
+    @Benchmark
+    public double sumDoubleValue() {
+        double total = 0;
+        for (int i = 0; i < ROWS; i++) {
+            total += decimals[i].doubleValue();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,120 @@
+package com.erp.service;
+
+import com.erp.entity.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revenue, cost, profit and count per department over row-level data: {@link ParallelAggregator} over
+ * columns of cents against the original per-row {@code HashMap<String, Double>} accumulation over entities
+ * (TransactionController's department performance before the column store).
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="AggregationBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AggregationBenchmark {
+    
+    private static final String[] DEPARTMENTS = {"Sales", "Marketing", "Finance", "Operations", "IT", "HR", "Legal", "Support"};
+    
+    @State(Scope.Benchmark)
+    public static class Columns {
+        @Param({"1000000", "10000000"})
+        int rows;
+        
+        long[] revenue;
+        long[] cost;
+        long[] profit;
+        short[] department;
+        
+        @Setup(Level.Trial)
+        public void fill() {
+            Random random = new Random(42);
+            revenue = new long[rows];
+            cost = new long[rows];
+            profit = new long[rows];
+            department = new short[rows];
+            for (int i = 0; i < rows; i++) {
+                revenue[i] = 1_000 + random.nextInt(10_000_000);
+                cost[i] = revenue[i] * random.nextInt(90) / 100;
+                profit[i] = revenue[i] - cost[i];
+                department[i] = (short) random.nextInt(DEPARTMENTS.length);
+            }
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class Rows {
+        @Param({"1000000", "10000000"})
+        int rows;
+        
+        List<Transaction> transactions;
+        
+        @Setup(Level.Trial)
+        public void fill() {
+            Random random = new Random(42);
+            LocalDate start = LocalDate.of(2023, 1, 1);
+            transactions = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                long revenue = 1_000 + random.nextInt(10_000_000);
+                long cost = revenue * random.nextInt(90) / 100;
+                Transaction transaction = new Transaction();
+                transaction.setTransactionDate(start.plusDays(i % 1000));
+                transaction.setRevenueUnits(revenue);
+                transaction.setCostUnits(cost);
+                transaction.setProfitUnits(revenue - cost);
+                transaction.setDepartment(DEPARTMENTS[random.nextInt(DEPARTMENTS.length)]);
+                transactions.add(transaction);
+            }
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class Aggregator {
+        @Param({"1", "4", "8"})
+        int parallelism;
+        
+        ParallelAggregator aggregator;
+        
+        @Setup(Level.Trial)
+        public void start() {
+            aggregator = new ParallelAggregator(parallelism, 65536);
+        }
+        
+        @TearDown(Level.Trial)
+        public void stop() {
+            aggregator.shutdown();
+        }
+    }
+    
+    @Benchmark
+    public AnalyticsAccumulator[] accumulators(Columns c, Aggregator a) {
+        return a.aggregator.aggregate(0, c.rows, DEPARTMENTS.length, (from, to, groups) -> {
+            for (int i = from; i < to; i++) {
+                groups[c.department[i]].add(c.revenue[i], c.cost[i], c.profit[i]);
+            }
+        });
+    }
+    
+    @Benchmark
+    public Map<String, Map<String, Double>> boxedMaps(Rows r) {
+        Map<String, Map<String, Double>> deptMetrics = new HashMap<>();
+        r.transactions.forEach(t -> {
+            String dept = t.getDepartment();
+            deptMetrics.putIfAbsent(dept, new HashMap<>());
+            Map<String, Double> metrics = deptMetrics.get(dept);
+            
+            metrics.put("revenue", metrics.getOrDefault("revenue", 0.0) + t.getRevenue().doubleValue());
+            metrics.put("profit", metrics.getOrDefault("profit", 0.0) + t.getProfit().doubleValue());
+            metrics.put("cost", metrics.getOrDefault("cost", 0.0) + t.getCost().doubleValue());
+            metrics.put("count", metrics.getOrDefault("count", 0.0) + 1);
+        });
+        return deptMetrics;
+    }
+}
@@ -0,0 +1,151 @@
+package com.erp.service;
+
+import com.erp.entity.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second turning a transactions CSV into entities: {@link MappedCsvReader} with {@link CsvTokenizer}
+ * on 1, 4 and 8 parser threads against the original {@code BufferedReader} and {@code String.split} path
+ * (parseCSVDirectly before the tokenizer, amounts now stored as cents by the entity). The plain file has no
+ * quoted fields, so both read it the same way; {@code quoted} reads a copy whose customer names are quoted and
+ * hold a delimiter and a doubled quote, which {@code split} cannot parse.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="CsvParseBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(CsvParseBenchmark.ROWS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CsvParseBenchmark {
+    
+    static final int ROWS = 1_000_000;
+    
+    private Path file;
+    private Path quotedFile;
+    
+    @State(Scope.Benchmark)
+    public static class Parsers {
+        @Param({"1", "4", "8"})
+        int threads;
+        
+        ExecutorService executor;
+        
+        @Setup(Level.Trial)
+        public void start() {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        
+        @TearDown(Level.Trial)
+        public void stop() {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = write(false);
+        quotedFile = write(true);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(quotedFile);
+    }
+    
+    @Benchmark
+    public void mapped(Parsers parsers, Blackhole blackhole) throws IOException {
+        read(file, parsers, blackhole);
+    }
+    
+    @Benchmark
+    public void quoted(Parsers parsers, Blackhole blackhole) throws IOException {
+        read(quotedFile, parsers, blackhole);
+    }
+    
+    // Single threaded; compare with mapped at threads=1
+    @Benchmark
+    public void split(Blackhole blackhole) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(Files.newInputStream(file)))) {
+            String line;
+            boolean isFirstLine = true;
+            
+            while ((line = br.readLine()) != null) {
+                if (isFirstLine) {
+                    isFirstLine = false;
+                    continue; // Skip header
+                }
+                
+                String[] values = line.split(",");
+                if (values.length >= 10) {
+                    Transaction transaction = new Transaction();
+                    transaction.setTransactionDate(LocalDate.parse(values[0], DateTimeFormatter.ISO_DATE));
+                    transaction.setCustomerName(values[1]);
+                    transaction.setTransactionType(values[2]);
+                    transaction.setRevenue(new BigDecimal(values[3]));
+                    transaction.setCost(new BigDecimal(values[4]));
+                    transaction.setProduct(values[5]);
+                    transaction.setOrderStatus(values[6]);
+                    transaction.setDepartment(values[7]);
+                    transaction.setProfit(new BigDecimal(values[8]));
+                    transaction.setForecastedRevenue(new BigDecimal(values[9]));
+                    
+                    blackhole.consume(transaction);
+                }
+            }
+        }
+    }
+    
+    private static void read(Path path, Parsers parsers, Blackhole blackhole) throws IOException {
+        try (MappedCsvReader<Transaction> reader = MappedCsvReader.open(path, parsers.executor, parsers.threads, ',',
+                5000, 100, DataImportService::createTransaction)) {
+            List<Transaction> chunk;
+            while ((chunk = reader.nextChunk()) != null) {
+                blackhole.consume(chunk);
+            }
+        }
+    }
+    
+    private static Path write(boolean quoted) throws IOException {
+        Path path = Files.createTempFile("csv-parse-benchmark", ".csv");
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("transaction_date,customer_name,transaction_type,revenue,cost,product,order_status,department,profit,forecasted_revenue\n");
+            for (int i = 0; i < ROWS; i++) {
+                long revenue = 1_000 + random.nextInt(10_000_000);
+                long cost = revenue * random.nextInt(90) / 100;
+                int customer = random.nextInt(50_000);
+                String name = quoted ? "\"Customer \"\"" + customer + "\"\", Ltd\"" : "Customer_" + customer;
+                out.write(start.plusDays(i % 1000) + "," + name + ",Sale,"
+                        + cents(revenue) + "," + cents(cost) + ",Product_" + random.nextInt(500) + ",Completed,Sales,"
+                        + cents(revenue - cost) + "," + cents(revenue) + "\n");
+            }
+        }
+        return path;
+    }
+    
+    private static String cents(long units) {
+        return BigDecimal.valueOf(units, 2).toPlainString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.erp.config;
+
+import com.erp.service.AnalyticsCache;
+import io.lettuce.core.ClientOptions;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class AnalyticsCacheConfig {
+    
+    // Fail fast while Redis is unreachable instead of queueing commands until they time out;
+    // the analytics cache falls back to its local tier
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer rejectCommandsWhileDisconnected() {
+        return builder -> builder.clientOptions(ClientOptions.builder()
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .build());
+    }
+    
+    // Every replica subscribes so an import on any of them drops cached analytics everywhere
+    @Bean
+    @ConditionalOnProperty(name = "analytics.cache.redis.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer analyticsCacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                            AnalyticsCache analyticsCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> analyticsCache.onRemoteInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(AnalyticsCache.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,25 @@
+package com.erp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class CsvParserConfig {
+    
+    // Parser threads shared by every CSV import, so concurrent imports split the cores instead of each
+    // starting a pool of its own; 0 means one thread per core
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService csvParserExecutor(@Value("${import.parser-threads:0}") int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
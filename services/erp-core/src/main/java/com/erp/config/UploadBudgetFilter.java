@@ -0,0 +1,78 @@
+package com.erp.config;
+
+import com.erp.service.UploadSpool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Admits multipart uploads against the {@link UploadSpool} byte budget before their body is read: the
+ * declared length is reserved for the whole request (the request size limit when none is declared), so
+ * uploads being received and imported never add up to more than the budget. Uploads over the size limit
+ * get 413; those that cannot get a reservation in time get 429 with a Retry-After.
+ */
+@Component
+public class UploadBudgetFilter extends OncePerRequestFilter {
+    
+    private final UploadSpool uploadSpool;
+    private final ObjectMapper objectMapper;
+    
+    public UploadBudgetFilter(UploadSpool uploadSpool, ObjectMapper objectMapper) {
+        this.uploadSpool = uploadSpool;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/");
+    }
+    
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        long length = request.getContentLengthLong();
+        if (length > uploadSpool.maxRequestBytes()) {
+            uploadSpool.rejectTooLarge();
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload of " + length + " bytes exceeds the limit of " + uploadSpool.maxRequestBytes() + " bytes");
+            return;
+        }
+        
+        UploadSpool.Reservation reservation;
+        try {
+            reservation = uploadSpool.reserve(length >= 0 ? length : uploadSpool.maxRequestBytes());
+        } catch (RejectedExecutionException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, uploadSpool.retryAfter().toSeconds())));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the upload budget");
+            return;
+        }
+        try (reservation) {
+            filterChain.doFilter(request, response);
+        }
+    }
+    
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", message));
+    }
+}
@@ -2,7 +2,9 @@ package com.erp.controller;
 
 import com.erp.entity.Customer;
 import com.erp.repository.CustomerRepository;
+import com.erp.service.TopK;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -81,12 +83,13 @@ public class CustomerController {
     @GetMapping("/top")
     public ResponseEntity<?> getTopCustomers(@RequestParam(defaultValue = "10") int limit) {
         try {
-            List<Customer> topCustomers = customerRepository.findTopCustomers();
-            List<Customer> limitedCustomers = topCustomers.stream()
-                    .limit(limit)
-                    .toList();
+            // ORDER BY ... LIMIT runs in the database, only the top rows are loaded
+            List<Customer> topCustomers = customerRepository.findTopCustomers(PageRequest.of(0, TopK.checkLimit(limit)));
             
-            return ResponseEntity.ok(Map.of("customers", limitedCustomers));
+            return ResponseEntity.ok(Map.of("customers", topCustomers));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", e.getMessage()));
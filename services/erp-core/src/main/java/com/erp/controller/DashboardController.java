@@ -1,9 +1,17 @@
 package com.erp.controller;
 
+import com.erp.service.ActivityLogService;
+import com.erp.service.AlertService;
+import com.erp.service.DashboardStreamService;
+import com.erp.service.KpiService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Dashboard Controller
@@ -15,73 +23,86 @@ import java.util.*;
 @CrossOrigin(origins = "*")
 public class DashboardController {
 
+    @Autowired
+    private KpiService kpiService;
+
+    @Autowired
+    private DashboardStreamService streamService;
+
+    @Autowired
+    private ActivityLogService activityLog;
+
+    @Autowired
+    private AlertService alertService;
+
     @GetMapping("/kpi")
-    public ResponseEntity<Map<String, Object>> getKPIs() {
-        Map<String, Object> kpis = new HashMap<>();
-        
-        // Revenue KPI
-        Map<String, Object> revenue = new HashMap<>();
-        revenue.put("value", 2.1);
-        revenue.put("change", 10.0);
-        revenue.put("trend", "up");
-        kpis.put("revenue", revenue);
-        
-        // Profit KPI
-        Map<String, Object> profit = new HashMap<>();
-        profit.put("value", 0.45);
-        profit.put("change", 15.0);
-        profit.put("trend", "up");
-        kpis.put("profit", profit);
-        
-        // Orders KPI
-        Map<String, Object> orders = new HashMap<>();
-        orders.put("value", 1234);
-        orders.put("change", -5.0);
-        orders.put("trend", "down");
-        kpis.put("orders", orders);
-        
-        // Inventory KPI
-        Map<String, Object> inventory = new HashMap<>();
-        inventory.put("value", 5678);
-        inventory.put("change", 2.0);
-        inventory.put("trend", "up");
-        kpis.put("inventory", inventory);
-        
-        return ResponseEntity.ok(kpis);
+    public ResponseEntity<KpiService.Snapshot> getKPIs() {
+        KpiService.Snapshot snapshot = kpiService.current();
+        if (snapshot == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(snapshot);
     }
 
+    /**
+     * Server-Sent Events: {@code kpi} events with the KPIs that changed, {@code alert} and {@code alert-resolved}
+     * events, and a heartbeat comment while idle.
+     * Clients reconnecting with {@code Last-Event-ID} resume where they left off.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<SseEmitter> stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            return ResponseEntity.ok(streamService.subscribe(lastEventId));
+        } catch (RejectedExecutionException e) {
+            // The body must stay an emitter for Spring to stream it, so the refusal has none
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
+    /**
+     * Activity feed, newest first. Without {@code before} the page comes from memory; {@code nextCursor}
+     * is passed as {@code before} for the page after.
+     */
     @GetMapping("/activities")
-    public ResponseEntity<List<Map<String, Object>>> getRecentActivities() {
-        List<Map<String, Object>> activities = new ArrayList<>();
-        
-        Map<String, Object> act1 = new HashMap<>();
-        act1.put("id", 1);
-        act1.put("action", "Đơn hàng mới #1234");
-        act1.put("user", "Nguyễn Văn A");
-        act1.put("timestamp", new Date(System.currentTimeMillis() - 300000));
-        activities.add(act1);
-        
-        Map<String, Object> act2 = new HashMap<>();
-        act2.put("id", 2);
-        act2.put("action", "Cập nhật báo giá sản phẩm B");
-        act2.put("user", "Trần Thị B");
-        act2.put("timestamp", new Date(System.currentTimeMillis() - 900000));
-        activities.add(act2);
-        
-        return ResponseEntity.ok(activities);
+    public ResponseEntity<Map<String, Object>> getRecentActivities(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String before) {
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and 100"));
+        }
+        try {
+            List<ActivityLogService.Activity> activities = before == null
+                    ? activityLog.recent(limit)
+                    : activityLog.before(before, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("activities", activities);
+            response.put("nextCursor", activities.size() == limit
+                    ? ActivityLogService.cursor(activities.get(activities.size() - 1)) : null);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
+    /**
+     * Active alerts newest first, optionally of one rule (low_stock, overdue_invoice, late_purchase_order).
+     */
     @GetMapping("/alerts")
-    public ResponseEntity<List<Map<String, Object>>> getAlerts() {
-        List<Map<String, Object>> alerts = new ArrayList<>();
-        
-        Map<String, Object> alert1 = new HashMap<>();
-        alert1.put("id", 1);
-        alert1.put("type", "warning");
-        alert1.put("message", "Sản phẩm A sắp hết hàng");
-        alert1.put("timestamp", new Date());
-        alerts.add(alert1);
-        
-        return ResponseEntity.ok(alerts);
+    public ResponseEntity<?> getAlerts(@RequestParam(required = false) String rule) {
+        try {
+            return ResponseEntity.ok(alertService.active(rule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Re-evaluates every alert rule against the tables, for changes made outside the application.
+     */
+    @PostMapping("/alerts/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileAlerts() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("active", alertService.reconcile());
+        return ResponseEntity.ok(response);
     }
 }
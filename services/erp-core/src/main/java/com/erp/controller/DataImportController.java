@@ -1,13 +1,31 @@
 package com.erp.controller;
 
 import com.erp.service.DataImportService;
+import com.erp.service.ImportJobService;
+import com.erp.service.MasterDataImportService;
+import com.erp.service.TransactionPartitionManager;
+import com.erp.service.TransactionRollupService;
+import com.erp.service.TransactionSketchService;
+import com.erp.service.TransactionStagingService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/data")
@@ -17,8 +35,30 @@ public class DataImportController {
     @Autowired
     private DataImportService dataImportService;
     
+    @Autowired
+    private TransactionRollupService rollupService;
+    
+    @Autowired
+    private TransactionSketchService sketchService;
+    
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+    
+    @Autowired
+    private ImportJobService importJobService;
+    
+    @Autowired
+    private MasterDataImportService masterDataImportService;
+    
+    @Autowired
+    private TransactionStagingService stagingService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @PostMapping("/upload-csv")
-    public ResponseEntity<?> uploadCSV(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadCSV(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "mode", defaultValue = "batch") String mode) {
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
@@ -29,12 +69,37 @@ public class DataImportController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Only CSV files are allowed"));
             }
             
-            int recordsImported = dataImportService.importCSV(file);
+            DataImportService.ImportResult result;
+            if ("copy".equalsIgnoreCase(mode)) {
+                result = dataImportService.importCSVCopy(file);
+            } else if ("staging".equalsIgnoreCase(mode)) {
+                result = dataImportService.importCSVStaged(file);
+            } else if ("batch".equalsIgnoreCase(mode)) {
+                result = dataImportService.importCSV(file);
+            } else {
+                return ResponseEntity.badRequest().body(Map.of("error", "mode must be batch, copy or staging"));
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Data imported successfully");
-            response.put("recordsImported", recordsImported);
+            if (result.alreadyImportedAt() != null) {
+                response.put("message", "File already imported at " + result.alreadyImportedAt() + ", nothing to do");
+                response.put("alreadyImported", true);
+            } else {
+                response.put("message", "Data imported successfully");
+            }
+            response.put("recordsImported", result.recordsImported());
+            response.put("durationMs", result.durationMillis());
+            response.put("rowsPerSecond", Math.round(result.rowsPerSecond()));
+            response.put("rejectedCount", result.rejectedCount());
+            response.put("rejectedRows", result.rejectedRows());
+            response.put("duplicatesSkipped", result.duplicatesSkipped());
+            if (result.importId() != null) {
+                response.put("importId", result.importId());
+                if (result.rejectedCount() > 0) {
+                    response.put("rejectedRowsUrl", "/api/data/imports/" + result.importId() + "/rejected");
+                }
+            }
             
             return ResponseEntity.ok(response);
             
@@ -46,6 +111,118 @@ public class DataImportController {
         }
     }
     
+    /**
+     * Bulk load of customers, products, suppliers, warehouses or employees, upserted on the natural key
+     * (email, sku, warehouseCode, employeeId). {@code mapping} is an optional JSON object from CSV header
+     * to field, e.g. {@code {"Mail": "email", "Legacy id": ""}}; an empty field skips the column.
+     */
+    @PostMapping("/import/{entity}")
+    public ResponseEntity<?> importMasterData(@PathVariable String entity,
+                                              @RequestParam("file") MultipartFile file,
+                                              @RequestParam(value = "mapping", required = false) String mapping) {
+        try {
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+            }
+            
+            String filename = file.getOriginalFilename();
+            if (filename == null || !filename.endsWith(".csv")) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Only CSV files are allowed"));
+            }
+            
+            Map<String, String> columns = null;
+            if (mapping != null && !mapping.isBlank()) {
+                try {
+                    columns = objectMapper.readValue(mapping, new TypeReference<Map<String, String>>() {});
+                } catch (JsonProcessingException e) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "mapping must be a JSON object of CSV column to field"));
+                }
+            }
+            
+            MasterDataImportService.LoadResult result = masterDataImportService.importCSV(entity, file, columns);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("entity", result.entity());
+            response.put("inserted", result.inserted());
+            response.put("updated", result.updated());
+            response.put("duplicatesInFile", result.duplicatesInFile());
+            response.put("durationMs", result.durationMillis());
+            response.put("rowsPerSecond", Math.round(result.rowsPerSecond()));
+            response.put("rejectedCount", result.rejectedCount());
+            response.put("rejectedRows", result.rejectedRows());
+            response.put("columns", result.columns());
+            response.put("ignoredColumns", result.ignoredColumns());
+            
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Queues the upload as a background import and returns the job at once; poll {@code GET /jobs/{id}}.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitImportJob(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "mode", defaultValue = "batch") String mode) {
+        try {
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+            }
+            
+            String filename = file.getOriginalFilename();
+            if (filename == null || !filename.endsWith(".csv")) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Only CSV files are allowed"));
+            }
+            if (!"copy".equalsIgnoreCase(mode) && !"batch".equalsIgnoreCase(mode) && !"staging".equalsIgnoreCase(mode)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "mode must be batch, copy or staging"));
+            }
+            
+            return ResponseEntity.accepted().body(importJobService.submit(file, mode.toLowerCase()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getImportJob(@PathVariable String id) {
+        return importJobService.status(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<?> cancelImportJob(@PathVariable String id) {
+        try {
+            return importJobService.cancel(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Downloads the rows a staging import rejected, as CSV: line, column and reason, then the raw fields.
+     * {@code id} is the {@code importId} of the import, or the job id when it ran as a job.
+     */
+    @GetMapping("/imports/{id}/rejected")
+    public ResponseEntity<StreamingResponseBody> downloadRejectedRows(@PathVariable String id) {
+        if (!stagingService.hasRejects(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> stagingService.writeRejects(id, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rejected-" + id + ".csv\"")
+                .body(body);
+    }
+    
     @DeleteMapping("/clear")
     public ResponseEntity<?> clearData() {
         try {
@@ -56,6 +233,86 @@ public class DataImportController {
         }
     }
     
+    @PostMapping("/admin/rollup/rebuild")
+    public ResponseEntity<?> rebuildRollup() {
+        try {
+            long started = System.currentTimeMillis();
+            int buckets = rollupService.rebuild();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("buckets", buckets);
+            response.put("durationMs", System.currentTimeMillis() - started);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/admin/sketches/rebuild")
+    public ResponseEntity<?> rebuildSketches() {
+        try {
+            long started = System.currentTimeMillis();
+            int buckets = sketchService.rebuild();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("buckets", buckets);
+            response.put("durationMs", System.currentTimeMillis() - started);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/admin/partitions")
+    public ResponseEntity<?> listPartitions() {
+        try {
+            List<Map<String, Object>> partitions = partitionManager.listPartitions().stream()
+                .map(partition -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("name", partition.name());
+                    map.put("month", partition.monthStart());
+                    map.put("estimatedRows", partition.estimatedRows());
+                    return map;
+                })
+                .collect(Collectors.toList());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("partitioned", partitionManager.isActive());
+            response.put("partitions", partitions);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Removes whole months ending on or before {@code before}. Partitions are detached and kept
+     * as standalone transactions_archive_pYYYYMM tables unless drop=true.
+     */
+    @PostMapping("/admin/partitions/retention")
+    public ResponseEntity<?> applyRetention(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before,
+            @RequestParam(defaultValue = "false") boolean drop
+    ) {
+        try {
+            long started = System.currentTimeMillis();
+            List<LocalDate> removed = dataImportService.purgeBefore(before, drop);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("monthsRemoved", removed);
+            response.put("dropped", drop);
+            response.put("durationMs", System.currentTimeMillis() - started);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/status")
     public ResponseEntity<?> getDataStatus() {
         // Add logic to count records
@@ -1,8 +1,13 @@
 package com.erp.controller;
 
+import com.erp.service.RevenueForecastService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
 import java.util.*;
 
 @RestController
@@ -10,6 +15,9 @@ import java.util.*;
 @CrossOrigin(origins = "*")
 public class ForecastController {
     
+    @Autowired
+    private RevenueForecastService forecastService;
+    
     @GetMapping("/insights")
     public ResponseEntity<Map<String, Object>> getForecastInsights() {
         Map<String, Object> insights = new HashMap<>();
@@ -46,27 +54,58 @@ public class ForecastController {
         return ResponseEntity.ok(insights);
     }
     
+    /**
+     * Monthly revenue, overall or for one department: the last {@code history} complete months, then
+     * {@code horizon} forecast months with their prediction interval ({@code lower}, {@code upper}).
+     */
     @GetMapping("/revenue")
-    public ResponseEntity<Map<String, Object>> getRevenueForecast() {
-        List<Map<String, Object>> forecastData = new ArrayList<>();
+    public ResponseEntity<Map<String, Object>> getRevenueForecast(
+            @RequestParam(required = false) String department,
+            @RequestParam(defaultValue = "auto") String model,
+            @RequestParam(defaultValue = "6") int history,
+            @RequestParam(defaultValue = "6") int horizon,
+            @RequestParam(defaultValue = "95") int confidence) {
+        if (history < 0 || history > 120 || horizon < 1 || horizon > 24) {
+            return ResponseEntity.badRequest().body(Map.of("error", "history must be between 0 and 120, horizon between 1 and 24"));
+        }
+        RevenueForecastService.RevenueForecast result;
+        try {
+            result = forecastService.forecast(department, model, horizon, confidence);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
         
-        // Historical data (last 6 months)
-        forecastData.add(Map.of("month", "T7/24", "actual", 85, "forecast", 0, "type", "actual"));
-        forecastData.add(Map.of("month", "T8/24", "actual", 90, "forecast", 0, "type", "actual"));
-        forecastData.add(Map.of("month", "T9/24", "actual", 88, "forecast", 0, "type", "actual"));
-        forecastData.add(Map.of("month", "T10/24", "actual", 95, "forecast", 0, "type", "actual"));
-        forecastData.add(Map.of("month", "T11/24", "actual", 92, "forecast", 0, "type", "actual"));
-        forecastData.add(Map.of("month", "T12/24", "actual", 100, "forecast", 0, "type", "actual"));
-        
-        // Forecast data (next 6 months)
-        forecastData.add(Map.of("month", "T1/25", "actual", 0, "forecast", 105, "type", "forecast"));
-        forecastData.add(Map.of("month", "T2/25", "actual", 0, "forecast", 115, "type", "forecast"));
-        forecastData.add(Map.of("month", "T3/25", "actual", 0, "forecast", 110, "type", "forecast"));
-        forecastData.add(Map.of("month", "T4/25", "actual", 0, "forecast", 108, "type", "forecast"));
-        forecastData.add(Map.of("month", "T5/25", "actual", 0, "forecast", 112, "type", "forecast"));
-        forecastData.add(Map.of("month", "T6/25", "actual", 0, "forecast", 118, "type", "forecast"));
-        
-        return ResponseEntity.ok(Map.of("data", forecastData));
+        List<Map<String, Object>> forecastData = new ArrayList<>();
+        double[] actual = result.actual();
+        for (int i = Math.max(0, actual.length - history); i < actual.length; i++) {
+            forecastData.add(Map.of("month", label(result.start().plusMonths(i)), "actual", round(actual[i]),
+                    "forecast", 0, "type", "actual"));
+        }
+        if (result.forecast() != null) {
+            YearMonth first = result.start().plusMonths(actual.length);
+            for (int h = 0; h < horizon; h++) {
+                forecastData.add(Map.of("month", label(first.plusMonths(h)), "actual", 0,
+                        "forecast", round(result.forecast().mean()[h]),
+                        "lower", round(result.forecast().lower()[h]),
+                        "upper", round(result.forecast().upper()[h]), "type", "forecast"));
+            }
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("data", forecastData);
+        response.put("department", result.department());
+        response.put("model", result.model());
+        response.put("confidence", result.confidence());
+        return ResponseEntity.ok(response);
+    }
+    
+    // T7/24 for July 2024
+    private static String label(YearMonth month) {
+        return "T" + month.getMonthValue() + "/" + String.format("%02d", month.getYear() % 100);
+    }
+    
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
     }
     
     @GetMapping("/targets")
@@ -2,7 +2,10 @@ package com.erp.controller;
 
 import com.erp.entity.Invoice;
 import com.erp.repository.InvoiceRepository;
+import com.erp.service.ActivityLogService;
+import com.erp.service.DataChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +22,12 @@ public class InvoiceController {
     @Autowired
     private InvoiceRepository invoiceRepository;
     
+    @Autowired
+    private ActivityLogService activityLog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @GetMapping
     public ResponseEntity<List<Invoice>> getAllInvoices(
             @RequestParam(required = false) String status) {
@@ -73,6 +82,8 @@ public class InvoiceController {
     public ResponseEntity<Invoice> createInvoice(@RequestBody Invoice invoice) {
         invoice.setInvoiceDate(LocalDate.now());
         Invoice savedInvoice = invoiceRepository.save(invoice);
+        eventPublisher.publishEvent(new DataChangedEvent("invoices", savedInvoice.getId(), savedInvoice));
+        activityLog.record("created", "invoice", savedInvoice.getId(), "Invoice " + savedInvoice.getInvoiceNumber() + " created");
         return ResponseEntity.ok(savedInvoice);
     }
     
@@ -87,7 +98,11 @@ public class InvoiceController {
                     invoice.setPaidDate(invoiceDetails.getPaidDate());
                     invoice.setNotes(invoiceDetails.getNotes());
                     invoice.setDueDate(invoiceDetails.getDueDate());
-                    return ResponseEntity.ok(invoiceRepository.save(invoice));
+                    Invoice savedInvoice = invoiceRepository.save(invoice);
+                    eventPublisher.publishEvent(new DataChangedEvent("invoices", id, savedInvoice));
+                    activityLog.record("updated", "invoice", id, "Invoice " + savedInvoice.getInvoiceNumber()
+                            + " updated (" + savedInvoice.getStatus() + ")");
+                    return ResponseEntity.ok(savedInvoice);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -97,6 +112,8 @@ public class InvoiceController {
     public ResponseEntity<Void> deleteInvoice(@PathVariable Long id) {
         if (invoiceRepository.existsById(id)) {
             invoiceRepository.deleteById(id);
+            eventPublisher.publishEvent(new DataChangedEvent("invoices", id, null));
+            activityLog.record("deleted", "invoice", id, "Invoice " + id + " deleted");
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
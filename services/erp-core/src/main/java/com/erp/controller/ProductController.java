@@ -2,7 +2,12 @@ package com.erp.controller;
 
 import com.erp.entity.Product;
 import com.erp.repository.ProductRepository;
+import com.erp.service.ActivityLogService;
+import com.erp.service.DataChangedEvent;
+import com.erp.service.TopK;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +22,12 @@ public class ProductController {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private ActivityLogService activityLog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllProducts(
             @RequestParam(required = false) String category,
@@ -79,12 +90,13 @@ public class ProductController {
     @GetMapping("/top-selling")
     public ResponseEntity<?> getTopSellingProducts(@RequestParam(defaultValue = "10") int limit) {
         try {
-            List<Product> topProducts = productRepository.findTopSellingProducts();
-            List<Product> limitedProducts = topProducts.stream()
-                    .limit(limit)
-                    .toList();
+            // ORDER BY ... LIMIT runs in the database, only the top rows are loaded
+            List<Product> topProducts = productRepository.findTopSellingProducts(PageRequest.of(0, TopK.checkLimit(limit)));
             
-            return ResponseEntity.ok(Map.of("products", limitedProducts));
+            return ResponseEntity.ok(Map.of("products", topProducts));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", e.getMessage()));
@@ -122,6 +134,8 @@ public class ProductController {
     public ResponseEntity<?> createProduct(@RequestBody Product product) {
         try {
             Product savedProduct = productRepository.save(product);
+            eventPublisher.publishEvent(new DataChangedEvent("products", savedProduct.getId(), savedProduct));
+            activityLog.record("created", "product", savedProduct.getId(), "Product " + savedProduct.getName() + " created");
             return ResponseEntity.status(HttpStatus.CREATED).body(savedProduct);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -144,8 +158,11 @@ public class ProductController {
             if (productDetails.getCategory() != null) product.setCategory(productDetails.getCategory());
             if (productDetails.getPrice() != null) product.setPrice(productDetails.getPrice());
             if (productDetails.getStock() != null) product.setStock(productDetails.getStock());
+            if (productDetails.getReorderLevel() != null) product.setReorderLevel(productDetails.getReorderLevel());
             
             Product updatedProduct = productRepository.save(product);
+            eventPublisher.publishEvent(new DataChangedEvent("products", id, updatedProduct));
+            activityLog.record("updated", "product", id, "Product " + updatedProduct.getName() + " updated");
             return ResponseEntity.ok(updatedProduct);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -163,6 +180,8 @@ public class ProductController {
             }
             
             productRepository.deleteById(id);
+            eventPublisher.publishEvent(new DataChangedEvent("products", id, null));
+            activityLog.record("deleted", "product", id, "Product " + id + " deleted");
             return ResponseEntity.ok(Map.of("message", "Product deleted successfully"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -2,7 +2,10 @@ package com.erp.controller;
 
 import com.erp.entity.PurchaseOrder;
 import com.erp.repository.PurchaseOrderRepository;
+import com.erp.service.ActivityLogService;
+import com.erp.service.DataChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +22,12 @@ public class PurchaseOrderController {
     @Autowired
     private PurchaseOrderRepository purchaseOrderRepository;
     
+    @Autowired
+    private ActivityLogService activityLog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @GetMapping
     public ResponseEntity<List<PurchaseOrder>> getAllOrders(
             @RequestParam(required = false) String status,
@@ -75,6 +84,8 @@ public class PurchaseOrderController {
     public ResponseEntity<PurchaseOrder> createOrder(@RequestBody PurchaseOrder order) {
         order.setOrderDate(LocalDate.now());
         PurchaseOrder savedOrder = purchaseOrderRepository.save(order);
+        eventPublisher.publishEvent(new DataChangedEvent("purchase_orders", savedOrder.getId(), savedOrder));
+        activityLog.record("created", "purchase_order", savedOrder.getId(), "Purchase order " + savedOrder.getPoNumber() + " created");
         return ResponseEntity.ok(savedOrder);
     }
     
@@ -89,7 +100,11 @@ public class PurchaseOrderController {
                     order.setExpectedDate(orderDetails.getExpectedDate());
                     order.setReceivedDate(orderDetails.getReceivedDate());
                     order.setNotes(orderDetails.getNotes());
-                    return ResponseEntity.ok(purchaseOrderRepository.save(order));
+                    PurchaseOrder savedOrder = purchaseOrderRepository.save(order);
+                    eventPublisher.publishEvent(new DataChangedEvent("purchase_orders", id, savedOrder));
+                    activityLog.record("updated", "purchase_order", id, "Purchase order " + savedOrder.getPoNumber()
+                            + " updated (" + savedOrder.getStatus() + ")");
+                    return ResponseEntity.ok(savedOrder);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -99,6 +114,8 @@ public class PurchaseOrderController {
     public ResponseEntity<Void> deleteOrder(@PathVariable Long id) {
         if (purchaseOrderRepository.existsById(id)) {
             purchaseOrderRepository.deleteById(id);
+            eventPublisher.publishEvent(new DataChangedEvent("purchase_orders", id, null));
+            activityLog.record("deleted", "purchase_order", id, "Purchase order " + id + " deleted");
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
@@ -2,7 +2,10 @@ package com.erp.controller;
 
 import com.erp.entity.SalesOrder;
 import com.erp.repository.SalesOrderRepository;
+import com.erp.service.ActivityLogService;
+import com.erp.service.DataChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +22,12 @@ public class SalesOrderController {
     @Autowired
     private SalesOrderRepository salesOrderRepository;
     
+    @Autowired
+    private ActivityLogService activityLog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @GetMapping
     public ResponseEntity<List<SalesOrder>> getAllOrders(
             @RequestParam(required = false) String status,
@@ -70,6 +79,8 @@ public class SalesOrderController {
     public ResponseEntity<SalesOrder> createOrder(@RequestBody SalesOrder order) {
         order.setOrderDate(LocalDateTime.now());
         SalesOrder savedOrder = salesOrderRepository.save(order);
+        eventPublisher.publishEvent(new DataChangedEvent("sales_orders"));
+        activityLog.record("created", "sales_order", savedOrder.getId(), "Sales order " + savedOrder.getOrderNumber() + " created");
         return ResponseEntity.ok(savedOrder);
     }
     
@@ -86,7 +97,11 @@ public class SalesOrderController {
                     order.setDiscount(orderDetails.getDiscount());
                     order.setTax(orderDetails.getTax());
                     order.setGrandTotal(orderDetails.getGrandTotal());
-                    return ResponseEntity.ok(salesOrderRepository.save(order));
+                    SalesOrder savedOrder = salesOrderRepository.save(order);
+                    eventPublisher.publishEvent(new DataChangedEvent("sales_orders"));
+                    activityLog.record("updated", "sales_order", id, "Sales order " + savedOrder.getOrderNumber()
+                            + " updated (" + savedOrder.getStatus() + ")");
+                    return ResponseEntity.ok(savedOrder);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -96,6 +111,8 @@ public class SalesOrderController {
     public ResponseEntity<Void> deleteOrder(@PathVariable Long id) {
         if (salesOrderRepository.existsById(id)) {
             salesOrderRepository.deleteById(id);
+            eventPublisher.publishEvent(new DataChangedEvent("sales_orders"));
+            activityLog.record("deleted", "sales_order", id, "Sales order " + id + " deleted");
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
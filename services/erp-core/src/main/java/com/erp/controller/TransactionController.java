@@ -1,13 +1,26 @@
 package com.erp.controller;
 
-import com.erp.entity.Transaction;
-import com.erp.repository.TransactionRepository;
+import com.erp.entity.Money;
+import com.erp.repository.projection.ProductRevenue;
+import com.erp.repository.projection.TransactionTotals;
+import com.erp.service.AnalyticsCache;
+import com.erp.service.TopK;
+import com.erp.service.TransactionAnalyticsService;
+import com.erp.service.TransactionExportService;
+import com.erp.service.TransactionSketchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -17,109 +30,145 @@ import java.util.stream.Collectors;
 public class TransactionController {
     
     @Autowired
-    private TransactionRepository transactionRepository;
+    private TransactionAnalyticsService analyticsService;
+    
+    @Autowired
+    private TransactionExportService exportService;
+    
+    @Autowired
+    private TransactionSketchService sketchService;
+    
+    @Autowired
+    private AnalyticsCache analyticsCache;
     
     @GetMapping("/analytics")
     public ResponseEntity<?> getAnalytics(
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String department,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean approx
     ) {
         try {
-            List<Transaction> transactions = transactionRepository.findAll();
-            
-            // Filter by date range if provided
-            if (startDate != null && endDate != null) {
-                transactions = transactions.stream()
-                    .filter(t -> !t.getTransactionDate().isBefore(startDate) && !t.getTransactionDate().isAfter(endDate))
-                    .collect(Collectors.toList());
-            }
-            
-            // Filter by department if provided
-            if (department != null && !department.isEmpty()) {
-                transactions = transactions.stream()
-                    .filter(t -> department.equalsIgnoreCase(t.getDepartment()))
-                    .collect(Collectors.toList());
-            }
+            int top = TopK.checkLimit(limit);
             
-            Map<String, Object> analytics = new HashMap<>();
+            // Date range only applies when both bounds are given
+            LocalDate from = (startDate != null && endDate != null) ? startDate : null;
+            LocalDate to = (startDate != null && endDate != null) ? endDate : null;
+            String dept = (department != null && !department.isEmpty()) ? department : null;
             
-            // Analyze based on type
-            if ("top_products".equalsIgnoreCase(type)) {
-                analytics = analyzeTopProducts(transactions);
-            } else if ("department_performance".equalsIgnoreCase(type)) {
-                analytics = analyzeDepartmentPerformance(transactions);
-            } else if ("monthly_trend".equalsIgnoreCase(type)) {
-                analytics = analyzeMonthlyTrend(transactions);
-            } else if ("product_category".equalsIgnoreCase(type)) {
-                analytics = analyzeProductCategory(transactions);
-            } else {
-                // Default: comprehensive analytics
-                analytics = analyzeComprehensive(transactions);
-            }
+            // Served from the two-tier cache; imports and clears invalidate it
+            String cacheKey = AnalyticsCache.key(type, dept, from, to, top, approx);
+            Map<String, Object> analytics = analyticsCache.get(cacheKey, () -> analyze(type, from, to, dept, top, approx));
             
             return ResponseEntity.ok(analytics);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
         }
     }
     
-    private Map<String, Object> analyzeTopProducts(List<Transaction> transactions) {
-        Map<String, Double> productRevenue = transactions.stream()
-            .collect(Collectors.groupingBy(
-                Transaction::getProduct,
-                Collectors.summingDouble(t -> t.getRevenue().doubleValue())
-            ));
+    private Map<String, Object> analyze(String type, LocalDate from, LocalDate to, String dept, int top, boolean approx) {
+        if (approx) {
+            // Sketch-based estimates; dates are widened to whole months
+            return analyzeApproximate(from, to, dept);
+        }
         
-        List<Map<String, Object>> topProducts = productRevenue.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-            .limit(10)
-            .map(entry -> {
+        // Analyze based on type
+        if ("top_products".equalsIgnoreCase(type)) {
+            return analyzeTopProducts(from, to, dept, top);
+        } else if ("department_performance".equalsIgnoreCase(type)) {
+            return analyzeDepartmentPerformance(from, to, dept);
+        } else if ("monthly_trend".equalsIgnoreCase(type)) {
+            return analyzeMonthlyTrend(from, to, dept);
+        } else if ("product_category".equalsIgnoreCase(type)) {
+            return analyzeProductCategory(from, to, dept);
+        } else {
+            // Default: comprehensive analytics
+            return analyzeComprehensive(from, to, dept, top);
+        }
+    }
+    
+    /**
+     * Streams matching transactions as CSV or NDJSON without loading them into memory.
+     * Pass gzip=true to receive a gzip-compressed file.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        TransactionExportService.Format exportFormat;
+        try {
+            exportFormat = TransactionExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+        }
+        
+        String dept = (department != null && !department.isEmpty()) ? department : null;
+        String txType = (type != null && !type.isEmpty()) ? type : null;
+        
+        String filename = "transactions." + format.toLowerCase() + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : exportFormat == TransactionExportService.Format.CSV ? MediaType.parseMediaType("text/csv; charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson");
+        
+        StreamingResponseBody body = out ->
+                exportService.export(startDate, endDate, dept, txType, exportFormat, gzip, out);
+        
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+    
+    private Map<String, Object> analyzeTopProducts(LocalDate startDate, LocalDate endDate, String department, int limit) {
+        List<ProductRevenue> productRevenue = analyticsService.sumRevenueByProduct(startDate, endDate, department, limit);
+        Map<String, BigDecimal> previousRevenue = previousPeriodRevenue(startDate, endDate, department);
+        
+        List<Map<String, Object>> topProducts = productRevenue.stream()
+            .map(row -> {
                 Map<String, Object> map = new HashMap<>();
-                map.put("name", entry.getKey());
-                map.put("value", entry.getValue());
-                map.put("change", (Math.random() - 0.5) * 40);
+                map.put("name", row.getName());
+                map.put("value", toDouble(row.getValue()));
+                // Percent change against the previous period; null without a date range or earlier revenue
+                map.put("change", percentChange(row.getValue(), previousRevenue.get(row.getName())));
                 return map;
             })
             .collect(Collectors.toList());
         
+        TransactionTotals totals = analyticsService.sumTotals(startDate, endDate, department);
+        
         Map<String, Object> result = new HashMap<>();
         result.put("type", "top_products");
         result.put("data", topProducts);
-        result.put("total", productRevenue.values().stream().mapToDouble(Double::doubleValue).sum());
+        result.put("total", toDouble(totals.getRevenue()));
         
         return result;
     }
     
-    private Map<String, Object> analyzeDepartmentPerformance(List<Transaction> transactions) {
-        Map<String, Map<String, Double>> deptMetrics = new HashMap<>();
-        
-        transactions.forEach(t -> {
-            String dept = t.getDepartment();
-            deptMetrics.putIfAbsent(dept, new HashMap<>());
-            Map<String, Double> metrics = deptMetrics.get(dept);
-            
-            metrics.put("revenue", metrics.getOrDefault("revenue", 0.0) + t.getRevenue().doubleValue());
-            metrics.put("profit", metrics.getOrDefault("profit", 0.0) + t.getProfit().doubleValue());
-            metrics.put("cost", metrics.getOrDefault("cost", 0.0) + t.getCost().doubleValue());
-            metrics.put("count", metrics.getOrDefault("count", 0.0) + 1);
-        });
-        
-        List<Map<String, Object>> departments = deptMetrics.entrySet().stream()
-            .map(entry -> {
+    private Map<String, Object> analyzeDepartmentPerformance(LocalDate startDate, LocalDate endDate, String department) {
+        List<Map<String, Object>> departments = analyticsService.sumByDepartment(startDate, endDate, department)
+            .stream()
+            .map(row -> {
+                double revenue = toDouble(row.getRevenue());
+                double profit = toDouble(row.getProfit());
                 Map<String, Object> dept = new HashMap<>();
-                dept.put("name", entry.getKey());
-                dept.put("revenue", entry.getValue().get("revenue"));
-                dept.put("profit", entry.getValue().get("profit"));
-                dept.put("cost", entry.getValue().get("cost"));
-                dept.put("transactions", entry.getValue().get("count").intValue());
-                dept.put("profitMargin", 
-                    (entry.getValue().get("profit") / entry.getValue().get("revenue") * 100));
+                dept.put("name", row.getName());
+                dept.put("revenue", revenue);
+                dept.put("profit", profit);
+                dept.put("cost", toDouble(row.getCost()));
+                dept.put("transactions", row.getTransactions().intValue());
+                dept.put("profitMargin", (profit / revenue * 100));
                 return dept;
             })
-            .sorted((a, b) -> Double.compare((Double) b.get("revenue"), (Double) a.get("revenue")))
             .collect(Collectors.toList());
         
         Map<String, Object> result = new HashMap<>();
@@ -129,26 +178,15 @@ public class TransactionController {
         return result;
     }
     
-    private Map<String, Object> analyzeMonthlyTrend(List<Transaction> transactions) {
-        Map<String, Map<String, Double>> monthlyData = new TreeMap<>();
-        
-        transactions.forEach(t -> {
-            String month = t.getTransactionDate().toString().substring(0, 7); // YYYY-MM
-            monthlyData.putIfAbsent(month, new HashMap<>());
-            Map<String, Double> metrics = monthlyData.get(month);
-            
-            metrics.put("revenue", metrics.getOrDefault("revenue", 0.0) + t.getRevenue().doubleValue());
-            metrics.put("profit", metrics.getOrDefault("profit", 0.0) + t.getProfit().doubleValue());
-            metrics.put("cost", metrics.getOrDefault("cost", 0.0) + t.getCost().doubleValue());
-        });
-        
-        List<Map<String, Object>> trend = monthlyData.entrySet().stream()
-            .map(entry -> {
+    private Map<String, Object> analyzeMonthlyTrend(LocalDate startDate, LocalDate endDate, String department) {
+        List<Map<String, Object>> trend = analyticsService.sumByMonth(startDate, endDate, department)
+            .stream()
+            .map(row -> {
                 Map<String, Object> map = new HashMap<>();
-                map.put("name", entry.getKey());
-                map.put("revenue", entry.getValue().get("revenue"));
-                map.put("profit", entry.getValue().get("profit"));
-                map.put("cost", entry.getValue().get("cost"));
+                map.put("name", String.format("%04d-%02d", row.getYear(), row.getMonth())); // YYYY-MM
+                map.put("revenue", toDouble(row.getRevenue()));
+                map.put("profit", toDouble(row.getProfit()));
+                map.put("cost", toDouble(row.getCost()));
                 return map;
             })
             .collect(Collectors.toList());
@@ -160,20 +198,21 @@ public class TransactionController {
         return result;
     }
     
-    private Map<String, Object> analyzeProductCategory(List<Transaction> transactions) {
-        // Group by first word of product (category)
-        Map<String, Double> categoryRevenue = transactions.stream()
-            .collect(Collectors.groupingBy(
-                t -> t.getProduct().split(" ")[0], // First word as category
-                Collectors.summingDouble(t -> t.getRevenue().doubleValue())
-            ));
+    private Map<String, Object> analyzeProductCategory(LocalDate startDate, LocalDate endDate, String department) {
+        // Per-product sums come from the database; folding products into their
+        // category (first word) only touches one row per distinct product. Sums are exact cents.
+        Map<String, Long> categoryRevenue = new HashMap<>();
+        for (ProductRevenue row : analyticsService.sumRevenueByProduct(startDate, endDate, department, Integer.MAX_VALUE)) {
+            String category = row.getName().split(" ")[0]; // First word as category
+            categoryRevenue.merge(category, Money.units(row.getValue(), Money.DEFAULT_SCALE), Math::addExact);
+        }
         
         List<Map<String, Object>> categories = categoryRevenue.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
             .map(entry -> {
                 Map<String, Object> map = new HashMap<>();
                 map.put("name", entry.getKey());
-                map.put("value", entry.getValue());
+                map.put("value", Money.ofUnits(entry.getValue(), Money.DEFAULT_SCALE));
                 return map;
             })
             .collect(Collectors.toList());
@@ -185,26 +224,98 @@ public class TransactionController {
         return result;
     }
     
-    private Map<String, Object> analyzeComprehensive(List<Transaction> transactions) {
+    private Map<String, Object> analyzeComprehensive(LocalDate startDate, LocalDate endDate, String department, int limit) {
         Map<String, Object> result = new HashMap<>();
         
         // Overall metrics
-        double totalRevenue = transactions.stream().mapToDouble(t -> t.getRevenue().doubleValue()).sum();
-        double totalProfit = transactions.stream().mapToDouble(t -> t.getProfit().doubleValue()).sum();
-        double totalCost = transactions.stream().mapToDouble(t -> t.getCost().doubleValue()).sum();
+        TransactionTotals totals = analyticsService.sumTotals(startDate, endDate, department);
+        double totalRevenue = toDouble(totals.getRevenue());
+        double totalProfit = toDouble(totals.getProfit());
+        double totalCost = toDouble(totals.getCost());
         
         result.put("totalRevenue", totalRevenue);
         result.put("totalProfit", totalProfit);
         result.put("totalCost", totalCost);
         result.put("profitMargin", (totalProfit / totalRevenue * 100));
-        result.put("transactionCount", transactions.size());
+        result.put("transactionCount", totals.getTransactions().intValue());
         
         // Top products
-        result.put("topProducts", analyzeTopProducts(transactions).get("data"));
+        result.put("topProducts", analyzeTopProducts(startDate, endDate, department, limit).get("data"));
         
         // Department breakdown
-        result.put("departments", analyzeDepartmentPerformance(transactions).get("data"));
+        result.put("departments", analyzeDepartmentPerformance(startDate, endDate, department).get("data"));
         
         return result;
     }
+    
+    private Map<String, Object> analyzeApproximate(LocalDate startDate, LocalDate endDate, String department) {
+        TransactionSketchService.ApproximateAnalytics analytics = sketchService.summarize(startDate, endDate, department);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", "approximate");
+        result.put("approx", true);
+        result.put("departments", analytics.departments().stream().map(this::toSketchMap).collect(Collectors.toList()));
+        result.put("months", analytics.months().stream().map(this::toSketchMap).collect(Collectors.toList()));
+        result.put("overall", toSketchMap(analytics.overall()));
+        
+        return result;
+    }
+    
+    private Map<String, Object> toSketchMap(TransactionSketchService.SketchSummary summary) {
+        Map<String, Object> revenue = new HashMap<>();
+        revenue.put("p50", finiteOrNull(summary.revenueP50()));
+        revenue.put("p95", finiteOrNull(summary.revenueP95()));
+        revenue.put("p99", finiteOrNull(summary.revenueP99()));
+        
+        Map<String, Object> profit = new HashMap<>();
+        profit.put("p50", finiteOrNull(summary.profitP50()));
+        profit.put("p95", finiteOrNull(summary.profitP95()));
+        profit.put("p99", finiteOrNull(summary.profitP99()));
+        
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", summary.name());
+        map.put("transactions", summary.transactions());
+        map.put("uniqueCustomers", summary.uniqueCustomers());
+        map.put("revenue", revenue);
+        map.put("profit", profit);
+        return map;
+    }
+    
+    /**
+     * Revenue per product over the period of the same length just before the range: the same number of
+     * whole months when the range covers whole months (so rollups can still serve it), otherwise days.
+     * Empty without a range.
+     */
+    private Map<String, BigDecimal> previousPeriodRevenue(LocalDate startDate, LocalDate endDate, String department) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            return Map.of();
+        }
+        LocalDate previousStart;
+        if (startDate.getDayOfMonth() == 1 && endDate.equals(endDate.withDayOfMonth(endDate.lengthOfMonth()))) {
+            previousStart = startDate.minusMonths(ChronoUnit.MONTHS.between(startDate, endDate.plusDays(1)));
+        } else {
+            previousStart = startDate.minusDays(ChronoUnit.DAYS.between(startDate, endDate) + 1);
+        }
+        Map<String, BigDecimal> revenue = new HashMap<>();
+        for (ProductRevenue row : analyticsService.sumRevenueByProduct(previousStart, startDate.minusDays(1),
+                department, Integer.MAX_VALUE)) {
+            revenue.put(row.getName(), row.getValue());
+        }
+        return revenue;
+    }
+    
+    private static Double percentChange(BigDecimal current, BigDecimal previous) {
+        if (previous == null || previous.signum() == 0) {
+            return null;
+        }
+        return (toDouble(current) - previous.doubleValue()) / Math.abs(previous.doubleValue()) * 100;
+    }
+    
+    private static Double finiteOrNull(double value) {
+        return Double.isFinite(value) ? value : null;
+    }
+    
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
 }
@@ -2,7 +2,9 @@ package com.erp.controller;
 
 import com.erp.entity.Warehouse;
 import com.erp.repository.WarehouseRepository;
+import com.erp.service.DataChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,6 +20,9 @@ public class WarehouseController {
     @Autowired
     private WarehouseRepository warehouseRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @GetMapping
     public ResponseEntity<List<Warehouse>> getAllWarehouses(
             @RequestParam(required = false) String status,
@@ -71,6 +76,7 @@ public class WarehouseController {
     @PostMapping
     public ResponseEntity<Warehouse> createWarehouse(@RequestBody Warehouse warehouse) {
         Warehouse savedWarehouse = warehouseRepository.save(warehouse);
+        eventPublisher.publishEvent(new DataChangedEvent("warehouses"));
         return ResponseEntity.ok(savedWarehouse);
     }
     
@@ -90,7 +96,9 @@ public class WarehouseController {
                     warehouse.setType(warehouseDetails.getType());
                     warehouse.setStatus(warehouseDetails.getStatus());
                     warehouse.setNotes(warehouseDetails.getNotes());
-                    return ResponseEntity.ok(warehouseRepository.save(warehouse));
+                    Warehouse savedWarehouse = warehouseRepository.save(warehouse);
+                    eventPublisher.publishEvent(new DataChangedEvent("warehouses"));
+                    return ResponseEntity.ok(savedWarehouse);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -100,6 +108,7 @@ public class WarehouseController {
     public ResponseEntity<Void> deleteWarehouse(@PathVariable Long id) {
         if (warehouseRepository.existsById(id)) {
             warehouseRepository.deleteById(id);
+            eventPublisher.publishEvent(new DataChangedEvent("warehouses"));
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
@@ -0,0 +1,60 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the append-only activity log behind the dashboard's activity feed. Entries are created in
+ * memory and written in batches by {@link com.erp.service.ActivityLogService}; pages are read newest first
+ * by keyset on (occurred_at, id).
+ */
+@Entity
+@Table(name = "activity_log", indexes = {
+        @Index(name = "idx_activity_log_occurred", columnList = "occurred_at, id")})
+public class ActivityLogEntry {
+    
+    @Id
+    // Byte-wise collation, so that ties on occurred_at are ordered as the service orders them in memory
+    @Column(columnDefinition = "varchar(36) COLLATE \"C\"")
+    private String id; // UUID, assigned when the activity happens
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+    
+    @Column(nullable = false, length = 20)
+    private String action; // created, updated, deleted, imported, cleared, purged
+    
+    @Column(name = "entity_type", nullable = false, length = 50)
+    private String entityType;
+    
+    @Column(name = "entity_id", length = 100)
+    private String entityId;
+    
+    @Column(columnDefinition = "text")
+    private String message;
+    
+    @Column(length = 100)
+    private String username;
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+    
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+    
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+    
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+}
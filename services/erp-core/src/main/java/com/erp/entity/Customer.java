@@ -125,14 +125,21 @@ public class Customer {
     }
     
     private void updateLevel() {
+        this.level = levelFor(totalSpent);
+    }
+    
+    /**
+     * Level a customer reaches with the given total spend.
+     */
+    public static String levelFor(BigDecimal totalSpent) {
         if (totalSpent.compareTo(new BigDecimal("80000000")) >= 0) {
-            this.level = "diamond";
+            return "diamond";
         } else if (totalSpent.compareTo(new BigDecimal("50000000")) >= 0) {
-            this.level = "gold";
+            return "gold";
         } else if (totalSpent.compareTo(new BigDecimal("20000000")) >= 0) {
-            this.level = "silver";
+            return "silver";
         } else {
-            this.level = "new";
+            return "new";
         }
     }
 }
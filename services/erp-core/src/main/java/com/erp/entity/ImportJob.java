@@ -0,0 +1,130 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A CSV import submitted as a background job. The uploaded file is spooled to the local disk of
+ * the node that accepted it; jobs that node had not finished are resumed from the spool file on
+ * its next start.
+ */
+@Entity
+@Table(name = "import_jobs", indexes = @Index(name = "idx_import_jobs_node_phase", columnList = "node, phase"))
+public class ImportJob {
+    
+    public static final String QUEUED = "queued";
+    public static final String ENRICHING = "enriching";
+    public static final String WRITING = "writing";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+    public static final String CANCELLED = "cancelled";
+    
+    @Id
+    @Column(length = 36)
+    private String id;
+    
+    private String filename;
+    
+    @Column(nullable = false, length = 16)
+    private String mode; // batch, copy
+    
+    @Column(nullable = false, length = 16)
+    private String phase; // queued, enriching, writing, completed, failed, cancelled
+    
+    @Column(nullable = false)
+    private String node;
+    
+    @Column(name = "spool_path", nullable = false, length = 1024)
+    private String spoolPath;
+    
+    @Column(name = "rows_parsed", nullable = false)
+    private Long rowsParsed = 0L;
+    
+    @Column(name = "rows_written", nullable = false)
+    private Long rowsWritten = 0L;
+    
+    @Column(name = "rows_rejected", nullable = false)
+    private Long rowsRejected = 0L;
+    
+    @Column(name = "rows_duplicate", nullable = false)
+    private Long rowsDuplicate = 0L;
+    
+    // JSON array of {line, reason}, capped like the synchronous response
+    @Column(name = "rejected_rows", columnDefinition = "text")
+    private String rejectedRows;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(length = 2000)
+    private String error;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+    
+    public boolean isFinished() {
+        return COMPLETED.equals(phase) || FAILED.equals(phase) || CANCELLED.equals(phase);
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+    
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+    
+    public String getPhase() { return phase; }
+    public void setPhase(String phase) { this.phase = phase; }
+    
+    public String getNode() { return node; }
+    public void setNode(String node) { this.node = node; }
+    
+    public String getSpoolPath() { return spoolPath; }
+    public void setSpoolPath(String spoolPath) { this.spoolPath = spoolPath; }
+    
+    public Long getRowsParsed() { return rowsParsed; }
+    public void setRowsParsed(Long rowsParsed) { this.rowsParsed = rowsParsed; }
+    
+    public Long getRowsWritten() { return rowsWritten; }
+    public void setRowsWritten(Long rowsWritten) { this.rowsWritten = rowsWritten; }
+    
+    public Long getRowsRejected() { return rowsRejected; }
+    public void setRowsRejected(Long rowsRejected) { this.rowsRejected = rowsRejected; }
+    
+    public Long getRowsDuplicate() { return rowsDuplicate; }
+    public void setRowsDuplicate(Long rowsDuplicate) { this.rowsDuplicate = rowsDuplicate; }
+    
+    public String getRejectedRows() { return rejectedRows; }
+    public void setRejectedRows(String rejectedRows) { this.rejectedRows = rejectedRows; }
+    
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
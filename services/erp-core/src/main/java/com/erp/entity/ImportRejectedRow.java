@@ -0,0 +1,114 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A row a staged import rejected, kept with its raw field values so it can be downloaded, fixed and
+ * uploaded again. Rows of malformed records (bad quoting) only have the line and reason.
+ */
+@Entity
+@Table(name = "import_rejected_rows", indexes = {
+        @Index(name = "idx_import_rejected_rows_import", columnList = "import_id, line"),
+        @Index(name = "idx_import_rejected_rows_created", columnList = "created_at")})
+public class ImportRejectedRow {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "import_id", nullable = false, length = 36)
+    private String importId;
+    
+    @Column(nullable = false)
+    private Long line;
+    
+    @Column(name = "column_number")
+    private Integer columnNumber; // 1-based, null when the whole row is at fault
+    
+    @Column(nullable = false, columnDefinition = "text")
+    private String reason;
+    
+    // The fields as they appeared in the file
+    @Column(name = "transaction_date", columnDefinition = "text")
+    private String transactionDate;
+    
+    @Column(name = "customer_name", columnDefinition = "text")
+    private String customerName;
+    
+    @Column(name = "transaction_type", columnDefinition = "text")
+    private String transactionType;
+    
+    @Column(columnDefinition = "text")
+    private String revenue;
+    
+    @Column(columnDefinition = "text")
+    private String cost;
+    
+    @Column(columnDefinition = "text")
+    private String product;
+    
+    @Column(name = "order_status", columnDefinition = "text")
+    private String orderStatus;
+    
+    @Column(columnDefinition = "text")
+    private String department;
+    
+    @Column(columnDefinition = "text")
+    private String profit;
+    
+    @Column(name = "forecasted_revenue", columnDefinition = "text")
+    private String forecastedRevenue;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getImportId() { return importId; }
+    public void setImportId(String importId) { this.importId = importId; }
+    
+    public Long getLine() { return line; }
+    public void setLine(Long line) { this.line = line; }
+    
+    public Integer getColumnNumber() { return columnNumber; }
+    public void setColumnNumber(Integer columnNumber) { this.columnNumber = columnNumber; }
+    
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+    
+    public String getTransactionDate() { return transactionDate; }
+    public void setTransactionDate(String transactionDate) { this.transactionDate = transactionDate; }
+    
+    public String getCustomerName() { return customerName; }
+    public void setCustomerName(String customerName) { this.customerName = customerName; }
+    
+    public String getTransactionType() { return transactionType; }
+    public void setTransactionType(String transactionType) { this.transactionType = transactionType; }
+    
+    public String getRevenue() { return revenue; }
+    public void setRevenue(String revenue) { this.revenue = revenue; }
+    
+    public String getCost() { return cost; }
+    public void setCost(String cost) { this.cost = cost; }
+    
+    public String getProduct() { return product; }
+    public void setProduct(String product) { this.product = product; }
+    
+    public String getOrderStatus() { return orderStatus; }
+    public void setOrderStatus(String orderStatus) { this.orderStatus = orderStatus; }
+    
+    public String getDepartment() { return department; }
+    public void setDepartment(String department) { this.department = department; }
+    
+    public String getProfit() { return profit; }
+    public void setProfit(String profit) { this.profit = profit; }
+    
+    public String getForecastedRevenue() { return forecastedRevenue; }
+    public void setForecastedRevenue(String forecastedRevenue) { this.forecastedRevenue = forecastedRevenue; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
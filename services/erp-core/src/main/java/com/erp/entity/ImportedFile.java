@@ -0,0 +1,70 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A CSV file whose import committed, keyed by the SHA-256 of its bytes so that uploading the same
+ * file again is answered without parsing it. The date range lets retention forget files whose
+ * rows it removed.
+ */
+@Entity
+@Table(name = "imported_files")
+public class ImportedFile {
+    
+    @Id
+    @Column(length = 64)
+    private String hash; // hex SHA-256
+    
+    private String filename;
+    
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    @Column(name = "rows_written", nullable = false)
+    private Long rowsWritten;
+    
+    @Column(name = "rows_duplicate", nullable = false)
+    private Long rowsDuplicate;
+    
+    @Column(name = "rows_rejected", nullable = false)
+    private Long rowsRejected;
+    
+    @Column(name = "first_date")
+    private LocalDate firstDate;
+    
+    @Column(name = "last_date")
+    private LocalDate lastDate;
+    
+    @Column(name = "imported_at", nullable = false)
+    private LocalDateTime importedAt;
+    
+    // Getters and Setters
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+    
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+    
+    public Long getRowsWritten() { return rowsWritten; }
+    public void setRowsWritten(Long rowsWritten) { this.rowsWritten = rowsWritten; }
+    
+    public Long getRowsDuplicate() { return rowsDuplicate; }
+    public void setRowsDuplicate(Long rowsDuplicate) { this.rowsDuplicate = rowsDuplicate; }
+    
+    public Long getRowsRejected() { return rowsRejected; }
+    public void setRowsRejected(Long rowsRejected) { this.rowsRejected = rowsRejected; }
+    
+    public LocalDate getFirstDate() { return firstDate; }
+    public void setFirstDate(LocalDate firstDate) { this.firstDate = firstDate; }
+    
+    public LocalDate getLastDate() { return lastDate; }
+    public void setLastDate(LocalDate lastDate) { this.lastDate = lastDate; }
+    
+    public LocalDateTime getImportedAt() { return importedAt; }
+    public void setImportedAt(LocalDateTime importedAt) { this.importedAt = importedAt; }
+}
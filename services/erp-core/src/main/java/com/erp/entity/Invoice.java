@@ -1,7 +1,6 @@
 package com.erp.entity;
 
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -30,22 +29,22 @@ public class Invoice {
     private Long salesOrderId;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal subtotal;
+    private Money subtotal;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal discount;
+    private Money discount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal tax;
+    private Money tax;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal paidAmount;
+    private Money paidAmount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal balanceDue;
+    private Money balanceDue;
     
     @Column(length = 50)
     private String status; // draft, sent, paid, overdue, cancelled
@@ -81,12 +80,12 @@ public class Invoice {
     
     private void calculateBalanceDue() {
         if (totalAmount != null && paidAmount != null) {
-            balanceDue = totalAmount.subtract(paidAmount);
+            balanceDue = totalAmount.minus(paidAmount);
         }
     }
     
     private void updateStatus() {
-        if (balanceDue != null && balanceDue.compareTo(BigDecimal.ZERO) == 0) {
+        if (balanceDue != null && balanceDue.signum() == 0) {
             status = "paid";
         } else if (dueDate != null && LocalDate.now().isAfter(dueDate) && !"paid".equals(status)) {
             status = "overdue";
@@ -150,51 +149,51 @@ public class Invoice {
         this.salesOrderId = salesOrderId;
     }
     
-    public BigDecimal getSubtotal() {
+    public Money getSubtotal() {
         return subtotal;
     }
     
-    public void setSubtotal(BigDecimal subtotal) {
+    public void setSubtotal(Money subtotal) {
         this.subtotal = subtotal;
     }
     
-    public BigDecimal getDiscount() {
+    public Money getDiscount() {
         return discount;
     }
     
-    public void setDiscount(BigDecimal discount) {
+    public void setDiscount(Money discount) {
         this.discount = discount;
     }
     
-    public BigDecimal getTax() {
+    public Money getTax() {
         return tax;
     }
     
-    public void setTax(BigDecimal tax) {
+    public void setTax(Money tax) {
         this.tax = tax;
     }
     
-    public BigDecimal getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
     
-    public void setTotalAmount(BigDecimal totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
     }
     
-    public BigDecimal getPaidAmount() {
+    public Money getPaidAmount() {
         return paidAmount;
     }
     
-    public void setPaidAmount(BigDecimal paidAmount) {
+    public void setPaidAmount(Money paidAmount) {
         this.paidAmount = paidAmount;
     }
     
-    public BigDecimal getBalanceDue() {
+    public Money getBalanceDue() {
         return balanceDue;
     }
     
-    public void setBalanceDue(BigDecimal balanceDue) {
+    public void setBalanceDue(Money balanceDue) {
         this.balanceDue = balanceDue;
     }
     
@@ -0,0 +1,370 @@
+package com.erp.entity;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-point amount: a long count of minor units with an explicit decimal scale
+ * (units 12345 at scale 2 is 123.45).
+ *
+ * The static {@code units} helpers work on raw longs so parsing and summing on hot paths
+ * allocate nothing; instances exist for APIs and are written to JSON as a plain decimal
+ * number. Entities hold raw units themselves (see {@link Transaction}).
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money> {
+    
+    /** Scale of the transaction, order and invoice amount columns (cents). */
+    public static final int DEFAULT_SCALE = 2;
+    public static final int MAX_SCALE = 18;
+    public static final Money ZERO = new Money(0, DEFAULT_SCALE);
+    
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+    
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+    
+    private final long units;
+    private final int scale;
+    
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+    
+    public static Money ofUnits(long units, int scale) {
+        return new Money(units, checkScale(scale));
+    }
+    
+    /**
+     * Converts a decimal, keeping its scale (clamped to 0..{@link #MAX_SCALE}, rounding half up).
+     */
+    public static Money of(BigDecimal value) {
+        int scale = Math.max(0, Math.min(MAX_SCALE, value.scale()));
+        return new Money(units(value, scale), scale);
+    }
+    
+    public static Money of(BigDecimal value, int scale) {
+        return new Money(units(value, checkScale(scale)), scale);
+    }
+    
+    /**
+     * Parses a decimal string, keeping the number of fraction digits it was written with.
+     */
+    public static Money parse(String text) {
+        return of(new BigDecimal(text.trim()));
+    }
+    
+    public long units() {
+        return units;
+    }
+    
+    public int scale() {
+        return scale;
+    }
+    
+    public Money plus(Money other) {
+        int common = Math.max(scale, other.scale);
+        return new Money(Math.addExact(rescale(units, scale, common), rescale(other.units, other.scale, common)), common);
+    }
+    
+    public Money minus(Money other) {
+        return plus(other.negate());
+    }
+    
+    public Money negate() {
+        return new Money(Math.negateExact(units), scale);
+    }
+    
+    /**
+     * Same amount at another scale, rounding half up when digits are dropped.
+     */
+    public Money withScale(int newScale) {
+        return newScale == scale ? this : new Money(rescale(units, scale, checkScale(newScale)), newScale);
+    }
+    
+    public int signum() {
+        return Long.signum(units);
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, scale);
+    }
+    
+    public double toDouble() {
+        return toDouble(units, scale);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) {
+            return Long.compare(units, other.units);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+    
+    /**
+     * Like {@link BigDecimal#equals}, 1.50 and 1.5 are different values; use {@link #compareTo} for numeric equality.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && units == other.units && scale == other.scale;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units) * 31 + scale;
+    }
+    
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+    
+    // Allocation-free helpers on raw minor units
+    
+    /**
+     * Minor units of {@code value} at {@code scale}, rounding half up; 0 for null.
+     *
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long units(BigDecimal value, int scale) {
+        if (value == null) {
+            return 0L;
+        }
+        BigDecimal scaled = value.scale() == scale ? value : value.setScale(scale, RoundingMode.HALF_UP);
+        return scaled.unscaledValue().longValueExact();
+    }
+    
+    /**
+     * Parses an ASCII decimal such as {@code -1234.5} from {@code bytes[from, to)} into minor units
+     * at {@code scale}, rounding half up. Surrounding spaces are ignored. Nothing is allocated unless
+     * the text uses exponent notation or is malformed.
+     *
+     * @throws NumberFormatException if the range is not a decimal number or does not fit in a long
+     */
+    public static long parseUnits(byte[] bytes, int from, int to, int scale) {
+        checkScale(scale);
+        while (from < to && bytes[from] == ' ') from++;
+        while (to > from && bytes[to - 1] == ' ') to--;
+        if (from == to) {
+            throw new NumberFormatException("Empty amount");
+        }
+        int i = from;
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long value = 0;
+        int fractionDigits = -1; // -1 until the decimal point
+        boolean digits = false;
+        boolean roundUp = false;
+        for (; i < to; i++) {
+            int b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                digits = true;
+                if (fractionDigits >= scale) {
+                    // Beyond the target scale: only the first dropped digit decides rounding
+                    if (fractionDigits == scale) {
+                        roundUp = b >= '5';
+                    }
+                    fractionDigits++;
+                    continue;
+                }
+                value = accumulate(value, b - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b == 'e' || b == 'E') {
+                return exponentUnits(new String(bytes, from, to - from, StandardCharsets.US_ASCII), scale);
+            } else {
+                throw malformed(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            }
+        }
+        if (!digits) {
+            throw malformed(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+        }
+        return finish(value, Math.max(fractionDigits, 0), scale, roundUp, negative);
+    }
+    
+    /**
+     * Same as {@link #parseUnits(byte[], int, int, int)} over {@code text[from, to)}.
+     */
+    public static long parseUnits(CharSequence text, int from, int to, int scale) {
+        checkScale(scale);
+        while (from < to && text.charAt(from) == ' ') from++;
+        while (to > from && text.charAt(to - 1) == ' ') to--;
+        if (from == to) {
+            throw new NumberFormatException("Empty amount");
+        }
+        int i = from;
+        boolean negative = false;
+        if (text.charAt(i) == '-' || text.charAt(i) == '+') {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long value = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        boolean roundUp = false;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (fractionDigits >= scale) {
+                    if (fractionDigits == scale) {
+                        roundUp = c >= '5';
+                    }
+                    fractionDigits++;
+                    continue;
+                }
+                value = accumulate(value, c - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c == 'e' || c == 'E') {
+                return exponentUnits(text.subSequence(from, to).toString(), scale);
+            } else {
+                throw malformed(text.subSequence(from, to));
+            }
+        }
+        if (!digits) {
+            throw malformed(text.subSequence(from, to));
+        }
+        return finish(value, Math.max(fractionDigits, 0), scale, roundUp, negative);
+    }
+    
+    public static long parseUnits(CharSequence text, int scale) {
+        return parseUnits(text, 0, text.length(), scale);
+    }
+    
+    /**
+     * Converts minor units between scales, rounding half up (away from zero) when digits are dropped.
+     */
+    public static long rescale(long units, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return units;
+        }
+        if (toScale > fromScale) {
+            return Math.multiplyExact(units, POW10[toScale - fromScale]);
+        }
+        long divisor = POW10[fromScale - toScale];
+        long quotient = units / divisor;
+        long remainder = Math.abs(units % divisor);
+        if (remainder * 2 >= divisor) {
+            quotient += units < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+    
+    /**
+     * Writes {@code units} at {@code scale} as ASCII (e.g. {@code -1234.50}) into {@code dest} at
+     * {@code offset}, which needs room for 21 + scale bytes.
+     *
+     * @return offset just past the written text
+     */
+    public static int writeUnits(long units, int scale, byte[] dest, int offset) {
+        checkScale(scale);
+        if (units < 0) {
+            dest[offset++] = '-';
+        }
+        // Digits are produced from the low end; negative values avoid overflow at Long.MIN_VALUE
+        long rest = units < 0 ? units : -units;
+        int digits = 0;
+        long probe = rest;
+        do {
+            digits++;
+            probe /= 10;
+        } while (probe != 0);
+        int length = Math.max(digits, scale + 1) + (scale > 0 ? 1 : 0);
+        int end = offset + length;
+        int at = end;
+        for (int i = 0; at > offset; i++) {
+            if (scale > 0 && i == scale) {
+                dest[--at] = '.';
+                continue;
+            }
+            dest[--at] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        }
+        return end;
+    }
+    
+    public static BigDecimal toBigDecimal(long units, int scale) {
+        return BigDecimal.valueOf(units, scale);
+    }
+    
+    public static double toDouble(long units, int scale) {
+        // Correctly rounded for |units| < 2^53: both operands are exact doubles
+        return units / (double) POW10[scale];
+    }
+    
+    private static long accumulate(long value, int digit) {
+        if (value > (Long.MAX_VALUE - digit) / 10) {
+            throw new NumberFormatException("Amount out of range");
+        }
+        return value * 10 + digit;
+    }
+    
+    private static long finish(long value, int fractionDigits, int scale, boolean roundUp, boolean negative) {
+        if (fractionDigits < scale) {
+            long factor = POW10[scale - fractionDigits];
+            if (value > Long.MAX_VALUE / factor) {
+                throw new NumberFormatException("Amount out of range");
+            }
+            value *= factor;
+        } else if (roundUp) {
+            if (value == Long.MAX_VALUE) {
+                throw new NumberFormatException("Amount out of range");
+            }
+            value++;
+        }
+        return negative ? -value : value;
+    }
+    
+    // Rare in CSV exports (spreadsheets writing 1.5E3), so this path may allocate
+    private static long exponentUnits(String text, int scale) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw malformed(text);
+        }
+        long units;
+        try {
+            units = units(value, scale);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range");
+        }
+        // The plain path stops at -Long.MAX_VALUE too, which leaves Long.MIN_VALUE free as a marker
+        if (units == Long.MIN_VALUE) {
+            throw new NumberFormatException("Amount out of range");
+        }
+        return units;
+    }
+    
+    private static NumberFormatException malformed(CharSequence text) {
+        return new NumberFormatException("Invalid amount: \"" + text + "\"");
+    }
+    
+    private static int checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale must be between 0 and " + MAX_SCALE);
+        }
+        return scale;
+    }
+}
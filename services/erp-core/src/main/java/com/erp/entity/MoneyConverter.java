@@ -0,0 +1,28 @@
+package com.erp.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Mutability;
+import org.hibernate.type.descriptor.java.Immutability;
+
+import java.math.BigDecimal;
+
+/**
+ * Stores {@link Money} attributes in numeric columns. Applied automatically to every
+ * attribute of type Money; the amount keeps the scale the column returns. Money is
+ * immutable, so Hibernate snapshots it by reference instead of round-tripping it.
+ */
+@Converter(autoApply = true)
+@Mutability(Immutability.class)
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+    
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money attribute) {
+        return attribute != null ? attribute.toBigDecimal() : null;
+    }
+    
+    @Override
+    public Money convertToEntityAttribute(BigDecimal dbData) {
+        return dbData != null ? Money.of(dbData) : null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.erp.entity;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads {@link Money} from a JSON number or a numeric string, keeping the written scale.
+ */
+public class MoneyJsonDeserializer extends StdDeserializer<Money> {
+    
+    public MoneyJsonDeserializer() {
+        super(Money.class);
+    }
+    
+    @Override
+    public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return Money.of(p.getDecimalValue());
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Money.parse(p.getText());
+            } catch (NumberFormatException | ArithmeticException e) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), "not a decimal amount");
+            }
+        }
+        return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+    }
+}
@@ -0,0 +1,22 @@
+package com.erp.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Money} as a JSON number with its scale intact, e.g. {@code 120.50}.
+ */
+public class MoneyJsonSerializer extends StdSerializer<Money> {
+    
+    public MoneyJsonSerializer() {
+        super(Money.class);
+    }
+    
+    @Override
+    public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeNumber(value.toBigDecimal());
+    }
+}
@@ -26,6 +26,10 @@ public class Product {
     @Column(nullable = false)
     private Integer stock;
     
+    // Stock below this raises a low-stock alert; null uses alerts.low-stock.default-threshold
+    @Column(name = "reorder_level")
+    private Integer reorderLevel;
+    
     @Column(name = "sold_count")
     private Integer soldCount;
     
@@ -97,15 +101,31 @@ public class Product {
         this.updatedAt = LocalDateTime.now();
         
         // Auto-update status based on stock
+        this.status = statusFor(stock);
+    }
+    
+    /**
+     * Status implied by the quantity in stock.
+     */
+    public static String statusFor(int stock) {
         if (stock == 0) {
-            this.status = "out";
+            return "out";
         } else if (stock < 10) {
-            this.status = "low";
+            return "low";
         } else {
-            this.status = "active";
+            return "active";
         }
     }
     
+    public Integer getReorderLevel() {
+        return reorderLevel;
+    }
+    
+    public void setReorderLevel(Integer reorderLevel) {
+        this.reorderLevel = reorderLevel;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
     public Integer getSoldCount() {
         return soldCount;
     }
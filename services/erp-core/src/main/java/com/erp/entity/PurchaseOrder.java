@@ -1,7 +1,6 @@
 package com.erp.entity;
 
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -30,16 +29,16 @@ public class PurchaseOrder {
     private String supplierName;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal discount;
+    private Money discount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal tax;
+    private Money tax;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal grandTotal;
+    private Money grandTotal;
     
     @Column(length = 50)
     private String status; // draft, sent, confirmed, received, cancelled
@@ -131,35 +130,35 @@ public class PurchaseOrder {
         this.supplierName = supplierName;
     }
     
-    public BigDecimal getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
     
-    public void setTotalAmount(BigDecimal totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
     }
     
-    public BigDecimal getDiscount() {
+    public Money getDiscount() {
         return discount;
     }
     
-    public void setDiscount(BigDecimal discount) {
+    public void setDiscount(Money discount) {
         this.discount = discount;
     }
     
-    public BigDecimal getTax() {
+    public Money getTax() {
         return tax;
     }
     
-    public void setTax(BigDecimal tax) {
+    public void setTax(Money tax) {
         this.tax = tax;
     }
     
-    public BigDecimal getGrandTotal() {
+    public Money getGrandTotal() {
         return grandTotal;
     }
     
-    public void setGrandTotal(BigDecimal grandTotal) {
+    public void setGrandTotal(Money grandTotal) {
         this.grandTotal = grandTotal;
     }
     
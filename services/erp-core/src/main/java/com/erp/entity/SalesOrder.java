@@ -1,7 +1,6 @@
 package com.erp.entity;
 
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -25,16 +24,16 @@ public class SalesOrder {
     private String customerName;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal discount;
+    private Money discount;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal tax;
+    private Money tax;
     
     @Column(precision = 15, scale = 2)
-    private BigDecimal grandTotal;
+    private Money grandTotal;
     
     @Column(length = 50)
     private String status; // pending, confirmed, processing, shipped, delivered, cancelled
@@ -113,35 +112,35 @@ public class SalesOrder {
         this.customerName = customerName;
     }
     
-    public BigDecimal getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
     
-    public void setTotalAmount(BigDecimal totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
     }
     
-    public BigDecimal getDiscount() {
+    public Money getDiscount() {
         return discount;
     }
     
-    public void setDiscount(BigDecimal discount) {
+    public void setDiscount(Money discount) {
         this.discount = discount;
     }
     
-    public BigDecimal getTax() {
+    public Money getTax() {
         return tax;
     }
     
-    public void setTax(BigDecimal tax) {
+    public void setTax(Money tax) {
         this.tax = tax;
     }
     
-    public BigDecimal getGrandTotal() {
+    public Money getGrandTotal() {
         return grandTotal;
     }
     
-    public void setGrandTotal(BigDecimal grandTotal) {
+    public void setGrandTotal(Money grandTotal) {
         this.grandTotal = grandTotal;
     }
     
@@ -1,18 +1,35 @@
 package com.erp.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "transactions")
+// Column order; the amount properties would otherwise follow the fields
+@JsonPropertyOrder({"id", "transactionDate", "customerName", "transactionType", "revenue", "cost", "product",
+        "orderStatus", "department", "profit", "forecastedRevenue", "fingerprint"})
+@Table(name = "transactions", uniqueConstraints = @UniqueConstraint(
+        name = "uk_transactions_fingerprint",
+        columnNames = {"fingerprint", "transaction_date"}))
 public class Transaction {
     
+    /**
+     * Units value of an absent (null) amount. Not a value {@link Money#parseUnits} returns, and refused by
+     * the BigDecimal setters.
+     */
+    public static final long NO_AMOUNT = Long.MIN_VALUE;
+    
+    // Sequence ids let Hibernate batch inserts; pooled-lo blocks (see hibernate.id.optimizer.pooled.preferred)
+    // never overlap the column default used by data.sql and manual inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_id_seq", allocationSize = 500)
+    @Column(columnDefinition = "bigint default nextval('transactions_id_seq')")
     private Long id;
     
-    @Column(name = "transaction_date")
+    @Column(name = "transaction_date", nullable = false)
     private LocalDate transactionDate;
     
     @Column(name = "customer_name")
@@ -21,18 +38,27 @@ public class Transaction {
     @Column(name = "transaction_type")
     private String transactionType;
     
-    private BigDecimal revenue;
-    private BigDecimal cost;
+    // Amounts are held in cents (Money.DEFAULT_SCALE) so that imports parse, hash and write them without
+    // allocating; the persistent and JSON properties are the BigDecimal accessors
+    @Transient
+    private long revenueUnits = NO_AMOUNT;
+    @Transient
+    private long costUnits = NO_AMOUNT;
     private String product;
     
     @Column(name = "order_status")
     private String orderStatus;
     
     private String department;
-    private BigDecimal profit;
+    @Transient
+    private long profitUnits = NO_AMOUNT;
+    @Transient
+    private long forecastedRevenueUnits = NO_AMOUNT;
     
-    @Column(name = "forecasted_revenue")
-    private BigDecimal forecastedRevenue;
+    // Hash of the normalized row set by the importer, which skips rows already present. Unique together
+    // with the partition key (the date is part of the hash anyway); null for rows added by other means.
+    @Column(columnDefinition = "bytea")
+    private byte[] fingerprint;
     
     // Constructors
     public Transaction() {}
@@ -43,13 +69,13 @@ public class Transaction {
         this.transactionDate = transactionDate;
         this.customerName = customerName;
         this.transactionType = transactionType;
-        this.revenue = revenue;
-        this.cost = cost;
+        setRevenue(revenue);
+        setCost(cost);
         this.product = product;
         this.orderStatus = orderStatus;
         this.department = department;
-        this.profit = profit;
-        this.forecastedRevenue = forecastedRevenue;
+        setProfit(profit);
+        setForecastedRevenue(forecastedRevenue);
     }
     
     // Getters and Setters
@@ -65,11 +91,21 @@ public class Transaction {
     public String getTransactionType() { return transactionType; }
     public void setTransactionType(String transactionType) { this.transactionType = transactionType; }
     
-    public BigDecimal getRevenue() { return revenue; }
-    public void setRevenue(BigDecimal revenue) { this.revenue = revenue; }
+    @Access(AccessType.PROPERTY)
+    public BigDecimal getRevenue() { return amount(revenueUnits); }
+    public void setRevenue(BigDecimal revenue) { this.revenueUnits = units(revenue); }
+    
+    @JsonIgnore
+    public long getRevenueUnits() { return revenueUnits; }
+    public void setRevenueUnits(long revenueUnits) { this.revenueUnits = revenueUnits; }
     
-    public BigDecimal getCost() { return cost; }
-    public void setCost(BigDecimal cost) { this.cost = cost; }
+    @Access(AccessType.PROPERTY)
+    public BigDecimal getCost() { return amount(costUnits); }
+    public void setCost(BigDecimal cost) { this.costUnits = units(cost); }
+    
+    @JsonIgnore
+    public long getCostUnits() { return costUnits; }
+    public void setCostUnits(long costUnits) { this.costUnits = costUnits; }
     
     public String getProduct() { return product; }
     public void setProduct(String product) { this.product = product; }
@@ -80,9 +116,39 @@ public class Transaction {
     public String getDepartment() { return department; }
     public void setDepartment(String department) { this.department = department; }
     
-    public BigDecimal getProfit() { return profit; }
-    public void setProfit(BigDecimal profit) { this.profit = profit; }
+    @Access(AccessType.PROPERTY)
+    public BigDecimal getProfit() { return amount(profitUnits); }
+    public void setProfit(BigDecimal profit) { this.profitUnits = units(profit); }
+    
+    @JsonIgnore
+    public long getProfitUnits() { return profitUnits; }
+    public void setProfitUnits(long profitUnits) { this.profitUnits = profitUnits; }
+    
+    @Access(AccessType.PROPERTY)
+    @Column(name = "forecasted_revenue")
+    public BigDecimal getForecastedRevenue() { return amount(forecastedRevenueUnits); }
+    public void setForecastedRevenue(BigDecimal forecastedRevenue) { this.forecastedRevenueUnits = units(forecastedRevenue); }
+    
+    @JsonIgnore
+    public long getForecastedRevenueUnits() { return forecastedRevenueUnits; }
+    public void setForecastedRevenueUnits(long forecastedRevenueUnits) { this.forecastedRevenueUnits = forecastedRevenueUnits; }
+    
+    public byte[] getFingerprint() { return fingerprint; }
+    public void setFingerprint(byte[] fingerprint) { this.fingerprint = fingerprint; }
     
-    public BigDecimal getForecastedRevenue() { return forecastedRevenue; }
-    public void setForecastedRevenue(BigDecimal forecastedRevenue) { this.forecastedRevenue = forecastedRevenue; }
+    private static BigDecimal amount(long units) {
+        return units != NO_AMOUNT ? Money.toBigDecimal(units, Money.DEFAULT_SCALE) : null;
+    }
+    
+    // Rounded half up to cents; amounts beyond a long of cents are refused rather than truncated
+    private static long units(BigDecimal amount) {
+        if (amount == null) {
+            return NO_AMOUNT;
+        }
+        long units = Money.units(amount, Money.DEFAULT_SCALE);
+        if (units == NO_AMOUNT) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return units;
+    }
 }
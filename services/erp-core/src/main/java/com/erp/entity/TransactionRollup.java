@@ -0,0 +1,72 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated transactions at (month, department, product, transaction type) grain.
+ * Maintained incrementally by the CSV import; null dimensions are stored as ''.
+ */
+@Entity
+@Table(name = "transaction_rollups", uniqueConstraints = @UniqueConstraint(
+        name = "uk_transaction_rollups_bucket",
+        columnNames = {"month_start", "department", "product", "transaction_type"}))
+public class TransactionRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+    
+    @Column(nullable = false)
+    private String department;
+    
+    @Column(nullable = false)
+    private String product;
+    
+    @Column(name = "transaction_type", nullable = false)
+    private String transactionType;
+    
+    @Column(precision = 19, scale = 2)
+    private BigDecimal revenue;
+    
+    @Column(precision = 19, scale = 2)
+    private BigDecimal cost;
+    
+    @Column(precision = 19, scale = 2)
+    private BigDecimal profit;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public LocalDate getMonthStart() { return monthStart; }
+    public void setMonthStart(LocalDate monthStart) { this.monthStart = monthStart; }
+    
+    public String getDepartment() { return department; }
+    public void setDepartment(String department) { this.department = department; }
+    
+    public String getProduct() { return product; }
+    public void setProduct(String product) { this.product = product; }
+    
+    public String getTransactionType() { return transactionType; }
+    public void setTransactionType(String transactionType) { this.transactionType = transactionType; }
+    
+    public BigDecimal getRevenue() { return revenue; }
+    public void setRevenue(BigDecimal revenue) { this.revenue = revenue; }
+    
+    public BigDecimal getCost() { return cost; }
+    public void setCost(BigDecimal cost) { this.cost = cost; }
+    
+    public BigDecimal getProfit() { return profit; }
+    public void setProfit(BigDecimal profit) { this.profit = profit; }
+    
+    public Long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(Long transactionCount) { this.transactionCount = transactionCount; }
+}
@@ -0,0 +1,60 @@
+package com.erp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Mergeable per-(month, department) sketches backing approximate analytics:
+ * a HyperLogLog over customer names and t-digests over revenue and profit.
+ * Maintained by the CSV import; a null department is stored as ''.
+ */
+@Entity
+@Table(name = "transaction_sketches", uniqueConstraints = @UniqueConstraint(
+        name = "uk_transaction_sketches_bucket",
+        columnNames = {"month_start", "department"}))
+public class TransactionSketch {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+    
+    @Column(nullable = false)
+    private String department;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount;
+    
+    @Column(name = "customers_hll", nullable = false, length = 65536)
+    private byte[] customersHll;
+    
+    @Column(name = "revenue_digest", nullable = false, length = 65536)
+    private byte[] revenueDigest;
+    
+    @Column(name = "profit_digest", nullable = false, length = 65536)
+    private byte[] profitDigest;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public LocalDate getMonthStart() { return monthStart; }
+    public void setMonthStart(LocalDate monthStart) { this.monthStart = monthStart; }
+    
+    public String getDepartment() { return department; }
+    public void setDepartment(String department) { this.department = department; }
+    
+    public Long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(Long transactionCount) { this.transactionCount = transactionCount; }
+    
+    public byte[] getCustomersHll() { return customersHll; }
+    public void setCustomersHll(byte[] customersHll) { this.customersHll = customersHll; }
+    
+    public byte[] getRevenueDigest() { return revenueDigest; }
+    public void setRevenueDigest(byte[] revenueDigest) { this.revenueDigest = revenueDigest; }
+    
+    public byte[] getProfitDigest() { return profitDigest; }
+    public void setProfitDigest(byte[] profitDigest) { this.profitDigest = profitDigest; }
+}
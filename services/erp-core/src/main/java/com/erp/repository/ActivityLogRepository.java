@@ -0,0 +1,21 @@
+package com.erp.repository;
+
+import com.erp.entity.ActivityLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ActivityLogRepository extends JpaRepository<ActivityLogEntry, String> {
+    
+    @Query(value = "SELECT * FROM activity_log ORDER BY occurred_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<ActivityLogEntry> findLatest(int limit);
+    
+    // Keyset page: the row comparison walks idx_activity_log_occurred backwards from the cursor
+    @Query(value = "SELECT * FROM activity_log WHERE (occurred_at, id) < (:occurredAt, :id)"
+            + " ORDER BY occurred_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<ActivityLogEntry> findBefore(LocalDateTime occurredAt, String id, int limit);
+}
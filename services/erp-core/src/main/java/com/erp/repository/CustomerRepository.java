@@ -1,6 +1,7 @@
 package com.erp.repository;
 
 import com.erp.entity.Customer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -16,7 +17,7 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     List<Customer> findByLevel(String level);
     
     @Query("SELECT c FROM Customer c ORDER BY c.totalSpent DESC")
-    List<Customer> findTopCustomers();
+    List<Customer> findTopCustomers(Pageable pageable);
     
     @Query("SELECT c FROM Customer c WHERE c.level = 'diamond' OR c.level = 'gold' ORDER BY c.totalSpent DESC")
     List<Customer> findVIPCustomers();
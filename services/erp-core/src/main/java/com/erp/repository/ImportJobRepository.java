@@ -0,0 +1,26 @@
+package com.erp.repository;
+
+import com.erp.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, String> {
+    
+    List<ImportJob> findByNodeAndPhaseIn(String node, Collection<String> phases);
+    
+    // Runs inside the import transaction, so the job is marked completed exactly when its rows commit
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.phase = 'completed', j.rowsParsed = :rowsParsed, j.rowsWritten = :rowsWritten,"
+            + " j.rowsRejected = :rowsRejected, j.rowsDuplicate = :rowsDuplicate, j.rejectedRows = :rejectedRows,"
+            + " j.error = NULL, j.finishedAt = :finishedAt"
+            + " WHERE j.id = :id")
+    int markCompleted(String id, long rowsParsed, long rowsWritten, long rowsRejected, long rowsDuplicate,
+                      String rejectedRows, LocalDateTime finishedAt);
+}
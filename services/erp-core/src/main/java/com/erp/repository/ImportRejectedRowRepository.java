@@ -0,0 +1,23 @@
+package com.erp.repository;
+
+import com.erp.entity.ImportRejectedRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ImportRejectedRowRepository extends JpaRepository<ImportRejectedRow, Long> {
+    
+    boolean existsByImportId(String importId);
+    
+    @Modifying
+    @Query("DELETE FROM ImportRejectedRow r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(LocalDateTime cutoff);
+    
+    @Modifying
+    @Query(value = "TRUNCATE TABLE import_rejected_rows", nativeQuery = true)
+    void truncate();
+}
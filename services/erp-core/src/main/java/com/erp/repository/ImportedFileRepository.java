@@ -0,0 +1,30 @@
+package com.erp.repository;
+
+import com.erp.entity.ImportedFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Repository
+public interface ImportedFileRepository extends JpaRepository<ImportedFile, String> {
+    
+    // Runs inside the import transaction; two concurrent uploads of the same file both commit
+    @Modifying
+    @Query(value = "INSERT INTO imported_files (hash, filename, size_bytes, rows_written, rows_duplicate, rows_rejected,"
+            + " first_date, last_date, imported_at)"
+            + " VALUES (:hash, :filename, :sizeBytes, :rowsWritten, :rowsDuplicate, :rowsRejected,"
+            + " CAST(:firstDate AS date), CAST(:lastDate AS date), :importedAt)"
+            + " ON CONFLICT (hash) DO NOTHING",
+            nativeQuery = true)
+    int record(String hash, String filename, long sizeBytes, long rowsWritten, long rowsDuplicate, long rowsRejected,
+               LocalDate firstDate, LocalDate lastDate, LocalDateTime importedAt);
+    
+    // Retention: a file with purged rows must be importable again
+    @Modifying
+    @Query("DELETE FROM ImportedFile f WHERE f.firstDate < :monthStart")
+    int deleteBefore(LocalDate monthStart);
+}
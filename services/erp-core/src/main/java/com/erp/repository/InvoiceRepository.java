@@ -23,6 +23,10 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     @Query("SELECT i FROM Invoice i WHERE i.dueDate < :today AND i.status NOT IN ('paid', 'cancelled')")
     List<Invoice> findOverdueInvoices(LocalDate today);
     
+    // Overdue now or once their due date passes
+    @Query("SELECT i FROM Invoice i WHERE i.dueDate IS NOT NULL AND i.status NOT IN ('paid', 'cancelled')")
+    List<Invoice> findOpenWithDueDate();
+    
     @Query("SELECT i FROM Invoice i WHERE i.invoiceDate >= :startDate ORDER BY i.invoiceDate DESC")
     List<Invoice> findRecentInvoices(LocalDate startDate);
     
@@ -1,6 +1,7 @@
 package com.erp.repository;
 
 import com.erp.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -18,11 +19,14 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByStatus(String status);
     
     @Query("SELECT p FROM Product p ORDER BY p.soldCount DESC")
-    List<Product> findTopSellingProducts();
+    List<Product> findTopSellingProducts(Pageable pageable);
     
     @Query("SELECT p FROM Product p WHERE p.stock < 10 AND p.stock > 0")
     List<Product> findLowStockProducts();
     
     @Query("SELECT p FROM Product p WHERE p.stock = 0")
     List<Product> findOutOfStockProducts();
+    
+    @Query("SELECT p FROM Product p WHERE p.stock < COALESCE(p.reorderLevel, :defaultLevel)")
+    List<Product> findBelowReorderLevel(int defaultLevel);
 }
@@ -26,6 +26,10 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Lo
     @Query("SELECT po FROM PurchaseOrder po WHERE po.expectedDate < :today AND po.status NOT IN ('received', 'cancelled')")
     List<PurchaseOrder> findPendingOrders(LocalDate today);
     
+    // Late now or once their expected date passes
+    @Query("SELECT po FROM PurchaseOrder po WHERE po.expectedDate IS NOT NULL AND po.status NOT IN ('received', 'cancelled')")
+    List<PurchaseOrder> findOpenWithExpectedDate();
+    
     @Query("SELECT COUNT(po) FROM PurchaseOrder po WHERE po.status = :status")
     Long countByStatus(String status);
     
@@ -31,4 +31,7 @@ public interface SalesOrderRepository extends JpaRepository<SalesOrder, Long> {
     
     @Query("SELECT SUM(so.grandTotal) FROM SalesOrder so WHERE so.status NOT IN ('cancelled')")
     Double getTotalRevenue();
+    
+    @Query("SELECT COUNT(so) FROM SalesOrder so WHERE so.orderDate >= :from AND so.orderDate < :to AND so.status <> 'cancelled'")
+    long countOrdersBetween(LocalDateTime from, LocalDateTime to);
 }
@@ -1,16 +1,43 @@
 package com.erp.repository;
 
 import com.erp.entity.Transaction;
+import com.erp.repository.projection.DepartmentMetrics;
+import com.erp.repository.projection.MonthlyMetrics;
+import com.erp.repository.projection.ProductRevenue;
+import com.erp.repository.projection.TransactionTotals;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     
+    // Shared analytics filter. The date range is a plain BETWEEN so PostgreSQL can prune monthly
+    // partitions even with generic plans: pass lowerBound()/upperBound() instead of null dates.
+    // A null department disables that predicate.
+    String ANALYTICS_FILTER = " WHERE t.transactionDate BETWEEN :startDate AND :endDate"
+            + " AND (CAST(:department AS String) IS NULL OR LOWER(t.department) = LOWER(CAST(:department AS String)))";
+    
+    LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+    
+    static LocalDate lowerBound(LocalDate startDate) {
+        return startDate != null ? startDate : MIN_DATE;
+    }
+    
+    static LocalDate upperBound(LocalDate endDate) {
+        return endDate != null ? endDate : MAX_DATE;
+    }
+    
     @Query("SELECT t FROM Transaction t WHERE t.transactionDate BETWEEN ?1 AND ?2")
     List<Transaction> findByDateRange(LocalDate startDate, LocalDate endDate);
     
@@ -19,4 +46,43 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     @Query("SELECT SUM(t.revenue) FROM Transaction t WHERE t.transactionDate BETWEEN ?1 AND ?2")
     Double sumRevenueByDateRange(LocalDate startDate, LocalDate endDate);
+    
+    // Analytics aggregations (grouped in the database, only aggregated rows are returned)
+    
+    @Query("SELECT t.product AS name, SUM(t.revenue) AS value FROM Transaction t" + ANALYTICS_FILTER
+            + " GROUP BY t.product ORDER BY SUM(t.revenue) DESC")
+    List<ProductRevenue> sumRevenueByProduct(LocalDate startDate, LocalDate endDate, String department, Pageable pageable);
+    
+    @Query("SELECT t.department AS name, SUM(t.revenue) AS revenue, SUM(t.profit) AS profit,"
+            + " SUM(t.cost) AS cost, COUNT(t) AS transactions FROM Transaction t" + ANALYTICS_FILTER
+            + " GROUP BY t.department ORDER BY SUM(t.revenue) DESC")
+    List<DepartmentMetrics> sumByDepartment(LocalDate startDate, LocalDate endDate, String department);
+    
+    @Query("SELECT YEAR(t.transactionDate) AS year, MONTH(t.transactionDate) AS month,"
+            + " SUM(t.revenue) AS revenue, SUM(t.profit) AS profit, SUM(t.cost) AS cost FROM Transaction t"
+            + ANALYTICS_FILTER
+            + " GROUP BY YEAR(t.transactionDate), MONTH(t.transactionDate)"
+            + " ORDER BY YEAR(t.transactionDate), MONTH(t.transactionDate)")
+    List<MonthlyMetrics> sumByMonth(LocalDate startDate, LocalDate endDate, String department);
+    
+    @Query("SELECT SUM(t.revenue) AS revenue, SUM(t.profit) AS profit, SUM(t.cost) AS cost,"
+            + " COUNT(t) AS transactions FROM Transaction t" + ANALYTICS_FILTER)
+    TransactionTotals sumTotals(LocalDate startDate, LocalDate endDate, String department);
+    
+    // Empties every partition at once instead of deleting row by row
+    @Modifying
+    @Query(value = "TRUNCATE TABLE transactions", nativeQuery = true)
+    void truncate();
+    
+    // Scalar rows for the column store: date, revenue, cost, profit, product, department, type, status
+    @Query("SELECT t.transactionDate, t.revenue, t.cost, t.profit, t.product, t.department,"
+            + " t.transactionType, t.orderStatus FROM Transaction t ORDER BY t.transactionDate")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<Object[]> streamColumnRows();
+    
+    // Scalar rows for the approximate-analytics sketches: date, department, customer, revenue, profit
+    @Query("SELECT t.transactionDate, t.department, t.customerName, t.revenue, t.profit FROM Transaction t"
+            + " WHERE t.transactionDate IS NOT NULL")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<Object[]> streamSketchRows();
 }
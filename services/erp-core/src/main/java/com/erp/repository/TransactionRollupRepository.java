@@ -0,0 +1,80 @@
+package com.erp.repository;
+
+import com.erp.entity.TransactionRollup;
+import com.erp.repository.projection.DepartmentMetrics;
+import com.erp.repository.projection.MonthlyMetrics;
+import com.erp.repository.projection.ProductRevenue;
+import com.erp.repository.projection.TransactionTotals;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TransactionRollupRepository extends JpaRepository<TransactionRollup, Long> {
+    
+    // Date bounds must be month aligned (first/last day); null disables the predicate
+    String ROLLUP_FILTER = " WHERE (CAST(:startDate AS LocalDate) IS NULL OR r.monthStart >= :startDate)"
+            + " AND (CAST(:endDate AS LocalDate) IS NULL OR r.monthStart <= :endDate)"
+            + " AND (CAST(:department AS String) IS NULL OR LOWER(r.department) = LOWER(CAST(:department AS String)))";
+    
+    // Retention: drops buckets of months removed from the transactions table
+    @Modifying
+    @Query("DELETE FROM TransactionRollup r WHERE r.monthStart < :monthStart")
+    int deleteBefore(LocalDate monthStart);
+    
+    // No auto-flush: it would dirty-check every transaction the import just saved, once per bucket
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query(value = "INSERT INTO transaction_rollups (month_start, department, product, transaction_type,"
+            + " revenue, cost, profit, transaction_count)"
+            + " VALUES (:monthStart, :department, :product, :transactionType, :revenue, :cost, :profit, :transactionCount)"
+            + " ON CONFLICT (month_start, department, product, transaction_type) DO UPDATE SET"
+            + " revenue = transaction_rollups.revenue + EXCLUDED.revenue,"
+            + " cost = transaction_rollups.cost + EXCLUDED.cost,"
+            + " profit = transaction_rollups.profit + EXCLUDED.profit,"
+            + " transaction_count = transaction_rollups.transaction_count + EXCLUDED.transaction_count",
+            nativeQuery = true)
+    int upsertBucket(LocalDate monthStart, String department, String product, String transactionType,
+                     BigDecimal revenue, BigDecimal cost, BigDecimal profit, long transactionCount);
+    
+    @Modifying
+    @Query(value = "INSERT INTO transaction_rollups (month_start, department, product, transaction_type,"
+            + " revenue, cost, profit, transaction_count)"
+            + " SELECT CAST(date_trunc('month', t.transaction_date) AS date), COALESCE(t.department, ''),"
+            + " COALESCE(t.product, ''), COALESCE(t.transaction_type, ''),"
+            + " COALESCE(SUM(t.revenue), 0), COALESCE(SUM(t.cost), 0), COALESCE(SUM(t.profit), 0), COUNT(*)"
+            + " FROM transactions t WHERE t.transaction_date IS NOT NULL"
+            + " GROUP BY 1, 2, 3, 4",
+            nativeQuery = true)
+    int insertFromTransactions();
+    
+    // Analytics reads, same projections as TransactionRepository
+    
+    @Query("SELECT NULLIF(r.product, '') AS name, SUM(r.revenue) AS value FROM TransactionRollup r" + ROLLUP_FILTER
+            + " GROUP BY r.product ORDER BY SUM(r.revenue) DESC")
+    List<ProductRevenue> sumRevenueByProduct(LocalDate startDate, LocalDate endDate, String department, Pageable pageable);
+    
+    @Query("SELECT NULLIF(r.department, '') AS name, SUM(r.revenue) AS revenue, SUM(r.profit) AS profit,"
+            + " SUM(r.cost) AS cost, SUM(r.transactionCount) AS transactions FROM TransactionRollup r" + ROLLUP_FILTER
+            + " GROUP BY r.department ORDER BY SUM(r.revenue) DESC")
+    List<DepartmentMetrics> sumByDepartment(LocalDate startDate, LocalDate endDate, String department);
+    
+    @Query("SELECT YEAR(r.monthStart) AS year, MONTH(r.monthStart) AS month,"
+            + " SUM(r.revenue) AS revenue, SUM(r.profit) AS profit, SUM(r.cost) AS cost FROM TransactionRollup r"
+            + ROLLUP_FILTER
+            + " GROUP BY r.monthStart ORDER BY r.monthStart")
+    List<MonthlyMetrics> sumByMonth(LocalDate startDate, LocalDate endDate, String department);
+    
+    @Query("SELECT SUM(r.revenue) AS revenue, SUM(r.profit) AS profit, SUM(r.cost) AS cost,"
+            + " COALESCE(SUM(r.transactionCount), 0) AS transactions FROM TransactionRollup r" + ROLLUP_FILTER)
+    TransactionTotals sumTotals(LocalDate startDate, LocalDate endDate, String department);
+}
@@ -0,0 +1,39 @@
+package com.erp.repository;
+
+import com.erp.entity.TransactionSketch;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TransactionSketchRepository extends JpaRepository<TransactionSketch, Long> {
+    
+    // Locked so concurrent imports merge into the same sketches one after another;
+    // no auto-flush for the same reason as the rollup upsert
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("SELECT s FROM TransactionSketch s WHERE s.monthStart IN :months")
+    List<TransactionSketch> findForUpdateByMonthStartIn(Collection<LocalDate> months);
+    
+    @Modifying
+    @Query("DELETE FROM TransactionSketch s WHERE s.monthStart < :monthStart")
+    int deleteBefore(LocalDate monthStart);
+    
+    // Date bounds are month starts; null disables the predicate
+    @Query("SELECT s FROM TransactionSketch s"
+            + " WHERE (CAST(:startDate AS LocalDate) IS NULL OR s.monthStart >= :startDate)"
+            + " AND (CAST(:endDate AS LocalDate) IS NULL OR s.monthStart <= :endDate)"
+            + " AND (CAST(:department AS String) IS NULL OR LOWER(s.department) = LOWER(CAST(:department AS String)))"
+            + " ORDER BY s.monthStart, s.department")
+    List<TransactionSketch> findInRange(LocalDate startDate, LocalDate endDate, String department);
+}
@@ -0,0 +1,16 @@
+package com.erp.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface DepartmentMetrics {
+
+    String getName();
+
+    BigDecimal getRevenue();
+
+    BigDecimal getProfit();
+
+    BigDecimal getCost();
+
+    Long getTransactions();
+}
@@ -0,0 +1,16 @@
+package com.erp.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface MonthlyMetrics {
+
+    Integer getYear();
+
+    Integer getMonth();
+
+    BigDecimal getRevenue();
+
+    BigDecimal getProfit();
+
+    BigDecimal getCost();
+}
@@ -0,0 +1,10 @@
+package com.erp.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface ProductRevenue {
+
+    String getName();
+
+    BigDecimal getValue();
+}
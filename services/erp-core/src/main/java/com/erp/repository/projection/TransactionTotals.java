@@ -0,0 +1,14 @@
+package com.erp.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface TransactionTotals {
+
+    BigDecimal getRevenue();
+
+    BigDecimal getProfit();
+
+    BigDecimal getCost();
+
+    Long getTransactions();
+}
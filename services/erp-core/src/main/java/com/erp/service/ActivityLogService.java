@@ -0,0 +1,252 @@
+package com.erp.service;
+
+import com.erp.entity.ActivityLogEntry;
+import com.erp.repository.ActivityLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only log of what users and imports did, for the dashboard's activity feed.
+ *
+ * {@link #record} never blocks or touches the database: it claims the next sequence number of a ring of
+ * {@code activity.buffer-size} slots and stores the entry there. Every {@code activity.flush-interval} the
+ * entries recorded since the last flush are inserted in batches. The ring also keeps the newest entries for
+ * reads, so the first page of the feed comes from memory; older pages are read from the table by keyset.
+ * If writers lap the flush (more than a ring of entries between two flushes), the overwritten entries are
+ * lost and counted.
+ */
+@Service
+public class ActivityLogService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ActivityLogService.class);
+    
+    private static final String INSERT = "INSERT INTO activity_log (id, occurred_at, action, entity_type, entity_id, message, username)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    // Newest entries first; the id breaks ties between entries of the same microsecond
+    private static final Comparator<Activity> NEWEST_FIRST =
+            Comparator.comparing(Activity::timestamp).thenComparing(Activity::id).reversed();
+    
+    private final ActivityLogRepository activityLogRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    
+    private final AtomicReferenceArray<Slot> ring;
+    private final int mask;
+    // Next sequence number to claim
+    private final AtomicLong head = new AtomicLong();
+    // Entries before this sequence number are in the table; written only by flush
+    private volatile long flushed;
+    
+    private final Counter persisted;
+    private final Counter lost;
+    private final Counter failures;
+    private final Timer flushTimer;
+    
+    public ActivityLogService(ActivityLogRepository activityLogRepository,
+                              JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${activity.buffer-size:8192}") int bufferSize,
+                              @Value("${activity.batch-size:500}") int batchSize) {
+        this.activityLogRepository = activityLogRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        // A power of two, so a sequence number maps to its slot with a mask
+        int capacity = Integer.highestOneBit(Math.max(bufferSize - 1, 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        
+        this.persisted = Counter.builder("erp.activity.persisted")
+                .description("Activity log entries written to the table")
+                .register(meterRegistry);
+        this.lost = Counter.builder("erp.activity.lost")
+                .description("Activity log entries overwritten in the ring before they were written")
+                .register(meterRegistry);
+        this.failures = Counter.builder("erp.activity.flush.failures")
+                .description("Activity log flushes that failed; their entries are retried")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("erp.activity.flush")
+                .description("Time to write the activity log entries recorded since the last flush")
+                .register(meterRegistry);
+        Gauge.builder("erp.activity.pending", this, service -> service.head.get() - service.flushed)
+                .description("Activity log entries recorded but not yet written")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Fills the ring with the newest entries of the table, so that the feed survives a restart. Runs before
+     * the server takes requests, hence before anything is recorded.
+     */
+    @PostConstruct
+    public void preload() {
+        List<ActivityLogEntry> latest = activityLogRepository.findLatest(ring.length());
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            ActivityLogEntry entry = latest.get(i);
+            long seq = head.getAndIncrement();
+            ring.set((int) seq & mask, new Slot(seq, new Activity(entry.getId(), entry.getOccurredAt(), entry.getAction(),
+                    entry.getEntityType(), entry.getEntityId(), entry.getMessage(), entry.getUsername())));
+        }
+        flushed = head.get();
+    }
+    
+    /**
+     * Records an activity of the current user (or "system" outside a request).
+     *
+     * @param action     created, updated, deleted, imported, cleared or purged
+     * @param entityType what was acted on, such as sales_order or transactions
+     * @param entityId   its id, or null for many rows at once
+     */
+    public void record(String action, String entityType, Object entityId, String message) {
+        Activity activity = new Activity(UUID.randomUUID().toString(), LocalDateTime.now().truncatedTo(ChronoUnit.MICROS),
+                action, entityType, entityId != null ? entityId.toString() : null, message, currentUser());
+        long seq = head.getAndIncrement();
+        ring.set((int) seq & mask, new Slot(seq, activity));
+    }
+    
+    /**
+     * The newest {@code limit} entries (at most a ring's worth), from memory.
+     */
+    public List<Activity> recent(int limit) {
+        long end = head.get();
+        long start = Math.max(0, end - ring.length());
+        List<Activity> recent = new ArrayList<>(Math.min(limit, ring.length()));
+        for (long seq = end - 1; seq >= start && recent.size() < limit; seq--) {
+            Slot slot = ring.get((int) seq & mask);
+            // Skip slots claimed but not yet written, or already reused
+            if (slot != null && slot.seq() == seq) {
+                recent.add(slot.activity());
+            }
+        }
+        // Writers racing for sequence numbers may store them slightly out of time order
+        recent.sort(NEWEST_FIRST);
+        return recent;
+    }
+    
+    /**
+     * The {@code limit} entries that come after {@code cursor} (see {@link #cursor}) newest first: those in the
+     * table, plus those recorded here but not yet written.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public List<Activity> before(String cursor, int limit) {
+        int separator = cursor.indexOf('~');
+        LocalDateTime at;
+        try {
+            at = LocalDateTime.parse(cursor.substring(0, Math.max(separator, 0)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String id = cursor.substring(separator + 1);
+        Activity bound = new Activity(id, at, null, null, null, null, null);
+        
+        // Read the cursor first: whatever a concurrent flush writes after it is in the table query or the ring scan
+        long pendingFrom = flushed;
+        Map<String, Activity> page = new HashMap<>();
+        for (ActivityLogEntry entry : activityLogRepository.findBefore(at, id, limit)) {
+            page.put(entry.getId(), new Activity(entry.getId(), entry.getOccurredAt(), entry.getAction(), entry.getEntityType(),
+                    entry.getEntityId(), entry.getMessage(), entry.getUsername()));
+        }
+        long end = head.get();
+        for (long seq = Math.max(pendingFrom, end - ring.length()); seq < end; seq++) {
+            Slot slot = ring.get((int) seq & mask);
+            if (slot != null && slot.seq() == seq && NEWEST_FIRST.compare(slot.activity(), bound) > 0) {
+                page.putIfAbsent(slot.activity().id(), slot.activity());
+            }
+        }
+        return page.values().stream().sorted(NEWEST_FIRST).limit(limit).toList();
+    }
+    
+    /**
+     * Where the page after {@code activity} starts.
+     */
+    public static String cursor(Activity activity) {
+        return activity.timestamp() + "~" + activity.id();
+    }
+    
+    /**
+     * Writes the entries recorded since the last flush, {@code activity.batch-size} rows per statement.
+     */
+    @Scheduled(fixedDelayString = "${activity.flush-interval:PT1S}")
+    @PreDestroy
+    public synchronized void flush() {
+        long end = head.get();
+        long from = flushed;
+        if (end == from) {
+            return;
+        }
+        if (end - from > ring.length()) {
+            lost.increment(end - from - ring.length());
+            from = end - ring.length();
+        }
+        List<Activity> pending = new ArrayList<>((int) (end - from));
+        for (long seq = from; seq < end; seq++) {
+            Slot slot = ring.get((int) seq & mask);
+            if (slot == null || slot.seq() < seq) {
+                // Claimed but not yet written; the rest waits for the next flush
+                end = seq;
+                break;
+            }
+            if (slot.seq() > seq) {
+                lost.increment();
+            } else {
+                pending.add(slot.activity());
+            }
+        }
+        long started = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT, pending, batchSize, (statement, activity) -> {
+                statement.setString(1, activity.id());
+                statement.setTimestamp(2, Timestamp.valueOf(activity.timestamp()));
+                statement.setString(3, activity.action());
+                statement.setString(4, activity.entityType());
+                statement.setString(5, activity.entityId());
+                statement.setString(6, activity.message());
+                statement.setString(7, activity.user());
+            });
+            persisted.increment(pending.size());
+            flushed = end;
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Writing {} activity log entries failed, will retry: {}", pending.size(), e.getMessage());
+        } finally {
+            flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return "system";
+        }
+        return authentication.getName();
+    }
+    
+    private record Slot(long seq, Activity activity) {}
+    
+    /**
+     * An activity log entry as served to clients.
+     */
+    public record Activity(String id, LocalDateTime timestamp, String action, String entityType, String entityId,
+                           String message, String user) {}
+}
@@ -0,0 +1,472 @@
+package com.erp.service;
+
+import com.erp.entity.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Streams an import file through the AI engine ({@code ${ai.engine.url}/api/csv/process-csv}) in chunks of
+ * {@code import.ai.chunk-rows} records.
+ *
+ * Up to {@code import.ai.max-in-flight} chunks are posted concurrently, each call bounded as a whole by
+ * {@code import.ai.timeout} and retried; results are handed to the writer in file order. A chunk whose
+ * call fails, or whose response cannot be used as is, is parsed directly instead, and a circuit breaker
+ * stops calling the engine after repeated failures so the remaining chunks go straight to the direct parser.
+ */
+@Service
+public class AiEnrichmentService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AiEnrichmentService.class);
+    
+    private final RestTemplate restTemplate;
+    private final String url;
+    private final boolean enabled;
+    private final int chunkRows;
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final int retries;
+    private final Duration retryBackoff;
+    private final int rejectedDetailsLimit;
+    private final CircuitBreaker breaker;
+    private final Counter enrichedChunks;
+    private final Counter fallbackChunks;
+    
+    public AiEnrichmentService(RestTemplateBuilder restTemplateBuilder,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.engine.url:http://localhost:8001}") String aiEngineUrl,
+                               @Value("${import.ai.enabled:true}") boolean enabled,
+                               // The engine returns at most 100 processed rows per call
+                               @Value("${import.ai.chunk-rows:100}") int chunkRows,
+                               @Value("${import.ai.max-in-flight:4}") int maxInFlight,
+                               @Value("${import.ai.timeout:PT30S}") Duration timeout,
+                               @Value("${import.ai.retries:2}") int retries,
+                               @Value("${import.ai.retry-backoff:PT0.2S}") Duration retryBackoff,
+                               @Value("${import.ai.breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${import.ai.breaker.open-duration:PT30S}") Duration openDuration,
+                               @Value("${import.rejected-details-limit:100}") int rejectedDetailsLimit) {
+        this.restTemplate = restTemplateBuilder.connectTimeout(timeout).readTimeout(timeout).build();
+        this.url = aiEngineUrl + "/api/csv/process-csv";
+        this.enabled = enabled;
+        this.chunkRows = Math.max(1, chunkRows);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.timeout = timeout;
+        this.retries = Math.max(0, retries);
+        this.retryBackoff = retryBackoff;
+        this.rejectedDetailsLimit = rejectedDetailsLimit;
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.enrichedChunks = Counter.builder("erp.import.ai.chunks")
+                .description("CSV import chunks by how they were processed")
+                .tag("outcome", "enriched")
+                .register(meterRegistry);
+        this.fallbackChunks = Counter.builder("erp.import.ai.chunks")
+                .description("CSV import chunks by how they were processed")
+                .tag("outcome", "fallback")
+                .register(meterRegistry);
+        Gauge.builder("erp.import.ai.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the AI engine circuit breaker is open or half-open")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Whether an import should go through the engine at all; false when disabled or while the breaker is open.
+     */
+    public boolean isAvailable() {
+        return enabled && breaker.isCallPermitted();
+    }
+    
+    /**
+     * Starts enriching {@code file}. Rows come back in file order from the returned iterator, which must be closed.
+     *
+     * @param direct   builds a row from a CSV record when a chunk is parsed locally; throws
+     *                 {@link IllegalArgumentException} to reject it
+     * @param enriched builds a row from a record returned by the engine; returns null if it cannot
+     */
+    EnrichedRows enrich(Path file, char delimiter, MappedCsvReader.RowMapper<Transaction> direct,
+                        Function<Map<String, String>, Transaction> enriched) throws IOException {
+        return new EnrichedRows(file, delimiter, direct, enriched);
+    }
+    
+    private record Chunk(int index, byte[] header, byte[] data, long[] recordLines) {}
+    
+    private record ChunkResult(List<Transaction> rows, long parsed, long rejectedCount,
+                               List<DataImportService.RejectedRow> rejected) {}
+    
+    /**
+     * Ordered view over the chunk results of one import.
+     */
+    final class EnrichedRows implements Iterator<Transaction>, RowCounts, AutoCloseable {
+        
+        private final ChunkReader reader;
+        private final char delimiter;
+        private final MappedCsvReader.RowMapper<Transaction> direct;
+        private final Function<Map<String, String>, Transaction> enriched;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+        private final List<DataImportService.RejectedRow> rejected = new ArrayList<>();
+        private Iterator<Transaction> current = Collections.emptyIterator();
+        private long parsed;
+        private long rejectedCount;
+        
+        private EnrichedRows(Path file, char delimiter, MappedCsvReader.RowMapper<Transaction> direct,
+                             Function<Map<String, String>, Transaction> enriched) throws IOException {
+            this.reader = new ChunkReader(Files.newInputStream(file), new CsvTokenizer(delimiter));
+            this.delimiter = delimiter;
+            this.direct = direct;
+            this.enriched = enriched;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                try {
+                    fill();
+                    Future<ChunkResult> next = inFlight.poll();
+                    if (next == null) {
+                        return false;
+                    }
+                    ChunkResult result = next.get();
+                    parsed += result.parsed();
+                    rejectedCount += result.rejectedCount();
+                    for (DataImportService.RejectedRow row : result.rejected()) {
+                        if (rejected.size() < rejectedDetailsLimit) {
+                            rejected.add(row);
+                        }
+                    }
+                    current = result.rows().iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted during AI enrichment"));
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException runtime ? runtime
+                            : new IllegalStateException("AI enrichment failed", e.getCause());
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+        
+        @Override
+        public long parsedCount() {
+            return parsed;
+        }
+        
+        @Override
+        public long rejectedCount() {
+            return rejectedCount;
+        }
+        
+        @Override
+        public List<DataImportService.RejectedRow> rejectedRows() {
+            return rejected;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            inFlight.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+            reader.close();
+        }
+        
+        // Keeps up to max-in-flight chunks submitted ahead of the writer
+        private void fill() throws IOException {
+            while (inFlight.size() < maxInFlight) {
+                Chunk chunk = reader.next();
+                if (chunk == null) {
+                    return;
+                }
+                inFlight.add(executor.submit(() -> process(chunk)));
+            }
+        }
+        
+        private ChunkResult process(Chunk chunk) throws InterruptedException {
+            if (chunk.recordLines().length == 0) {
+                return new ChunkResult(List.of(), 0, 0, List.of()); // blank lines only
+            }
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                if (attempt > 0) {
+                    // Before acquiring, so that an interrupted wait holds no permit
+                    Thread.sleep(retryBackoff.toMillis() << (attempt - 1));
+                }
+                if (!breaker.tryAcquire()) {
+                    break;
+                }
+                Map<?, ?> response;
+                boolean settled = false;
+                try {
+                    response = call(chunk);
+                    breaker.onSuccess();
+                    settled = true;
+                } catch (HttpClientErrorException e) {
+                    // The engine is up but refused this chunk: parse it here, without counting against the breaker
+                    breaker.onSuccess();
+                    settled = true;
+                    log.debug("AI engine rejected chunk {}: {}", chunk.index(), e.getMessage());
+                    break;
+                } catch (RestClientException e) {
+                    breaker.onFailure();
+                    settled = true;
+                    log.debug("AI enrichment of chunk {} failed (attempt {}): {}", chunk.index(), attempt + 1, e.getMessage());
+                    continue;
+                } finally {
+                    // Anything else thrown by the call still ends it: a half-open breaker would otherwise wait
+                    // for its trial call forever
+                    if (!settled) {
+                        breaker.onFailure();
+                    }
+                }
+                ChunkResult result = fromResponse(chunk, response);
+                if (result != null) {
+                    enrichedChunks.increment();
+                    return result;
+                }
+                break; // answered, but not with rows we can use
+            }
+            fallbackChunks.increment();
+            return parseDirectly(chunk);
+        }
+        
+        // The client's read timeout restarts with every read, so a server trickling bytes could hold a chunk
+        // indefinitely; the deadline covers the whole exchange and cancelling interrupts the blocked read
+        private Map<?, ?> call(Chunk chunk) throws InterruptedException {
+            Future<Map<?, ?>> call = executor.submit(() -> post(chunk));
+            try {
+                return call.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new ResourceAccessException("AI engine call for chunk " + chunk.index() + " exceeded " + timeout);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime
+                        : new IllegalStateException("AI engine call failed", e.getCause());
+            } finally {
+                call.cancel(true);
+            }
+        }
+        
+        private Map<?, ?> post(Chunk chunk) {
+            byte[] body = new byte[chunk.header().length + chunk.data().length];
+            System.arraycopy(chunk.header(), 0, body, 0, chunk.header().length);
+            System.arraycopy(chunk.data(), 0, body, chunk.header().length, chunk.data().length);
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+            MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+            parts.add("file", new ByteArrayResource(body) {
+                @Override
+                public String getFilename() {
+                    return "chunk-" + chunk.index() + ".csv";
+                }
+            });
+            Map<?, ?> response = restTemplate.postForObject(url, new HttpEntity<>(parts, headers), Map.class);
+            if (response == null) {
+                throw new RestClientException("Empty response from AI engine");
+            }
+            return response;
+        }
+        
+        // Null unless the engine returned every valid row of the chunk in a form we can map
+        @SuppressWarnings("unchecked")
+        private ChunkResult fromResponse(Chunk chunk, Map<?, ?> response) {
+            if (!(response.get("processed_data") instanceof List<?> processed)
+                    || !(response.get("valid_rows") instanceof Number valid)
+                    || processed.size() != valid.intValue()) {
+                return null;
+            }
+            List<Transaction> rows = new ArrayList<>(processed.size());
+            try {
+                for (Object row : processed) {
+                    Transaction transaction = row instanceof Map<?, ?> map ? enriched.apply((Map<String, String>) map) : null;
+                    if (transaction == null) {
+                        return null;
+                    }
+                    rows.add(transaction);
+                }
+            } catch (RuntimeException e) {
+                // Parsing the chunk directly reports the offending row with its line and column
+                log.debug("Unreadable row in AI engine response for chunk {}: {}", chunk.index(), e.toString());
+                return null;
+            }
+            List<DataImportService.RejectedRow> rejected = new ArrayList<>();
+            long rejectedCount = 0;
+            if (response.get("errors") instanceof List<?> errors) {
+                for (Object error : errors) {
+                    rejectedCount++;
+                    if (error instanceof Map<?, ?> map && rejected.size() < rejectedDetailsLimit) {
+                        // The engine numbers rows from 2 (after the header)
+                        int row = map.get("row") instanceof Number n ? n.intValue() - 2 : -1;
+                        long line = row >= 0 && row < chunk.recordLines().length ? chunk.recordLines()[row] : 0;
+                        Object reasons = map.get("errors");
+                        String reason = reasons instanceof List<?> list
+                                ? list.stream().map(String::valueOf).collect(Collectors.joining("; "))
+                                : String.valueOf(reasons);
+                        rejected.add(new DataImportService.RejectedRow(line, null, reason));
+                    }
+                }
+            }
+            return new ChunkResult(rows, chunk.recordLines().length, rejectedCount, rejected);
+        }
+        
+        private ChunkResult parseDirectly(Chunk chunk) {
+            CsvTokenizer tokenizer = new CsvTokenizer(delimiter);
+            CsvRow row = new CsvRow();
+            byte[] data = chunk.data();
+            List<Transaction> rows = new ArrayList<>(chunk.recordLines().length);
+            List<DataImportService.RejectedRow> rejected = new ArrayList<>();
+            long rejectedCount = 0;
+            int record = 0;
+            for (int position = 0; position < data.length; ) {
+                position = tokenizer.next(data, position, data.length, true, row);
+                if (row.isBlank()) {
+                    continue;
+                }
+                long line = chunk.recordLines()[record++];
+                String reason = row.errorReason();
+                Integer column = reason != null ? row.errorColumn() + 1 : null;
+                if (reason == null) {
+                    try {
+                        rows.add(direct.map(row));
+                        continue;
+                    } catch (IllegalArgumentException e) {
+                        reason = e.getMessage();
+                        column = e instanceof CsvFieldException field ? field.getColumn() + 1 : null;
+                    }
+                }
+                rejectedCount++;
+                if (rejected.size() < rejectedDetailsLimit) {
+                    rejected.add(new DataImportService.RejectedRow(line, column, reason));
+                }
+            }
+            return new ChunkResult(rows, record, rejectedCount, rejected);
+        }
+    }
+    
+    /**
+     * Cuts the file into chunks of whole records, keeping the header to send with each and the line
+     * each non-blank record starts on.
+     */
+    private final class ChunkReader implements AutoCloseable {
+        
+        private final InputStream in;
+        private final CsvTokenizer tokenizer;
+        private final CsvRow row = new CsvRow();
+        private byte[] buffer = new byte[1 << 16];
+        private int start;
+        private int filled;
+        private boolean eof;
+        private byte[] header;
+        private long line = 1;
+        private int index;
+        
+        ChunkReader(InputStream in, CsvTokenizer tokenizer) {
+            this.in = in;
+            this.tokenizer = tokenizer;
+        }
+        
+        Chunk next() throws IOException {
+            if (header == null) {
+                readHeader();
+            }
+            long[] recordLines = new long[chunkRows];
+            int records = 0;
+            int position = start;
+            while (records < chunkRows) {
+                int next = position < filled ? tokenizer.next(buffer, position, filled, eof, row) : -1;
+                if (next < 0) {
+                    if (eof) {
+                        break;
+                    }
+                    position -= compactAndRead();
+                    continue;
+                }
+                if (!row.isBlank()) {
+                    recordLines[records++] = line;
+                }
+                line += 1 + row.newlines();
+                position = next;
+            }
+            if (position == start) {
+                return null;
+            }
+            byte[] data = Arrays.copyOfRange(buffer, start, position);
+            start = position;
+            return new Chunk(index++, header, data, Arrays.copyOf(recordLines, records));
+        }
+        
+        private void readHeader() throws IOException {
+            while (filled < 3 && !eof) {
+                compactAndRead();
+            }
+            start = CsvTokenizer.bomLength(buffer, 0, filled);
+            while (true) {
+                int next = start < filled ? tokenizer.next(buffer, start, filled, eof, row) : -1;
+                if (next >= 0 || eof) {
+                    int end = next >= 0 ? next : filled;
+                    header = Arrays.copyOfRange(buffer, start, end);
+                    line += 1 + row.newlines();
+                    start = end;
+                    return;
+                }
+                compactAndRead();
+            }
+        }
+        
+        // Moves unread bytes to the front, growing the buffer if full, and reads more; returns the shift
+        private int compactAndRead() throws IOException {
+            int shift = start;
+            if (shift > 0) {
+                System.arraycopy(buffer, shift, buffer, 0, filled - shift);
+                filled -= shift;
+                start = 0;
+            } else if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read < 0) {
+                eof = true;
+            } else {
+                filled += read;
+            }
+            return shift;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
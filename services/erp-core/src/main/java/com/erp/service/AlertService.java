@@ -0,0 +1,379 @@
+package com.erp.service;
+
+import com.erp.entity.Invoice;
+import com.erp.entity.Product;
+import com.erp.entity.PurchaseOrder;
+import com.erp.repository.InvoiceRepository;
+import com.erp.repository.ProductRepository;
+import com.erp.repository.PurchaseOrderRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Dashboard alerts, kept in memory and maintained incrementally.
+ *
+ * Each rule watches one table: products whose stock is below their reorder level, invoices past their due
+ * date and purchase orders past their expected date. A {@link DataChangedEvent} for one row evaluates the
+ * rule on that row alone and raises, updates or resolves its alert; an event for many rows (a bulk load)
+ * reconciles the rule. Rows that will raise an alert once a date passes are indexed by that date and
+ * re-evaluated by id when it comes, so no query scans a table for them. A full reconciliation of every
+ * rule runs at startup and on demand.
+ *
+ * Active alerts are indexed by id and ordered newest first, overall and per rule, so reads are served
+ * from memory. Changes are published as {@link AlertChanged} events.
+ */
+@Service
+public class AlertService {
+    
+    private static final Comparator<Alert> NEWEST_FIRST =
+            Comparator.comparing(Alert::timestamp).reversed().thenComparing(Alert::id);
+    
+    private final ProductRepository productRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final PurchaseOrderRepository purchaseOrderRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int defaultReorderLevel;
+    private final Map<String, Rule<?>> rules = new LinkedHashMap<>();
+    
+    // Written under this; read without locking
+    private final Map<String, Alert> active = new ConcurrentHashMap<>();
+    private final NavigableSet<Alert> newestFirst = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Alert>> byRule = new ConcurrentHashMap<>();
+    // Alert ids of rows that raise an alert once a date passes, by that date; guarded by this
+    private final TreeMap<LocalDate, Set<String>> pending = new TreeMap<>();
+    private final Map<String, LocalDate> pendingOn = new HashMap<>();
+    
+    public AlertService(ProductRepository productRepository,
+                        InvoiceRepository invoiceRepository,
+                        PurchaseOrderRepository purchaseOrderRepository,
+                        ApplicationEventPublisher eventPublisher,
+                        MeterRegistry meterRegistry,
+                        @Value("${alerts.low-stock.default-threshold:10}") int defaultReorderLevel) {
+        this.productRepository = productRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.purchaseOrderRepository = purchaseOrderRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.defaultReorderLevel = defaultReorderLevel;
+        
+        register(new Rule<>("low_stock", "products", Product.class, Product::getId) {
+            @Override
+            Alert evaluate(Product product, LocalDate today) {
+                int level = product.getReorderLevel() != null ? product.getReorderLevel() : defaultReorderLevel;
+                if (product.getStock() == null || product.getStock() >= level) {
+                    return null;
+                }
+                return alert(product.getId(), product.getStock() == 0 ? "critical" : "warning",
+                        "Product " + product.getName() + " has " + product.getStock() + " in stock, below its reorder level of " + level);
+            }
+            
+            @Override
+            Optional<Product> find(Long id) {
+                return productRepository.findById(id);
+            }
+            
+            @Override
+            List<Product> candidates() {
+                return productRepository.findBelowReorderLevel(defaultReorderLevel);
+            }
+        });
+        register(new Rule<>("overdue_invoice", "invoices", Invoice.class, Invoice::getId) {
+            @Override
+            Alert evaluate(Invoice invoice, LocalDate today) {
+                if (!isOpen(invoice) || !invoice.getDueDate().isBefore(today)) {
+                    return null;
+                }
+                return alert(invoice.getId(), "warning", "Invoice " + invoice.getInvoiceNumber() + " for "
+                        + invoice.getCustomerName() + " was due on " + invoice.getDueDate());
+            }
+            
+            @Override
+            LocalDate alertsOn(Invoice invoice, LocalDate today) {
+                return isOpen(invoice) && !invoice.getDueDate().isBefore(today) ? invoice.getDueDate().plusDays(1) : null;
+            }
+            
+            private boolean isOpen(Invoice invoice) {
+                return invoice.getDueDate() != null && !"paid".equals(invoice.getStatus()) && !"cancelled".equals(invoice.getStatus());
+            }
+            
+            @Override
+            Optional<Invoice> find(Long id) {
+                return invoiceRepository.findById(id);
+            }
+            
+            @Override
+            List<Invoice> candidates() {
+                return invoiceRepository.findOpenWithDueDate();
+            }
+        });
+        register(new Rule<>("late_purchase_order", "purchase_orders", PurchaseOrder.class, PurchaseOrder::getId) {
+            @Override
+            Alert evaluate(PurchaseOrder order, LocalDate today) {
+                if (!isOpen(order) || !order.getExpectedDate().isBefore(today)) {
+                    return null;
+                }
+                return alert(order.getId(), "warning", "Purchase order " + order.getPoNumber() + " from "
+                        + order.getSupplierName() + " was expected on " + order.getExpectedDate());
+            }
+            
+            @Override
+            LocalDate alertsOn(PurchaseOrder order, LocalDate today) {
+                return isOpen(order) && !order.getExpectedDate().isBefore(today) ? order.getExpectedDate().plusDays(1) : null;
+            }
+            
+            private boolean isOpen(PurchaseOrder order) {
+                return order.getExpectedDate() != null && !"received".equals(order.getStatus()) && !"cancelled".equals(order.getStatus());
+            }
+            
+            @Override
+            Optional<PurchaseOrder> find(Long id) {
+                return purchaseOrderRepository.findById(id);
+            }
+            
+            @Override
+            List<PurchaseOrder> candidates() {
+                return purchaseOrderRepository.findOpenWithExpectedDate();
+            }
+        });
+    }
+    
+    private void register(Rule<?> rule) {
+        rules.put(rule.name, rule);
+        byRule.put(rule.name, new ConcurrentSkipListSet<>(NEWEST_FIRST));
+        Gauge.builder("erp.alerts.active", byRule.get(rule.name), Set::size)
+                .description("Active dashboard alerts")
+                .tag("rule", rule.name)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Active alerts newest first, of one rule or (when null) of all.
+     *
+     * @throws IllegalArgumentException for an unknown rule
+     */
+    public List<Alert> active(String rule) {
+        if (rule == null) {
+            return List.copyOf(newestFirst);
+        }
+        NavigableSet<Alert> alerts = byRule.get(rule);
+        if (alerts == null) {
+            throw new IllegalArgumentException("Unknown rule: " + rule + ", expected one of " + rules.keySet());
+        }
+        return List.copyOf(alerts);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+    
+    /**
+     * Re-evaluates every rule against the tables, raising and resolving alerts to match.
+     *
+     * @return active alerts afterwards
+     */
+    public int reconcile() {
+        for (Rule<?> rule : rules.values()) {
+            reconcile(rule);
+        }
+        return active.size();
+    }
+    
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        for (Rule<?> rule : rules.values()) {
+            if (rule.table.equals(event.table())) {
+                if (event.id() == null) {
+                    reconcile(rule);
+                } else {
+                    evaluate(rule, event.id(), event.row());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Evaluates the rows whose date has passed since they were last evaluated.
+     */
+    @Scheduled(fixedDelayString = "${alerts.date-check-interval:PT1M}")
+    public void evaluateDue() {
+        LocalDate today = LocalDate.now();
+        List<String> due = new ArrayList<>();
+        synchronized (this) {
+            SortedMap<LocalDate, Set<String>> reached = pending.headMap(today, true);
+            reached.values().forEach(due::addAll);
+            reached.clear();
+            due.forEach(pendingOn::remove);
+        }
+        for (String id : due) {
+            Rule<?> rule = rules.get(ruleOf(id));
+            Long rowId = Long.valueOf(id.substring(id.indexOf(':') + 1));
+            evaluate(rule, rowId, rule.find(rowId).orElse(null));
+        }
+    }
+    
+    // row is null when it was deleted
+    private <T> void evaluate(Rule<T> rule, Long id, Object row) {
+        long started = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        T typed = rule.type.isInstance(row) ? rule.type.cast(row) : null;
+        apply(rule, rule.alertId(id), typed != null ? rule.evaluate(typed, today) : null,
+                typed != null ? rule.alertsOn(typed, today) : null);
+        rule.evaluation.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+    
+    private <T> void reconcile(Rule<T> rule) {
+        long started = System.nanoTime();
+        List<T> rows = rule.candidates();
+        LocalDate today = LocalDate.now();
+        synchronized (this) {
+            Set<String> seen = new HashSet<>();
+            for (T row : rows) {
+                String id = rule.alertId(rule.id.apply(row));
+                seen.add(id);
+                apply(rule, id, rule.evaluate(row, today), rule.alertsOn(row, today));
+            }
+            // Rows no longer candidates raise nothing now or later
+            for (Alert alert : List.copyOf(byRule.get(rule.name))) {
+                if (!seen.contains(alert.id())) {
+                    apply(rule, alert.id(), null, null);
+                }
+            }
+            for (String id : List.copyOf(pendingOn.keySet())) {
+                if (ruleOf(id).equals(rule.name) && !seen.contains(id)) {
+                    unschedule(id);
+                }
+            }
+        }
+        rule.reconciliation.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+    
+    private synchronized void apply(Rule<?> rule, String id, Alert alert, LocalDate alertsOn) {
+        unschedule(id);
+        if (alertsOn != null) {
+            pending.computeIfAbsent(alertsOn, date -> new HashSet<>()).add(id);
+            pendingOn.put(id, alertsOn);
+        }
+        Alert previous = active.get(id);
+        if (alert == null) {
+            if (previous != null) {
+                remove(rule, previous);
+                eventPublisher.publishEvent(new AlertChanged(previous, true));
+            }
+            return;
+        }
+        // An alert that is still raised keeps the time it was first raised
+        Alert next = previous != null ? alert.raisedAt(previous.timestamp()) : alert;
+        if (next.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            remove(rule, previous);
+        }
+        active.put(id, next);
+        newestFirst.add(next);
+        byRule.get(rule.name).add(next);
+        eventPublisher.publishEvent(new AlertChanged(next, false));
+    }
+    
+    private void remove(Rule<?> rule, Alert alert) {
+        active.remove(alert.id());
+        newestFirst.remove(alert);
+        byRule.get(rule.name).remove(alert);
+    }
+    
+    private void unschedule(String id) {
+        LocalDate date = pendingOn.remove(id);
+        if (date != null) {
+            Set<String> ids = pending.get(date);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                pending.remove(date);
+            }
+        }
+    }
+    
+    private static String ruleOf(String alertId) {
+        return alertId.substring(0, alertId.indexOf(':'));
+    }
+    
+    /**
+     * One alert rule over the rows of a table; alerts are identified as {@code rule:rowId}.
+     */
+    private abstract class Rule<T> {
+        final String name;
+        final String table;
+        final Class<T> type;
+        final Function<T, Long> id;
+        final Timer evaluation;
+        final Timer reconciliation;
+        
+        Rule(String name, String table, Class<T> type, Function<T, Long> id) {
+            this.name = name;
+            this.table = table;
+            this.type = type;
+            this.id = id;
+            this.evaluation = Timer.builder("erp.alerts.evaluation")
+                    .description("Time to evaluate an alert rule on one changed row")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+            this.reconciliation = Timer.builder("erp.alerts.reconciliation")
+                    .description("Time to reconcile an alert rule with its table")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+        }
+        
+        String alertId(Long rowId) {
+            return name + ":" + rowId;
+        }
+        
+        Alert alert(Long rowId, String severity, String message) {
+            return new Alert(alertId(rowId), severity, name, table, rowId, message, LocalDateTime.now());
+        }
+        
+        // The alert the row raises today, or null
+        abstract Alert evaluate(T row, LocalDate today);
+        
+        // The day the row starts raising an alert if it does not change, or null
+        LocalDate alertsOn(T row, LocalDate today) {
+            return null;
+        }
+        
+        abstract Optional<T> find(Long id);
+        
+        // Every row that raises an alert now or may come to without changing
+        abstract List<T> candidates();
+    }
+    
+    /**
+     * An active alert; {@code type} is its severity (warning or critical) and {@code timestamp} when it was raised.
+     */
+    public record Alert(String id, String type, String rule, String entityType, Long entityId, String message,
+                        LocalDateTime timestamp) {
+        
+        Alert raisedAt(LocalDateTime raised) {
+            return new Alert(id, type, rule, entityType, entityId, message, raised);
+        }
+    }
+    
+    /**
+     * Published when an alert is raised or changes ({@code resolved} false) and when it is resolved.
+     */
+    public record AlertChanged(Alert alert, boolean resolved) {}
+}
@@ -0,0 +1,57 @@
+package com.erp.service;
+
+/**
+ * Mergeable running totals for one analytics group, amounts in cents.
+ *
+ * Plain primitive fields so the per-row update is a handful of adds; partial
+ * results computed on different threads are combined with {@link #merge}.
+ */
+public final class AnalyticsAccumulator {
+    
+    private long revenue;
+    private long cost;
+    private long profit;
+    private long count;
+    
+    public void add(long revenueCents, long costCents, long profitCents) {
+        revenue += revenueCents;
+        cost += costCents;
+        profit += profitCents;
+        count++;
+    }
+    
+    public void merge(AnalyticsAccumulator other) {
+        revenue += other.revenue;
+        cost += other.cost;
+        profit += other.profit;
+        count += other.count;
+    }
+    
+    public long revenue() {
+        return revenue;
+    }
+    
+    public long cost() {
+        return cost;
+    }
+    
+    public long profit() {
+        return profit;
+    }
+    
+    public long count() {
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    static AnalyticsAccumulator[] newGroups(int groups) {
+        AnalyticsAccumulator[] accumulators = new AnalyticsAccumulator[groups];
+        for (int i = 0; i < groups; i++) {
+            accumulators[i] = new AnalyticsAccumulator();
+        }
+        return accumulators;
+    }
+}
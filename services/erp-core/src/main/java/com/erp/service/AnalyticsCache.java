@@ -0,0 +1,336 @@
+package com.erp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache for analytics results: an in-process Caffeine tier in front of Redis.
+ *
+ * Concurrent misses for the same key share one load. Hits may trigger an early background
+ * refresh with a probability that rises as the entry nears expiry (weighted by how long the
+ * entry took to compute), so hot keys are recomputed before they expire instead of all at once.
+ *
+ * Invalidation bumps a generation counter in Redis and publishes it on {@link #CHANNEL}; every
+ * replica drops its local tier and all Redis entries of older generations become unreachable.
+ * Redis failures degrade to the local tier only.
+ */
+@Service
+public class AnalyticsCache {
+    
+    public static final String CHANNEL = "erp:analytics:invalidate";
+    
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsCache.class);
+    private static final String KEY_PREFIX = "erp:analytics:";
+    private static final String GENERATION_KEY = KEY_PREFIX + "generation";
+    private static final long UNKNOWN_GENERATION = -1;
+    private static final long REDIS_BACKOFF_MILLIS = 5000;
+    
+    private final boolean enabled;
+    private final Duration ttl;
+    private final double earlyRefreshBeta;
+    private final StringRedisTemplate redis; // null when the Redis tier is disabled
+    private final ObjectMapper objectMapper;
+    
+    private final AsyncCache<String, Entry> local;
+    // Local keys carry this epoch, so loads that straddle an invalidation are never served
+    private final AtomicLong localEpoch = new AtomicLong();
+    private volatile long generation = UNKNOWN_GENERATION;
+    private volatile long redisRetryAtMillis;
+    private final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter redisErrors;
+    private final Counter earlyRefreshes;
+    private final Counter invalidations;
+    private final Timer loadTimer;
+    
+    public AnalyticsCache(ObjectProvider<StringRedisTemplate> redisTemplate,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${analytics.cache.enabled:true}") boolean enabled,
+                          @Value("${analytics.cache.redis.enabled:true}") boolean redisEnabled,
+                          @Value("${analytics.cache.ttl:PT5M}") Duration ttl,
+                          @Value("${analytics.cache.maximum-size:1000}") long maximumSize,
+                          @Value("${analytics.cache.early-refresh-beta:1.0}") double earlyRefreshBeta) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.redis = redisEnabled ? redisTemplate.getIfAvailable() : null;
+        this.objectMapper = objectMapper;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(Expiry.writing((String key, Entry entry) ->
+                        Duration.ofMillis(Math.max(0, entry.expiresAtMillis() - System.currentTimeMillis()))))
+                .buildAsync();
+        
+        this.localHits = requests(meterRegistry, "local", "hit");
+        this.localMisses = requests(meterRegistry, "local", "miss");
+        this.redisHits = requests(meterRegistry, "redis", "hit");
+        this.redisMisses = requests(meterRegistry, "redis", "miss");
+        this.redisErrors = Counter.builder("erp.analytics.cache.redis.errors")
+                .description("Redis tier operations that failed and fell back to the local tier")
+                .register(meterRegistry);
+        this.earlyRefreshes = Counter.builder("erp.analytics.cache.early_refreshes")
+                .description("Background refreshes triggered before expiry")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("erp.analytics.cache.invalidations")
+                .description("Cache invalidations, local and received from other replicas")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("erp.analytics.cache.load")
+                .description("Time spent computing analytics results on a cache miss or refresh")
+                .register(meterRegistry);
+        meterRegistry.gauge("erp.analytics.cache.size", local, cache -> cache.synchronous().estimatedSize());
+    }
+    
+    private static Counter requests(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("erp.analytics.cache.requests")
+                .description("Analytics cache lookups by tier and result")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+    
+    /**
+     * Cache key for one analytics request. Every parameter that changes the result is part of it.
+     */
+    public static String key(String type, String department, LocalDate startDate, LocalDate endDate,
+                             int limit, boolean approx) {
+        return (type != null ? type.toLowerCase() : "") + '|'
+                + (department != null ? department.toLowerCase() : "") + '|'
+                + (startDate != null ? startDate : "") + '|'
+                + (endDate != null ? endDate : "") + '|'
+                + limit + '|' + approx;
+    }
+    
+    /**
+     * Returns the cached result for {@code key}, loading it with {@code loader} on a miss.
+     */
+    public Map<String, Object> get(String key, Supplier<Map<String, Object>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String localKey = localEpoch.get() + "|" + key;
+        
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = local.asMap().putIfAbsent(localKey, pending);
+        Entry entry;
+        if (existing != null) {
+            // Hit, or another thread is already loading this key: share its result
+            localHits.increment();
+            entry = join(existing);
+            if (shouldRefreshEarly(entry)) {
+                refreshInBackground(localKey, key, loader);
+            }
+        } else {
+            localMisses.increment();
+            try {
+                entry = loadThroughRedis(key, loader);
+                pending.complete(entry);
+            } catch (Throwable e) {
+                // Errors too: callers sharing this future would otherwise wait on it forever
+                pending.completeExceptionally(e); // failed futures are evicted by Caffeine
+                throw e;
+            }
+        }
+        return entry.value();
+    }
+    
+    /**
+     * Drops cached results on this replica and, through Redis, on every other replica.
+     * Call after the data change has committed.
+     */
+    public void invalidateAll() {
+        invalidateLocal();
+        if (redis == null) {
+            return;
+        }
+        try {
+            Long next = redis.opsForValue().increment(GENERATION_KEY);
+            if (next != null) {
+                generation = next;
+                redis.convertAndSend(CHANNEL, Long.toString(next));
+            }
+        } catch (RuntimeException e) {
+            redisFailed(e);
+            generation = UNKNOWN_GENERATION; // re-read before the Redis tier is used again
+            log.warn("Could not publish analytics cache invalidation: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Handles an invalidation published by any replica, including this one.
+     */
+    public void onRemoteInvalidation(String message) {
+        long published;
+        try {
+            published = Long.parseLong(message.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed analytics cache invalidation: {}", message);
+            return;
+        }
+        long current = generation;
+        if (current != UNKNOWN_GENERATION && published <= current) {
+            return; // our own publication, already applied
+        }
+        generation = published;
+        invalidateLocal();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+    
+    private void invalidateLocal() {
+        localEpoch.incrementAndGet();
+        local.synchronous().invalidateAll();
+        invalidations.increment();
+    }
+    
+    private Entry loadThroughRedis(String key, Supplier<Map<String, Object>> loader) {
+        String redisKey = redisKey(key);
+        if (redisKey != null) {
+            Entry cached = readRedis(redisKey);
+            if (cached != null) {
+                redisHits.increment();
+                return cached;
+            }
+            redisMisses.increment();
+        }
+        return compute(redisKey, loader);
+    }
+    
+    private Entry compute(String redisKey, Supplier<Map<String, Object>> loader) {
+        long started = System.nanoTime();
+        Map<String, Object> value = loader.get();
+        long elapsedNanos = System.nanoTime() - started;
+        loadTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        
+        Entry entry = new Entry(value, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                System.currentTimeMillis() + ttl.toMillis());
+        if (redisKey != null) {
+            writeRedis(redisKey, entry);
+        }
+        return entry;
+    }
+    
+    // XFetch: refresh with probability growing as expiry nears, scaled by compute time
+    private boolean shouldRefreshEarly(Entry entry) {
+        if (earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double gap = -entry.computeMillis() * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.expiresAtMillis();
+    }
+    
+    private void refreshInBackground(String localKey, String key, Supplier<Map<String, Object>> loader) {
+        if (refreshing.putIfAbsent(localKey, Boolean.TRUE) != null) {
+            return; // one refresh per key at a time
+        }
+        earlyRefreshes.increment();
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Entry fresh = compute(redisKey(key), loader);
+                    // Only publish if no invalidation happened while we were computing
+                    local.asMap().replace(localKey, CompletableFuture.completedFuture(fresh));
+                } catch (Throwable e) {
+                    // The cached entry stays in place; Errors still reach the executor
+                    log.warn("Early refresh of analytics cache entry failed: {}", e.toString());
+                    if (e instanceof Error error) {
+                        throw error;
+                    }
+                } finally {
+                    refreshing.remove(localKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(localKey);
+        }
+    }
+    
+    private String redisKey(String key) {
+        if (redis == null || System.currentTimeMillis() < redisRetryAtMillis) {
+            return null;
+        }
+        long current = generation;
+        if (current == UNKNOWN_GENERATION) {
+            try {
+                String stored = redis.opsForValue().get(GENERATION_KEY);
+                current = stored != null ? Long.parseLong(stored) : 0;
+                generation = current;
+            } catch (RuntimeException e) {
+                redisFailed(e);
+                return null; // generation unknown: using Redis could serve stale entries
+            }
+        }
+        return KEY_PREFIX + current + ":" + key;
+    }
+    
+    private Entry readRedis(String redisKey) {
+        try {
+            String json = redis.opsForValue().get(redisKey);
+            return json != null ? objectMapper.readValue(json, Entry.class) : null;
+        } catch (Exception e) {
+            redisFailed(e);
+            return null;
+        }
+    }
+    
+    private void writeRedis(String redisKey, Entry entry) {
+        try {
+            redis.opsForValue().set(redisKey, objectMapper.writeValueAsString(entry), ttl);
+        } catch (Exception e) {
+            redisFailed(e);
+        }
+    }
+    
+    // Skip the Redis tier for a while so an outage costs one timeout, not one per request
+    private void redisFailed(Exception e) {
+        redisErrors.increment();
+        redisRetryAtMillis = System.currentTimeMillis() + REDIS_BACKOFF_MILLIS;
+        log.debug("Redis analytics cache operation failed: {}", e.getMessage());
+    }
+    
+    private static Entry join(CompletableFuture<Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * A cached result with the time it took to compute and its absolute expiry.
+     */
+    record Entry(Map<String, Object> value, long computeMillis, long expiresAtMillis) {}
+}
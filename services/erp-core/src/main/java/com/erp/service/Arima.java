@@ -0,0 +1,188 @@
+package com.erp.service;
+
+import java.util.Arrays;
+
+/**
+ * ARIMA(p,1,0) with drift: the changes between consecutive observations follow an autoregression of order
+ * p (at most {@value #MAX_ORDER}) plus a constant, fitted by least squares. Orders are compared by AIC on the
+ * same sample of changes. Prediction intervals come from the psi weights of the integrated model.
+ *
+ * Fitting solves a handful of systems of at most four unknowns, so a changed series is fitted from scratch.
+ */
+public final class Arima implements ForecastModel {
+    
+    private static final int MAX_ORDER = 3;
+    
+    private final double[] y;
+    // phi_1 .. phi_p
+    private final double[] ar;
+    private final double drift;
+    private final double variance;
+    private final int firstPredicted;
+    // One-step-ahead errors, from index firstPredicted on
+    private final double[] error;
+    
+    private Arima(double[] y, double[] ar, double drift, double variance, int firstPredicted, double[] error) {
+        this.y = y;
+        this.ar = ar;
+        this.drift = drift;
+        this.variance = variance;
+        this.firstPredicted = firstPredicted;
+        this.error = error;
+    }
+    
+    /**
+     * Fits a model to {@code y}, or returns null when it has fewer than four observations.
+     */
+    public static Arima fit(double[] y) {
+        double[] changes = new double[Math.max(y.length - 1, 0)];
+        for (int t = 0; t < changes.length; t++) {
+            changes[t] = y[t + 1] - y[t];
+        }
+        // Every order is fitted to the changes from index start on, leaving at least three degrees of freedom
+        int start = Math.min(MAX_ORDER, Math.floorDiv(changes.length - 3, 2));
+        if (start < 0) {
+            return null;
+        }
+        int samples = changes.length - start;
+        
+        Arima best = null;
+        double bestAic = Double.POSITIVE_INFINITY;
+        for (int p = 0; p <= start; p++) {
+            double[] coefficients = leastSquares(changes, start, p);
+            if (coefficients == null) {
+                continue;
+            }
+            double[] error = new double[y.length];
+            Arrays.fill(error, 0, start + 1, Double.NaN);
+            double squaredError = 0;
+            for (int t = start; t < changes.length; t++) {
+                double predicted = coefficients[0];
+                for (int i = 1; i <= p; i++) {
+                    predicted += coefficients[i] * changes[t - i];
+                }
+                // The change at t is the step from y[t] to y[t + 1]
+                error[t + 1] = changes[t] - predicted;
+                squaredError += error[t + 1] * error[t + 1];
+            }
+            double aic = samples * Math.log(Math.max(squaredError, Double.MIN_NORMAL) / samples) + 2 * (p + 1);
+            if (aic < bestAic) {
+                bestAic = aic;
+                best = new Arima(y, Arrays.copyOfRange(coefficients, 1, p + 1), coefficients[0],
+                        squaredError / (samples - p - 1), start + 1, error);
+            }
+        }
+        return best;
+    }
+    
+    // Constant and AR coefficients of order p regressed on x[start..], by the normal equations; null if singular
+    private static double[] leastSquares(double[] x, int start, int p) {
+        int k = p + 1;
+        double[][] a = new double[k][k + 1];
+        double[] row = new double[k];
+        for (int t = start; t < x.length; t++) {
+            row[0] = 1;
+            for (int i = 1; i <= p; i++) {
+                row[i] = x[t - i];
+            }
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    a[i][j] += row[i] * row[j];
+                }
+                a[i][k] += row[i] * x[t];
+            }
+        }
+        // Gaussian elimination with partial pivoting
+        for (int col = 0; col < k; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < k; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1e-12 * Math.max(1, Math.abs(a[0][0]))) {
+                return null;
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            for (int r = col + 1; r < k; r++) {
+                double factor = a[r][col] / a[col][col];
+                for (int c = col; c <= k; c++) {
+                    a[r][c] -= factor * a[col][c];
+                }
+            }
+        }
+        double[] coefficients = new double[k];
+        for (int r = k - 1; r >= 0; r--) {
+            double sum = a[r][k];
+            for (int c = r + 1; c < k; c++) {
+                sum -= a[r][c] * coefficients[c];
+            }
+            coefficients[r] = sum / a[r][r];
+        }
+        return coefficients;
+    }
+    
+    @Override
+    public String name() {
+        return "arima(" + ar.length + ",1,0)";
+    }
+    
+    @Override
+    public int firstPredicted() {
+        return firstPredicted;
+    }
+    
+    @Override
+    public double meanSquaredError(int from) {
+        double sum = 0;
+        int count = 0;
+        for (int t = Math.max(from, firstPredicted); t < y.length; t++) {
+            sum += error[t] * error[t];
+            count++;
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+    
+    @Override
+    public Forecast forecast(int horizon, double z) {
+        int p = ar.length;
+        // Recent changes, newest last, extended by the forecast ones
+        double[] changes = new double[p + horizon];
+        for (int i = 0; i < p; i++) {
+            changes[i] = y[y.length - p + i] - y[y.length - p + i - 1];
+        }
+        // AR coefficients of the integrated model: (1 - sum phi_i B^i)(1 - B) = 1 - sum a_i B^i
+        double[] a = new double[p + 2];
+        for (int i = 1; i <= p + 1; i++) {
+            a[i] = (i == 1 ? 1 : 0) + (i <= p ? ar[i - 1] : 0) - (i >= 2 ? ar[i - 2] : 0);
+        }
+        double[] psi = new double[horizon];
+        
+        double[] mean = new double[horizon];
+        double[] lower = new double[horizon];
+        double[] upper = new double[horizon];
+        double previous = y[y.length - 1];
+        double weights = 0;
+        for (int h = 0; h < horizon; h++) {
+            double change = drift;
+            for (int i = 1; i <= p; i++) {
+                change += ar[i - 1] * changes[p + h - i];
+            }
+            changes[p + h] = change;
+            previous += change;
+            mean[h] = previous;
+            
+            psi[h] = h == 0 ? 1 : 0;
+            for (int i = 1; i <= Math.min(h, p + 1); i++) {
+                psi[h] += a[i] * psi[h - i];
+            }
+            weights += psi[h] * psi[h];
+            double width = z * Math.sqrt(variance * weights);
+            lower[h] = mean[h] - width;
+            upper[h] = mean[h] + width;
+        }
+        return new Forecast(mean, lower, upper);
+    }
+}
@@ -0,0 +1,71 @@
+package com.erp.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over row fingerprints, safe for concurrent use without locking.
+ *
+ * Sized for {@code expectedInsertions} at the given false-positive rate (about 9.6 bits per row at 1%).
+ * Keys are already uniformly distributed hashes, so their two halves serve directly as the base
+ * hashes of double hashing. A negative answer is certain; a positive one must be confirmed.
+ */
+final class BloomFilter {
+    
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final AtomicLong insertions = new AtomicLong();
+    
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long expected = Math.max(1, expectedInsertions);
+        long wanted = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (wanted + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = (long) wordCount * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+    }
+    
+    void put(byte[] key) {
+        long h1 = half(key, 0);
+        long h2 = half(key, 8);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+    
+    boolean mightContain(byte[] key) {
+        long h1 = half(key, 0);
+        long h2 = half(key, 8);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /** Keys added so far; past the expected count the false-positive rate climbs. */
+    long insertions() {
+        return insertions.get();
+    }
+    
+    private static long half(byte[] key, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8 && i < key.length; i++) {
+            value = value << 8 | (key[i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,78 @@
+package com.erp.service;
+
+import java.time.Duration;
+
+/**
+ * Consecutive-failure circuit breaker for calls to a remote service.
+ *
+ * Closed, every call is permitted. After {@code failureThreshold} failures in a row it opens and refuses
+ * calls for {@code openDuration}; then a single trial call is let through (half-open), whose success closes
+ * the breaker and whose failure opens it again.
+ */
+final class CircuitBreaker {
+    
+    enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+    
+    /**
+     * Whether a call may be made now; a permitted call must be followed by {@link #onSuccess} or {@link #onFailure}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+    
+    /** Whether {@link #tryAcquire} would currently permit a call, without taking the trial slot. */
+    synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedAt >= openNanos;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+    
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+    
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            failures = 0;
+            trialInFlight = false;
+        }
+    }
+    
+    synchronized State state() {
+        return state;
+    }
+}
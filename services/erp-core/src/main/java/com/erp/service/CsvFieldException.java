@@ -0,0 +1,19 @@
+package com.erp.service;
+
+/**
+ * A CSV value that cannot be converted, tied to the zero-based column it came from so the row can be
+ * reported with its position.
+ */
+public class CsvFieldException extends IllegalArgumentException {
+    
+    private final int column;
+    
+    public CsvFieldException(int column, String message) {
+        super(message);
+        this.column = column;
+    }
+    
+    public int getColumn() {
+        return column;
+    }
+}
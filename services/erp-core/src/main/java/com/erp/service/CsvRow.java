@@ -0,0 +1,195 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * One CSV record seen as byte ranges of a shared buffer, as located by {@link CsvTokenizer}. Fields are
+ * decoded on demand, so amounts and dates are parsed straight from the bytes; only {@link #text} allocates.
+ *
+ * An instance is reused for every record a parser visits, so values must be copied out before the next one.
+ * Field ranges exclude the enclosing quotes of quoted fields.
+ */
+final class CsvRow {
+    
+    private byte[] bytes;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private int size;
+    private long line;
+    private int newlines;
+    private int errorColumn;
+    private String errorReason;
+    
+    void clear(byte[] bytes) {
+        this.bytes = bytes;
+        size = 0;
+        newlines = 0;
+        errorColumn = -1;
+        errorReason = null;
+    }
+    
+    void add(int start, int end, boolean hasEscapedQuotes) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            escaped = Arrays.copyOf(escaped, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        escaped[size] = hasEscapedQuotes;
+        size++;
+    }
+    
+    void fail(int column, String reason) {
+        if (errorReason == null) {
+            errorColumn = column;
+            errorReason = reason;
+        }
+    }
+    
+    void newline() {
+        newlines++;
+    }
+    
+    void line(long line) {
+        this.line = line;
+    }
+    
+    /** Line of the file the record starts on (1-based), as set by {@link MappedCsvReader}. */
+    long line() {
+        return line;
+    }
+    
+    /** Line breaks inside quoted fields; the record spans this many lines beyond its first. */
+    int newlines() {
+        return newlines;
+    }
+    
+    /** Why the record is malformed, or null. */
+    String errorReason() {
+        return errorReason;
+    }
+    
+    /** Zero-based field the error was found in. */
+    int errorColumn() {
+        return errorColumn;
+    }
+    
+    /** A single field holding nothing but whitespace, such as an empty line. */
+    boolean isBlank() {
+        if (size != 1) {
+            return false;
+        }
+        for (int i = starts[0]; i < ends[0]; i++) {
+            if (bytes[i] > ' ' || bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+    
+    String text(int field) {
+        int from = starts[field];
+        int to = ends[field];
+        if (!escaped[field]) {
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+        // Collapse doubled quotes
+        byte[] text = new byte[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            text[length++] = bytes[i];
+            if (bytes[i] == CsvTokenizer.QUOTE) {
+                i++;
+            }
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Appends the field to {@code out} as a quoted CSV value. ASCII fields are copied as they are; others
+     * are decoded first so that invalid UTF-8 is replaced as in {@link #text}, and NUL characters, which
+     * PostgreSQL text cannot hold, are dropped.
+     */
+    void writeQuoted(int field, ByteArrayOutputStream out) {
+        int from = starts[field];
+        int to = ends[field];
+        out.write(CsvTokenizer.QUOTE);
+        for (int i = from; i < to; i++) {
+            if (bytes[i] <= 0) {
+                byte[] text = text(field).replace("\u0000", "").replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8);
+                out.write(text, 0, text.length);
+                out.write(CsvTokenizer.QUOTE);
+                return;
+            }
+        }
+        if (escaped[field]) {
+            // Quotes inside the range are already doubled
+            out.write(bytes, from, to - from);
+        } else {
+            for (int i = from; i < to; i++) {
+                out.write(bytes[i]);
+                if (bytes[i] == CsvTokenizer.QUOTE) {
+                    out.write(CsvTokenizer.QUOTE);
+                }
+            }
+        }
+        out.write(CsvTokenizer.QUOTE);
+    }
+    
+    /**
+     * Amount in minor units at {@code scale}.
+     *
+     * @throws NumberFormatException if the field is not a decimal number
+     */
+    long units(int field, int scale) {
+        return Money.parseUnits(bytes, starts[field], ends[field], scale);
+    }
+    
+    /**
+     * ISO date; the common {@code yyyy-MM-dd} form is read without allocating.
+     *
+     * @throws DateTimeException if the field is not a valid ISO date
+     */
+    LocalDate date(int field) {
+        int from = starts[field];
+        if (ends[field] - from == 10 && bytes[from + 4] == '-' && bytes[from + 7] == '-') {
+            int year = digits(from, 4);
+            int month = digits(from + 5, 2);
+            int day = digits(from + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        // Offsets and other ISO_DATE variants are rare enough to go through the formatter
+        return LocalDate.parse(text(field), DateTimeFormatter.ISO_DATE);
+    }
+    
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.erp.service;
+
+/**
+ * RFC 4180 record tokenizer over UTF-8 bytes.
+ *
+ * Fields may be quoted; a quoted field can contain the delimiter, line breaks and doubled quotes ({@code ""}).
+ * Records end with LF or CRLF. The tokenizer only locates field boundaries in the caller's buffer and records
+ * them in a {@link CsvRow}; nothing is copied or decoded until a field is read. Malformed quoting is reported
+ * on the row (see {@link CsvRow#errorReason()}) instead of thrown, so one bad record does not stop a file.
+ *
+ * Every quote character counts towards quoting, a stray one inside an unquoted field included (such a record
+ * is rejected): records end exactly at the line breaks preceded by an even number of quotes, which lets
+ * {@link MappedCsvReader} find record boundaries by counting quotes without tokenizing.
+ */
+final class CsvTokenizer {
+    
+    static final byte QUOTE = '"';
+    
+    private final byte delimiter;
+    
+    CsvTokenizer(char delimiter) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n' || delimiter > 0x7F) {
+            throw new IllegalArgumentException("Delimiter must be an ASCII character other than a quote or line break");
+        }
+        this.delimiter = (byte) delimiter;
+    }
+    
+    /**
+     * Length of the UTF-8 byte order mark at {@code bytes[from]}, or 0.
+     */
+    static int bomLength(byte[] bytes, int from, int to) {
+        return to - from >= 3 && bytes[from] == (byte) 0xEF && bytes[from + 1] == (byte) 0xBB
+                && bytes[from + 2] == (byte) 0xBF ? 3 : 0;
+    }
+    
+    /**
+     * Tokenizes the record starting at {@code bytes[from]} into {@code row}.
+     *
+     * @param last whether {@code to} is the end of the input; if not, a record running into {@code to}
+     *             is incomplete and the caller should retry with more bytes
+     * @return the index just past the record and its line break, or -1 if the record is incomplete
+     */
+    int next(byte[] bytes, int from, int to, boolean last, CsvRow row) {
+        row.clear(bytes);
+        int i = from;
+        while (true) {
+            if (i < to && bytes[i] == QUOTE) {
+                int start = ++i;
+                boolean escaped = false;
+                while (true) {
+                    if (i >= to) {
+                        if (!last) {
+                            return -1;
+                        }
+                        row.add(start, to, escaped);
+                        row.fail(row.size() - 1, "Unterminated quoted field");
+                        return to;
+                    }
+                    byte b = bytes[i];
+                    if (b == QUOTE) {
+                        if (i + 1 >= to && !last) {
+                            return -1; // cannot tell a closing quote from an escaped one yet
+                        }
+                        if (i + 1 < to && bytes[i + 1] == QUOTE) {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (b == '\n') {
+                        row.newline();
+                    }
+                    i++;
+                }
+                row.add(start, i, escaped);
+                i++; // closing quote
+                if (i >= to) {
+                    return last ? to : -1;
+                }
+                byte b = bytes[i];
+                if (b == delimiter) {
+                    i++;
+                    continue;
+                }
+                if (b == '\n') {
+                    return i + 1;
+                }
+                if (b == '\r') {
+                    if (i + 1 >= to) {
+                        return last ? to : -1;
+                    }
+                    if (bytes[i + 1] == '\n') {
+                        return i + 2;
+                    }
+                }
+                // Text between the closing quote and the next delimiter: drop the rest of the record
+                row.fail(row.size() - 1, "Unexpected character after closing quote");
+                return skipRecord(bytes, i, to, last, row);
+            }
+            int start = i;
+            while (i < to && bytes[i] != delimiter && bytes[i] != '\n' && bytes[i] != QUOTE) {
+                i++;
+            }
+            if (i < to && bytes[i] == QUOTE) {
+                // Opens quoting mid-field: the record runs to the next line break after an even number of quotes
+                row.fail(row.size(), "Quote inside an unquoted field");
+                return skipRecord(bytes, i, to, last, row);
+            }
+            if (i >= to && !last) {
+                return -1;
+            }
+            if (i < to && bytes[i] == delimiter) {
+                row.add(start, i, false);
+                i++;
+                continue;
+            }
+            int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+            row.add(start, end, false);
+            return i < to ? i + 1 : to;
+        }
+    }
+    
+    // Index past the next line break outside quotes, for abandoning a malformed record
+    private static int skipRecord(byte[] bytes, int i, int to, boolean last, CsvRow row) {
+        boolean quoted = false;
+        for (; i < to; i++) {
+            if (bytes[i] == QUOTE) {
+                quoted = !quoted;
+            } else if (bytes[i] == '\n') {
+                if (!quoted) {
+                    return i + 1;
+                }
+                row.newline();
+            }
+        }
+        return last ? to : -1;
+    }
+}
@@ -0,0 +1,306 @@
+package com.erp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-Sent Events for dashboards ({@code GET /api/dashboard/stream}).
+ *
+ * One producer turns KPI snapshot refreshes into {@code kpi} events carrying only the fields that changed,
+ * and alert changes into {@code alert} and {@code alert-resolved} events carrying the alert, serializes each
+ * event once and hands it to every subscriber's buffer. Each subscriber has its own virtual
+ * thread that parks until its buffer has something and then writes it, so a slow client only delays itself.
+ * Buffers hold {@code dashboard.stream.buffer-size} events: a pending {@code kpi} event is replaced by one
+ * carrying all KPIs, and past that the oldest event is dropped.
+ *
+ * Events are numbered, and the last {@code dashboard.stream.replay-size} are kept so that a client
+ * reconnecting with {@code Last-Event-ID} gets what it missed; one whose id is unknown (or new clients)
+ * gets the full current state instead: a {@code kpi} event with every KPI and an {@code alerts} event with
+ * the active alerts. Idle connections get a comment every {@code dashboard.stream.heartbeat}.
+ */
+@Service
+public class DashboardStreamService {
+    
+    private static final TypeReference<Map<String, Object>> FIELDS = new TypeReference<>() {};
+    // Fields of a KPI snapshot that change on every refresh; they alone do not make an event
+    private static final Set<String> VOLATILE_FIELDS = Set.of("refreshedAt", "refreshMillis");
+    private static final Event HEARTBEAT = new Event(0, null, null, null);
+    
+    private final KpiService kpiService;
+    private final AlertService alertService;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int replaySize;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Guarded by this
+    private final Deque<Event> replay = new ArrayDeque<>();
+    private long lastId;
+    private Map<String, Object> lastKpis;
+    
+    private final Counter published;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter rejected;
+    
+    public DashboardStreamService(KpiService kpiService,
+                                  AlertService alertService,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${dashboard.stream.buffer-size:32}") int bufferSize,
+                                  @Value("${dashboard.stream.replay-size:256}") int replaySize,
+                                  @Value("${dashboard.stream.max-subscribers:5000}") int maxSubscribers,
+                                  @Value("${dashboard.stream.timeout:PT30M}") Duration timeout) {
+        this.kpiService = kpiService;
+        this.alertService = alertService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        
+        this.published = Counter.builder("erp.dashboard.stream.events")
+                .description("Events published to dashboard stream subscribers")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("erp.dashboard.stream.buffered")
+                .description("Events a slow dashboard subscriber did not get as such")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("erp.dashboard.stream.buffered")
+                .description("Events a slow dashboard subscriber did not get as such")
+                .tag("result", "dropped")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("erp.dashboard.stream.rejected")
+                .description("Dashboard stream subscriptions refused at max-subscribers")
+                .register(meterRegistry);
+        Gauge.builder("erp.dashboard.stream.subscribers", subscribers, Set::size)
+                .description("Open dashboard stream connections")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Opens a stream for one client, starting after {@code lastEventId} when the events since are still known.
+     *
+     * @throws RejectedExecutionException if {@code dashboard.stream.max-subscribers} streams are open
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many dashboard subscribers, retry later");
+        }
+        // Outside the lock: computing the first snapshot publishes it here
+        KpiService.Snapshot kpis = kpiService.current();
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        
+        synchronized (this) {
+            // Registered under the lock so that nothing is published between the backlog and the first live event
+            for (Event event : backlog(lastEventId, kpis)) {
+                subscriber.offer(event);
+            }
+            subscribers.add(subscriber);
+        }
+        Thread.ofVirtual().name("dashboard-stream").start(subscriber::run);
+        return emitter;
+    }
+    
+    /**
+     * Publishes the KPIs that differ from the last snapshot published.
+     */
+    @EventListener
+    public synchronized void onKpisRefreshed(KpiService.Snapshot snapshot) {
+        Map<String, Object> kpis = objectMapper.convertValue(snapshot, FIELDS);
+        Map<String, Object> changed = new LinkedHashMap<>();
+        kpis.forEach((field, value) -> {
+            if (!VOLATILE_FIELDS.contains(field) && (lastKpis == null || !Objects.equals(value, lastKpis.get(field)))) {
+                changed.put(field, value);
+            }
+        });
+        lastKpis = kpis;
+        if (changed.isEmpty()) {
+            return;
+        }
+        changed.put("refreshedAt", kpis.get("refreshedAt"));
+        publish("kpi", changed, kpis);
+    }
+    
+    @EventListener
+    public void onAlertChanged(AlertService.AlertChanged change) {
+        publish(change.resolved() ? "alert-resolved" : "alert", change.alert(), null);
+    }
+    
+    @Scheduled(fixedDelayString = "${dashboard.stream.heartbeat:PT15S}",
+            initialDelayString = "${dashboard.stream.heartbeat:PT15S}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat();
+        }
+    }
+    
+    /**
+     * @param state the full state {@code data} is a change of, sent instead when events coalesce; null
+     *              for events that must each be delivered
+     */
+    private synchronized void publish(String name, Object data, Object state) {
+        Event event = new Event(++lastId, name, json(data), state != null ? json(state) : null);
+        replay.addLast(event);
+        if (replay.size() > replaySize) {
+            replay.removeFirst();
+        }
+        published.increment();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+    
+    // Events a client that last saw lastEventId has missed
+    private List<Event> backlog(String lastEventId, KpiService.Snapshot kpis) {
+        long seen = eventId(lastEventId);
+        if (seen == lastId) {
+            return List.of();
+        }
+        Event oldest = replay.peekFirst();
+        if (oldest != null && seen >= oldest.id() - 1 && seen < lastId) {
+            return replay.stream().filter(event -> event.id() > seen).toList();
+        }
+        // Unknown id (another node, a restart, or too far behind): send the full state
+        String state = json(lastKpis != null ? lastKpis : kpis);
+        return List.of(new Event(lastId, "kpi", state, state), new Event(lastId, "alerts", json(alertService.active(null)), null));
+    }
+    
+    private static long eventId(String lastEventId) {
+        if (lastEventId != null) {
+            try {
+                return Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // Not one of ours; start over
+            }
+        }
+        return -1;
+    }
+    
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize dashboard event: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * @param state for events that may coalesce, the full state to send in place of this and earlier ones
+     */
+    private record Event(long id, String name, String data, String state) {}
+    
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // A ReentrantLock rather than a monitor, so that a parked writer does not pin its carrier thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+        private final Deque<Event> buffer = new ArrayDeque<>();
+        private boolean closed;
+        
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        void offer(Event event) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (event.state() != null && buffer.removeIf(pending -> pending.state() != null && pending.name().equals(event.name()))) {
+                    coalesced.increment();
+                    buffer.addLast(new Event(event.id(), event.name(), event.state(), event.state()));
+                } else {
+                    if (buffer.size() >= bufferSize) {
+                        buffer.removeFirst();
+                        dropped.increment();
+                    }
+                    buffer.addLast(event);
+                }
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void heartbeat() {
+            lock.lock();
+            try {
+                if (!closed && buffer.isEmpty()) {
+                    buffer.addLast(HEARTBEAT);
+                    ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                buffer.clear();
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+            subscribers.remove(this);
+        }
+        
+        // The subscriber's writer: sends buffered events until the stream ends
+        void run() {
+            try {
+                Event event;
+                while ((event = take()) != null) {
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(Long.toString(event.id())).name(event.name()).data(event.data()));
+                    }
+                }
+            } catch (IOException | IllegalStateException | InterruptedException e) {
+                // The client went away or the stream timed out
+                close();
+                emitter.complete();
+            }
+        }
+        
+        // The next event, or null once closed
+        private Event take() throws InterruptedException {
+            lock.lock();
+            try {
+                while (buffer.isEmpty() && !closed) {
+                    ready.await();
+                }
+                return closed ? null : buffer.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
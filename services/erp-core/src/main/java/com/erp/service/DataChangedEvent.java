@@ -0,0 +1,14 @@
+package com.erp.service;
+
+/**
+ * Published after rows of {@code table} were written and committed, by the importers and by the
+ * controllers that change records one at a time, so that views derived from the table can refresh.
+ * When a single row changed, {@code id} is its key and {@code row} the entity as saved (null if it was deleted);
+ * both are null when many rows may have changed.
+ */
+public record DataChangedEvent(String table, Long id, Object row) {
+    
+    public DataChangedEvent(String table) {
+        this(table, null, null);
+    }
+}
@@ -1,149 +1,598 @@
 package com.erp.service;
 
+import com.erp.entity.ImportJob;
+import com.erp.entity.ImportedFile;
+import com.erp.entity.Money;
 import com.erp.entity.Transaction;
 import com.erp.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.core.io.ByteArrayResource;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.math.BigDecimal;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class DataImportService {
     
+    private static final Logger log = LoggerFactory.getLogger(DataImportService.class);
+    
     @Autowired
     private TransactionRepository transactionRepository;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private AiEnrichmentService aiEnrichment;
+    
+    @Autowired
+    private TransactionRollupService rollupService;
+    
+    @Autowired
+    private TransactionSketchService sketchService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired(required = false)
+    private TransactionColumnStore columnStore;
+    
+    @Autowired
+    private AnalyticsCache analyticsCache;
+    
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+    
+    @Autowired
+    private ImportDeduplicator deduplicator;
+    
+    @Autowired
+    private TransactionStagingService stagingService;
+    
+    @Autowired
+    private UploadSpool uploadSpool;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ActivityLogService activityLog;
+    
+    @Value("${import.chunk-size:5000}")
+    private int chunkSize;
+    
+    @Value("${import.rejected-details-limit:100}")
+    private int rejectedDetailsLimit;
+    
+    // 0 means one parser thread per core
+    @Value("${import.parser-threads:0}")
+    private int parserThreads;
+    
+    @Value("${import.delimiter:,}")
+    private char delimiter;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    @Qualifier("csvParserExecutor")
+    private ExecutorService csvParsers;
     
-    @Value("${ai.engine.url:http://localhost:8001}")
-    private String aiEngineUrl;
+    private final MeterRegistry meterRegistry;
     
-    public int importCSV(MultipartFile file) throws Exception {
-        List<Transaction> transactions = new ArrayList<>();
+    public DataImportService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+    
+    /**
+     * Imports a transactions CSV. Rows are written in chunks of {@code import.chunk-size} inside one
+     * transaction, each chunk with a single set-based insert, so the import holds at most one chunk of
+     * entities. Rollup, sketch and column store updates are accumulated per bucket and applied once;
+     * the import stays all-or-nothing.
+     * Rows already in the table, and repeats within the file, are skipped and counted as duplicates
+     * ({@link ImportDeduplicator}); a file identical to one already imported is not read at all.
+     * The file goes through the AI engine chunk by chunk ({@link AiEnrichmentService}); when the engine is
+     * disabled or its circuit breaker is open, it is parsed in parallel by {@link MappedCsvReader}. Either
+     * way invalid rows are skipped and reported as in copy mode.
+     */
+    public ImportResult importCSV(MultipartFile file) throws Exception {
+        Path spool = uploadSpool.spool(file);
+        try {
+            return importCSV(spool, file.getOriginalFilename(), ImportListener.NONE);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+    
+    public ImportResult importCSV(Path file, String filename, ImportListener listener) throws Exception {
+        long started = System.nanoTime();
+        String hash = deduplicator.fileHash(file);
+        Optional<ImportedFile> previous = deduplicator.findImported(hash);
+        if (previous.isPresent()) {
+            return alreadyImported("batch", filename, started, previous.get(), listener);
+        }
         
-        // Step 1: Process CSV with AI Engine for validation and enrichment
-        Map<String, Object> aiProcessingResult = processCSVWithAI(file);
+        Source source = Source.of(file, filename, hash);
         
-        if (aiProcessingResult != null && aiProcessingResult.containsKey("processed_data")) {
-            List<Map<String, String>> processedData = (List<Map<String, String>>) aiProcessingResult.get("processed_data");
-            
-            // Use AI-processed data
-            for (Map<String, String> row : processedData) {
-                Transaction transaction = createTransactionFromRow(row);
-                if (transaction != null) {
-                    transactions.add(transaction);
-                }
+        Written written;
+        long rejectedCount;
+        List<RejectedRow> rejected;
+        if (aiEnrichment.isAvailable()) {
+            // Validation and enrichment by the AI engine, streamed chunk by chunk into the writer
+            listener.phase(ImportJob.ENRICHING);
+            try (AiEnrichmentService.EnrichedRows rows = aiEnrichment.enrich(file, delimiter,
+                    DataImportService::createTransaction, DataImportService::createTransactionFromRow)) {
+                // Writing starts once the first chunk is back; the rest are enriched while it runs
+                rows.hasNext();
+                listener.phase(ImportJob.WRITING);
+                written = writeInChunks(rows, rows, source, listener);
+                rejectedCount = rows.rejectedCount();
+                rejected = rows.rejectedRows();
             }
         } else {
-            // Fallback: Process directly without AI
-            transactions = parseCSVDirectly(file);
+            // Fallback: Process directly without AI, parsing the file in parallel
+            listener.phase(ImportJob.WRITING);
+            try (MappedCsvReader<Transaction> reader = MappedCsvReader.open(file, csvParsers, parserThreads(),
+                    delimiter, chunkSize, rejectedDetailsLimit, DataImportService::createTransaction)) {
+                written = writeInChunks(reader.rows(), reader, source, listener);
+                rejectedCount = reader.rejectedCount();
+                rejected = reader.rejectedRows();
+            }
         }
-        
-        // Batch save
-        transactionRepository.saveAll(transactions);
-        return transactions.size();
+        return result("batch", filename, started, written.rows(), rejectedCount, rejected, written.duplicates(), null, null);
     }
     
-    private Map<String, Object> processCSVWithAI(MultipartFile file) {
+    /**
+     * Bulk load for large files: validates each row and streams the valid ones into the transactions
+     * table with PostgreSQL COPY, in one transaction together with the rollup and sketch updates.
+     * Invalid rows are skipped and reported (line number and reason) instead of failing the load.
+     * Each chunk is copied into a temporary staging table and moved over with {@code ON CONFLICT DO NOTHING},
+     * so duplicates are skipped as in batch mode. Bypasses the AI enrichment step.
+     */
+    public ImportResult importCSVCopy(MultipartFile file) throws Exception {
+        Path spool = uploadSpool.spool(file);
         try {
-            // Call AI Engine to process CSV
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-            
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
+            return importCSVCopy(spool, file.getOriginalFilename(), ImportListener.NONE);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+    
+    public ImportResult importCSVCopy(Path file, String filename, ImportListener listener) throws Exception {
+        long started = System.nanoTime();
+        String hash = deduplicator.fileHash(file);
+        Optional<ImportedFile> previous = deduplicator.findImported(hash);
+        if (previous.isPresent()) {
+            return alreadyImported("copy", filename, started, previous.get(), listener);
+        }
+        listener.phase(ImportJob.WRITING);
+        Source source = Source.of(file, filename, hash);
+        
+        TransactionRollupService.Delta rollupDelta = new TransactionRollupService.Delta();
+        TransactionSketchService.Delta sketchDelta = new TransactionSketchService.Delta();
+        TransactionColumnStore.Staging staging = columnStore != null ? columnStore.newStaging() : null;
+        List<RejectedRow> rejected = new ArrayList<>();
+        long[] rejectedCount = new long[1];
+        
+        Written copied = transactionTemplate.execute(status -> {
+            // The JPA transaction manager exposes its connection, so COPY joins the same transaction
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try (MappedCsvReader<Transaction> reader = MappedCsvReader.open(file, csvParsers, parserThreads(),
+                    delimiter, chunkSize, rejectedDetailsLimit, DataImportService::createTransaction)) {
+                deduplicator.createStagingTable();
+                long written = 0;
+                long duplicates = 0;
+                List<Transaction> chunk;
+                while ((chunk = reader.nextChunk()) != null) {
+                    duplicates += deduplicator.dropDuplicates(chunk);
+                    // A COPY occupies the connection until it ends, so each chunk gets its own
+                    try (TransactionCopyWriter copy = TransactionCopyWriter.open(connection, ImportDeduplicator.STAGING_TABLE)) {
+                        for (Transaction transaction : chunk) {
+                            copy.write(transaction);
+                        }
+                        copy.finish();
+                    }
+                    duplicates += deduplicator.mergeStaged(chunk);
+                    written += chunk.size();
+                    stageChunk(chunk, source, rollupDelta, sketchDelta, staging);
+                    listener.progress(reader.parsedCount(), written, reader.rejectedCount(), duplicates);
                 }
-            });
-            
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-            
-            String url = aiEngineUrl + "/api/csv/process-csv";
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, requestEntity, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return response.getBody();
+                rejectedCount[0] = reader.rejectedCount();
+                rejected.addAll(reader.rejectedRows());
+                rollupService.apply(rollupDelta);
+                sketchService.apply(sketchDelta);
+                if (staging != null) {
+                    columnStore.publishOnCommit(staging);
+                }
+                source.record(deduplicator, written, duplicates, rejectedCount[0]);
+                listener.beforeCommit(written, rejectedCount[0], duplicates, rejected);
+                return new Written((int) written, duplicates);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("COPY into transactions failed: " + e.getMessage(), e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
             }
-        } catch (Exception e) {
-            // Log error but don't fail - fallback to direct processing
-            System.err.println("AI processing failed: " + e.getMessage());
+        });
+        partitionWritten(source);
+        transactionsChanged();
+        int imported = copied != null ? copied.rows() : 0;
+        long duplicates = copied != null ? copied.duplicates() : 0;
+        return result("copy", filename, started, imported, rejectedCount[0], rejected, duplicates, null, null);
+    }
+    
+    /**
+     * Set-based load ({@link TransactionStagingService}): the raw fields are copied into an UNLOGGED staging
+     * table, validated and normalized there by SQL, and the clean rows move into transactions with one
+     * INSERT ... SELECT, in one transaction together with the rollup and sketch updates. Duplicates are
+     * skipped as in the other modes. Rejected rows are kept with their raw fields under the returned
+     * {@code importId} for download. Bypasses the AI enrichment step. Slower than {@link #importCSVCopy} on
+     * clean files, as every row is written twice (see {@link TransactionStagingService}).
+     */
+    public ImportResult importCSVStaged(MultipartFile file) throws Exception {
+        Path spool = uploadSpool.spool(file);
+        try {
+            return importCSVStaged(spool, file.getOriginalFilename(), UUID.randomUUID().toString(), ImportListener.NONE);
+        } finally {
+            Files.deleteIfExists(spool);
         }
-        return null;
     }
     
-    private List<Transaction> parseCSVDirectly(MultipartFile file) throws Exception {
-        List<Transaction> transactions = new ArrayList<>();
+    public ImportResult importCSVStaged(Path file, String filename, String importId, ImportListener listener) throws Exception {
+        long started = System.nanoTime();
+        String hash = deduplicator.fileHash(file);
+        Optional<ImportedFile> previous = deduplicator.findImported(hash);
+        if (previous.isPresent()) {
+            return alreadyImported("staging", filename, started, previous.get(), listener);
+        }
+        listener.phase(ImportJob.WRITING);
+        Source source = Source.of(file, filename, hash);
+        
+        TransactionRollupService.Delta rollupDelta = new TransactionRollupService.Delta();
+        TransactionSketchService.Delta sketchDelta = new TransactionSketchService.Delta();
+        TransactionColumnStore.Staging staging = columnStore != null ? columnStore.newStaging() : null;
+        List<RejectedRow> rejected = new ArrayList<>();
+        long[] rejectedCount = new long[1];
         
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            boolean isFirstLine = true;
-            
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue; // Skip header
+        Written merged = transactionTemplate.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try (MappedCsvReader<byte[]> reader = MappedCsvReader.open(file, csvParsers, parserThreads(),
+                    delimiter, chunkSize, rejectedDetailsLimit, TransactionStagingService::encode)) {
+                String table = stagingService.create(importId);
+                long staged;
+                // One COPY for the whole file; the parser threads have already encoded each row
+                try (TransactionStagingService.Copy copy = TransactionStagingService.openCopy(connection, table)) {
+                    List<byte[]> chunk;
+                    while ((chunk = reader.nextChunk()) != null) {
+                        for (byte[] row : chunk) {
+                            copy.write(row);
+                        }
+                        listener.progress(reader.parsedCount(), 0, reader.rejectedCount(), 0);
+                    }
+                    staged = copy.finish();
                 }
-                
-                String[] values = line.split(",");
-                if (values.length >= 10) {
-                    Transaction transaction = new Transaction();
-                    transaction.setTransactionDate(LocalDate.parse(values[0], DateTimeFormatter.ISO_DATE));
-                    transaction.setCustomerName(values[1]);
-                    transaction.setTransactionType(values[2]);
-                    transaction.setRevenue(new BigDecimal(values[3]));
-                    transaction.setCost(new BigDecimal(values[4]));
-                    transaction.setProduct(values[5]);
-                    transaction.setOrderStatus(values[6]);
-                    transaction.setDepartment(values[7]);
-                    transaction.setProfit(new BigDecimal(values[8]));
-                    transaction.setForecastedRevenue(new BigDecimal(values[9]));
-                    
-                    transactions.add(transaction);
+                long invalid = stagingService.validate(table);
+                long[] written = new long[1];
+                stagingService.merge(table, chunkSize, inserted -> {
+                    deduplicator.remember(inserted);
+                    written[0] += inserted.size();
+                    stageChunk(inserted, source, rollupDelta, sketchDelta, staging);
+                    listener.progress(reader.parsedCount(), written[0], reader.rejectedCount() + invalid, 0);
+                });
+                long duplicates = staged - invalid - written[0];
+                rejectedCount[0] = reader.rejectedCount() + invalid;
+                rejected.addAll(stagingService.rejectedRows(table, reader.rejectedRows(), rejectedDetailsLimit));
+                stagingService.retainRejects(table, importId, reader.rejectedRows());
+                stagingService.drop(table);
+                rollupService.apply(rollupDelta);
+                sketchService.apply(sketchDelta);
+                if (staging != null) {
+                    columnStore.publishOnCommit(staging);
                 }
+                source.record(deduplicator, written[0], duplicates, rejectedCount[0]);
+                listener.beforeCommit(written[0], rejectedCount[0], duplicates, rejected);
+                return new Written((int) written[0], duplicates);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("COPY into staging table failed: " + e.getMessage(), e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
             }
+        });
+        partitionWritten(source);
+        transactionsChanged();
+        int imported = merged != null ? merged.rows() : 0;
+        long duplicates = merged != null ? merged.duplicates() : 0;
+        return result("staging", filename, started, imported, rejectedCount[0], rejected, duplicates, null, importId);
+    }
+    
+    /**
+     * Outcome of one import, with end-to-end throughput (parsing, AI round trip and writes).
+     * Rejected row details are capped at {@code import.rejected-details-limit}. When the file was
+     * imported before, {@code alreadyImportedAt} says when and nothing is written. {@code importId}
+     * identifies the rejected rows kept by a staging import, and is null in the other modes.
+     */
+    public record ImportResult(int recordsImported, long durationMillis, double rowsPerSecond,
+                               long rejectedCount, List<RejectedRow> rejectedRows, long duplicatesSkipped,
+                               LocalDateTime alreadyImportedAt, String importId) {}
+    
+    /**
+     * A row left out of an import: the line it starts on, the 1-based column at fault (null when the
+     * whole row is) and why.
+     */
+    public record RejectedRow(long line, Integer column, String reason) {}
+    
+    // What one import wrote to the transactions table
+    private record Written(int rows, long duplicates) {}
+    
+    // The file being imported, as recorded in imported_files once its rows commit, with the dates of the rows written
+    private static final class Source {
+        private final String hash;
+        private final String filename;
+        private final long sizeBytes;
+        private final Set<LocalDate> months = new HashSet<>();
+        private LocalDate firstDate;
+        private LocalDate lastDate;
+        
+        private Source(String hash, String filename, long sizeBytes) {
+            this.hash = hash;
+            this.filename = filename;
+            this.sizeBytes = sizeBytes;
+        }
+        
+        static Source of(Path file, String filename, String hash) throws IOException {
+            return new Source(hash, filename, Files.size(file));
+        }
+        
+        void written(List<Transaction> chunk) {
+            for (Transaction transaction : chunk) {
+                LocalDate date = transaction.getTransactionDate();
+                if (date == null) {
+                    continue;
+                }
+                if (firstDate == null || date.isBefore(firstDate)) {
+                    firstDate = date;
+                }
+                if (lastDate == null || date.isAfter(lastDate)) {
+                    lastDate = date;
+                }
+                months.add(date.withDayOfMonth(1));
+            }
+        }
+        
+        void record(ImportDeduplicator deduplicator, long written, long duplicates, long rejected) {
+            deduplicator.recordImport(hash, filename, sizeBytes, written, duplicates, rejected, firstDate, lastDate);
         }
-        return transactions;
     }
     
-    private Transaction createTransactionFromRow(Map<String, String> row) {
+    // An identical file was imported before: every row it holds is already in the table or was rejected then
+    private ImportResult alreadyImported(String mode, String filename, long startedNanos, ImportedFile previous, ImportListener listener) {
+        long duplicates = previous.getRowsWritten() + previous.getRowsDuplicate();
+        listener.progress(duplicates, 0, 0, duplicates);
+        transactionTemplate.executeWithoutResult(status -> listener.beforeCommit(0, 0, duplicates, List.of()));
+        return result(mode, filename, startedNanos, 0, 0, List.of(), duplicates, previous.getImportedAt(), null);
+    }
+    
+    private ImportResult result(String mode, String filename, long startedNanos, int imported, long rejectedCount,
+                                List<RejectedRow> rejected, long duplicates, LocalDateTime alreadyImportedAt, String importId) {
+        long elapsedNanos = System.nanoTime() - startedNanos;
+        double rowsPerSecond = elapsedNanos > 0 ? imported * 1e9 / elapsedNanos : 0;
+        Counter.builder("erp.import.rows")
+                .description("Transactions imported from CSV")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment(imported);
+        Counter.builder("erp.import.rejected")
+                .description("CSV rows rejected by validation")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment(rejectedCount);
+        Counter.builder("erp.import.duplicates")
+                .description("CSV rows skipped because the transaction was already imported")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment(duplicates);
+        Timer.builder("erp.import.duration")
+                .description("End-to-end CSV import time")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("erp.import.throughput")
+                .description("Rows per second of each CSV import")
+                .baseUnit("rows/s")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(rowsPerSecond);
+        activityLog.record("imported", "transactions", importId, alreadyImportedAt != null
+                ? "Skipped " + filename + ", already imported"
+                : "Imported " + imported + " transactions from " + filename + " (" + mode + ", " + rejectedCount
+                        + " rejected, " + duplicates + " duplicates)");
+        return new ImportResult(imported, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond, rejectedCount, rejected,
+                duplicates, alreadyImportedAt, importId);
+    }
+    
+    private void stageChunk(List<Transaction> chunk, Source source, TransactionRollupService.Delta rollupDelta,
+                            TransactionSketchService.Delta sketchDelta, TransactionColumnStore.Staging staging) {
+        source.written(chunk);
+        rollupDelta.addAll(chunk);
+        sketchDelta.addAll(chunk);
+        if (staging != null) {
+            columnStore.stage(staging, chunk);
+        }
+        chunk.clear();
+    }
+    
+    // counts tracks what the row source has read and rejected, for progress reports
+    private Written writeInChunks(Iterator<Transaction> rows, RowCounts counts, Source source, ImportListener listener) {
+        TransactionRollupService.Delta rollupDelta = new TransactionRollupService.Delta();
+        TransactionSketchService.Delta sketchDelta = new TransactionSketchService.Delta();
+        TransactionColumnStore.Staging staging = columnStore != null ? columnStore.newStaging() : null;
+        
+        // Raw rows, rollup buckets and sketches commit together
+        Written written = transactionTemplate.execute(status -> {
+            List<Transaction> chunk = new ArrayList<>(chunkSize);
+            int count = 0;
+            long duplicates = 0;
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                if (chunk.size() == chunkSize || !rows.hasNext()) {
+                    // Only rows actually inserted reach the rollups, sketches and column store
+                    duplicates += deduplicator.dropDuplicates(chunk);
+                    duplicates += deduplicator.insert(chunk);
+                    count += chunk.size();
+                    stageChunk(chunk, source, rollupDelta, sketchDelta, staging);
+                    listener.progress(counts.parsedCount(), count, counts.rejectedCount(), duplicates);
+                }
+            }
+            rollupService.apply(rollupDelta);
+            sketchService.apply(sketchDelta);
+            if (staging != null) {
+                columnStore.publishOnCommit(staging);
+            }
+            source.record(deduplicator, count, duplicates, counts.rejectedCount());
+            listener.beforeCommit(count, counts.rejectedCount(), duplicates, counts.rejectedRows());
+            return new Written(count, duplicates);
+        });
+        partitionWritten(source);
+        transactionsChanged();
+        return written != null ? written : new Written(0, 0);
+    }
+    
+    // Rows of months without a partition were routed to the default partition; creating the partitions after
+    // the commit moves them there. Partition DDL inside the import transaction would lock the table for its length.
+    private void partitionWritten(Source source) {
         try {
-            Transaction transaction = new Transaction();
-            transaction.setTransactionDate(LocalDate.parse(row.get("Date"), DateTimeFormatter.ISO_DATE));
-            transaction.setCustomerName(row.get("Customer"));
-            transaction.setTransactionType(row.get("TransactionType"));
-            transaction.setRevenue(new BigDecimal(row.get("Revenue")));
-            transaction.setCost(new BigDecimal(row.get("Cost")));
-            transaction.setProduct(row.get("Product"));
-            transaction.setOrderStatus(row.get("OrderStatus"));
-            transaction.setDepartment(row.get("Department"));
-            transaction.setProfit(new BigDecimal(row.get("Profit")));
-            transaction.setForecastedRevenue(new BigDecimal(row.getOrDefault("ForecastedRevenue", "0")));
-            
-            return transaction;
-        } catch (Exception e) {
-            System.err.println("Failed to create transaction from row: " + e.getMessage());
-            return null;
+            partitionManager.ensurePartitions(source.months);
+        } catch (RuntimeException e) {
+            // The rows are committed; they move the next time their month is ensured
+            log.warn("Could not create partitions for {}: {}", source.filename, e.getMessage());
         }
     }
     
+    // Called once the transactions table has changed and the change is committed
+    private void transactionsChanged() {
+        analyticsCache.invalidateAll();
+        eventPublisher.publishEvent(new DataChangedEvent("transactions"));
+    }
+    
+    private int parserThreads() {
+        return parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+    }
+    
+    // Throws IllegalArgumentException naming the offending column; package-private for CsvParseBenchmark
+    static Transaction createTransaction(CsvRow row) {
+        if (row.size() < 10) {
+            throw new IllegalArgumentException("Expected 10 columns, found " + row.size());
+        }
+        Transaction transaction = new Transaction();
+        try {
+            transaction.setTransactionDate(row.date(0));
+        } catch (DateTimeException e) {
+            throw new CsvFieldException(0, "transaction_date: invalid date \"" + row.text(0) + "\"");
+        }
+        transaction.setCustomerName(row.text(1));
+        transaction.setTransactionType(row.text(2));
+        transaction.setRevenueUnits(units("revenue", row, 3));
+        transaction.setCostUnits(units("cost", row, 4));
+        transaction.setProduct(row.text(5));
+        transaction.setOrderStatus(row.text(6));
+        transaction.setDepartment(row.text(7));
+        transaction.setProfitUnits(units("profit", row, 8));
+        transaction.setForecastedRevenueUnits(units("forecasted_revenue", row, 9));
+        return transaction;
+    }
+    
+    private static long units(String column, CsvRow row, int field) {
+        try {
+            return row.units(field, Money.DEFAULT_SCALE);
+        } catch (NumberFormatException e) {
+            throw new CsvFieldException(field, column + ": " + e.getMessage());
+        }
+    }
+    
+    // Maps a row the AI engine returned; throws on a row it cannot read, which sends the chunk back to direct parsing
+    private static Transaction createTransactionFromRow(Map<String, String> row) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionDate(LocalDate.parse(row.get("Date"), DateTimeFormatter.ISO_DATE));
+        transaction.setCustomerName(row.get("Customer"));
+        transaction.setTransactionType(row.get("TransactionType"));
+        transaction.setRevenueUnits(units(row.get("Revenue")));
+        transaction.setCostUnits(units(row.get("Cost")));
+        transaction.setProduct(row.get("Product"));
+        transaction.setOrderStatus(row.get("OrderStatus"));
+        transaction.setDepartment(row.get("Department"));
+        transaction.setProfitUnits(units(row.get("Profit")));
+        transaction.setForecastedRevenueUnits(units(row.getOrDefault("ForecastedRevenue", "0")));
+        return transaction;
+    }
+    
+    // Amount columns hold cents; parsing straight to minor units skips the intermediate BigDecimal
+    private static long units(String text) {
+        return Money.parseUnits(text, Money.DEFAULT_SCALE);
+    }
+    
     public void clearAllData() {
-        transactionRepository.deleteAll();
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionRepository.truncate();
+            rollupService.clear();
+            sketchService.clear();
+            deduplicator.clear();
+            stagingService.clearRejects();
+        });
+        if (columnStore != null) {
+            columnStore.clear();
+        }
+        transactionsChanged();
+        activityLog.record("cleared", "transactions", null, "Cleared all transactions");
+    }
+    
+    /**
+     * Retention: removes whole months of transactions ending on or before {@code cutoff} by
+     * detaching their partitions (and dropping them when {@code drop} is set), then trims the
+     * derived rollups, sketches and column store to match.
+     *
+     * @return months removed
+     */
+    public List<LocalDate> purgeBefore(LocalDate cutoff, boolean drop) {
+        List<LocalDate> removed = partitionManager.detachPartitionsBefore(cutoff, drop);
+        if (removed.isEmpty()) {
+            return removed;
+        }
+        // Partitions are whole months, so every month before the cutoff's month is gone
+        LocalDate firstKept = cutoff.withDayOfMonth(1);
+        transactionTemplate.executeWithoutResult(status -> {
+            rollupService.purgeBefore(firstKept);
+            sketchService.purgeBefore(firstKept);
+            deduplicator.purgeBefore(firstKept);
+        });
+        if (columnStore != null) {
+            columnStore.load();
+        }
+        transactionsChanged();
+        activityLog.record("purged", "transactions", null, "Removed " + removed.size() + " months of transactions before " + firstKept);
+        return removed;
     }
 }
@@ -0,0 +1,29 @@
+package com.erp.service;
+
+/**
+ * A model fitted to an evenly spaced series (monthly revenue), able to forecast the values that follow it.
+ *
+ * Models keep their one-step-ahead errors over the fitted series, so that models of one series can be
+ * compared on the observations they all predict.
+ */
+public interface ForecastModel {
+    
+    String name();
+    
+    /**
+     * Index of the first observation the model predicts (earlier ones initialize it).
+     */
+    int firstPredicted();
+    
+    /**
+     * Mean squared one-step-ahead error over the observations from index {@code from} on.
+     */
+    double meanSquaredError(int from);
+    
+    /**
+     * The next {@code horizon} values, each with an interval of {@code z} standard errors of its forecast.
+     */
+    Forecast forecast(int horizon, double z);
+    
+    record Forecast(double[] mean, double[] lower, double[] upper) {}
+}
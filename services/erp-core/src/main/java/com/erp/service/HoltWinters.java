@@ -0,0 +1,208 @@
+package com.erp.service;
+
+/**
+ * Holt-Winters exponential smoothing: level, trend and a seasonal component of {@code period} observations,
+ * with additive or multiplicative seasonality.
+ *
+ * The smoothing parameters are chosen by grid search for the least squared one-step-ahead error, and the
+ * components are kept for every observation. {@link #refit} reruns the smoothing from the first changed
+ * observation with the parameters already chosen, so a new or revised month costs a few steps rather than
+ * a grid search; the search is redone once a season of new observations has accumulated, or when a change
+ * reaches the first two seasons, which the components are initialized from.
+ *
+ * Prediction intervals use the forecast variance of the matching state space (ETS) model; with
+ * multiplicative seasonality errors are taken relative to the forecast, which makes them approximate.
+ */
+public final class HoltWinters implements ForecastModel {
+    
+    private static final double[] ALPHAS = {0.05, 0.15, 0.25, 0.35, 0.45, 0.55, 0.65, 0.75, 0.85, 0.95};
+    private static final double[] BETAS = {0, 0.05, 0.1, 0.2, 0.3};
+    private static final double[] GAMMAS = ALPHAS;
+    
+    private final int period;
+    private final boolean multiplicative;
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    // Length of the series the parameters were chosen on
+    private final int estimatedOn;
+    
+    private final double[] y;
+    private final double[] level;
+    private final double[] trend;
+    private final double[] season;
+    // One-step-ahead errors, from index period on
+    private final double[] error;
+    
+    private HoltWinters(double[] y, int period, boolean multiplicative, double alpha, double beta, double gamma, int estimatedOn) {
+        this.y = y;
+        this.period = period;
+        this.multiplicative = multiplicative;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.estimatedOn = estimatedOn;
+        this.level = new double[y.length];
+        this.trend = new double[y.length];
+        this.season = new double[y.length];
+        this.error = new double[y.length];
+    }
+    
+    /**
+     * Fits a model to {@code y}, or returns null when it is shorter than two seasons or, for multiplicative
+     * seasonality, not positive throughout.
+     */
+    public static HoltWinters fit(double[] y, int period, boolean multiplicative) {
+        if (!applies(y, period, multiplicative)) {
+            return null;
+        }
+        HoltWinters best = null;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (double alpha : ALPHAS) {
+            for (double beta : BETAS) {
+                for (double gamma : GAMMAS) {
+                    HoltWinters candidate = new HoltWinters(y, period, multiplicative, alpha, beta, gamma, y.length);
+                    candidate.initialize();
+                    double squaredError = candidate.smooth(period);
+                    if (squaredError < bestError) {
+                        best = candidate;
+                        bestError = squaredError;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * This model fitted to {@code y}, a revision of its series equal to it before index {@code firstChanged}.
+     * Returns null where {@link #fit} would.
+     */
+    public HoltWinters refit(double[] y, int firstChanged) {
+        if (firstChanged < 2 * period || y.length >= estimatedOn + period || !applies(y, period, multiplicative)) {
+            return fit(y, period, multiplicative);
+        }
+        HoltWinters refitted = new HoltWinters(y, period, multiplicative, alpha, beta, gamma, estimatedOn);
+        int kept = Math.min(firstChanged, Math.min(y.length, this.y.length));
+        System.arraycopy(level, 0, refitted.level, 0, kept);
+        System.arraycopy(trend, 0, refitted.trend, 0, kept);
+        System.arraycopy(season, 0, refitted.season, 0, kept);
+        System.arraycopy(error, 0, refitted.error, 0, kept);
+        // Smoothing can break down where the series changed shape (a multiplicative level crossing zero)
+        return Double.isFinite(refitted.smooth(kept)) ? refitted : fit(y, period, multiplicative);
+    }
+    
+    private static boolean applies(double[] y, int period, boolean multiplicative) {
+        if (y.length < 2 * period) {
+            return false;
+        }
+        if (multiplicative) {
+            for (double value : y) {
+                if (value <= 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    // Level and trend from the means of the first two seasons, seasonal components from the first
+    private void initialize() {
+        double first = 0;
+        double second = 0;
+        for (int i = 0; i < period; i++) {
+            first += y[i];
+            second += y[period + i];
+        }
+        first /= period;
+        second /= period;
+        for (int i = 0; i < period; i++) {
+            season[i] = multiplicative ? y[i] / first : y[i] - first;
+            error[i] = Double.NaN;
+        }
+        level[period - 1] = first;
+        trend[period - 1] = (second - first) / period;
+    }
+    
+    /**
+     * Smooths the observations from index {@code from} on, the components before it being known.
+     *
+     * @return the sum of squared one-step-ahead errors over the whole series
+     */
+    private double smooth(int from) {
+        for (int t = Math.max(from, period); t < y.length; t++) {
+            double previousLevel = level[t - 1];
+            double previousTrend = trend[t - 1];
+            double previousSeason = season[t - period];
+            double forecast;
+            if (multiplicative) {
+                forecast = (previousLevel + previousTrend) * previousSeason;
+                level[t] = alpha * y[t] / previousSeason + (1 - alpha) * (previousLevel + previousTrend);
+                season[t] = gamma * y[t] / level[t] + (1 - gamma) * previousSeason;
+            } else {
+                forecast = previousLevel + previousTrend + previousSeason;
+                level[t] = alpha * (y[t] - previousSeason) + (1 - alpha) * (previousLevel + previousTrend);
+                season[t] = gamma * (y[t] - level[t]) + (1 - gamma) * previousSeason;
+            }
+            trend[t] = beta * (level[t] - previousLevel) + (1 - beta) * previousTrend;
+            error[t] = y[t] - forecast;
+        }
+        double sum = 0;
+        for (int t = period; t < y.length; t++) {
+            sum += error[t] * error[t];
+        }
+        return Double.isNaN(sum) ? Double.POSITIVE_INFINITY : sum;
+    }
+    
+    @Override
+    public String name() {
+        return multiplicative ? "holt-winters-multiplicative" : "holt-winters-additive";
+    }
+    
+    @Override
+    public int firstPredicted() {
+        return period;
+    }
+    
+    @Override
+    public double meanSquaredError(int from) {
+        double sum = 0;
+        int count = 0;
+        for (int t = Math.max(from, period); t < y.length; t++) {
+            sum += error[t] * error[t];
+            count++;
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+    
+    @Override
+    public Forecast forecast(int horizon, double z) {
+        int last = y.length - 1;
+        double variance = 0;
+        for (int t = period; t <= last; t++) {
+            double relative = multiplicative ? error[t] / (y[t] - error[t]) : error[t];
+            variance += relative * relative;
+        }
+        variance /= y.length - period;
+        
+        double[] mean = new double[horizon];
+        double[] lower = new double[horizon];
+        double[] upper = new double[horizon];
+        // Sum of c_j^2 for j < h, where c_j is the weight of the error j steps back in the h-step forecast
+        double weights = 0;
+        for (int h = 1; h <= horizon; h++) {
+            if (h > 1) {
+                int j = h - 1;
+                double c = alpha * (1 + j * beta) + (j % period == 0 ? gamma * (1 - alpha) : 0);
+                weights += c * c;
+            }
+            double seasonal = season[last + h - period * ((h - 1) / period + 1)];
+            double trended = level[last] + h * trend[last];
+            mean[h - 1] = multiplicative ? trended * seasonal : trended + seasonal;
+            double width = z * Math.sqrt(variance * (1 + weights)) * (multiplicative ? Math.abs(mean[h - 1]) : 1);
+            lower[h - 1] = mean[h - 1] - width;
+            upper[h - 1] = mean[h - 1] + width;
+        }
+        return new Forecast(mean, lower, upper);
+    }
+}
@@ -0,0 +1,116 @@
+package com.erp.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog distinct-count sketch.
+ *
+ * Uses 2^precision one-byte registers (4 KB at the default precision of 12, about
+ * 1.6% standard error). Sketches with the same precision merge by taking the
+ * register-wise maximum, so per-month sketches can be combined for any range.
+ */
+public final class HyperLogLog {
+    
+    public static final int DEFAULT_PRECISION = 12;
+    
+    private final int precision;
+    private final byte[] registers;
+    
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+    
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+    
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+    
+    public void add(String value) {
+        if (value != null) {
+            addHash(hash64(value.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+    
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits; the guard bit caps it
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+    
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small range correction: linear counting is far more accurate here
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    /**
+     * Serialized form: one precision byte followed by the registers.
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+    
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < 4 || precision > 18 || bytes.length != (1 << precision) + 1) {
+            throw new IllegalArgumentException("Invalid HyperLogLog encoding");
+        }
+        byte[] registers = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, registers, 0, registers.length);
+        return new HyperLogLog(precision, registers);
+    }
+    
+    // 64-bit FNV-1a followed by a murmur3 finalizer so every output bit is well mixed
+    static long hash64(byte[] data) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a2ce5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
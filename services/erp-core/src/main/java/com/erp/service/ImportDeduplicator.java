@@ -0,0 +1,345 @@
+package com.erp.service;
+
+import com.erp.entity.ImportedFile;
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import com.erp.repository.ImportedFileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Keeps re-imports idempotent.
+ *
+ * Every imported row carries a {@link TransactionFingerprint}, unique in the transactions table, and rows
+ * are inserted with {@code ON CONFLICT DO NOTHING}. Before that, a Bloom filter over the fingerprints in
+ * the table sorts each chunk: rows it has never seen go straight to the insert, the rest are looked up in
+ * one query and the ones found are dropped without being written. Whole files are recorded by SHA-256 in
+ * imported_files, so uploading an identical file again is answered from that table.
+ */
+@Service
+public class ImportDeduplicator {
+    
+    private static final Logger log = LoggerFactory.getLogger(ImportDeduplicator.class);
+    
+    static final String STAGING_TABLE = "transactions_import";
+    static final String COLUMNS = "transaction_date, customer_name, transaction_type, revenue, cost, product,"
+            + " order_status, department, profit, forecasted_revenue, fingerprint";
+    
+    // Amounts are bound as minor units, Transaction.NO_AMOUNT standing for NULL
+    private static final String INSERT_SQL = "INSERT INTO transactions (" + COLUMNS + ")"
+            + " SELECT d, c, ty, " + amount("r") + ", " + amount("co") + ", p, s, dep, " + amount("pr") + ", "
+            + amount("f") + ", fp"
+            + " FROM unnest(CAST(? AS date[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS bigint[]),"
+            + " CAST(? AS bigint[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS bigint[]),"
+            + " CAST(? AS bigint[]), CAST(? AS bytea[])) AS u(d, c, ty, r, co, p, s, dep, pr, f, fp)"
+            + " ON CONFLICT DO NOTHING RETURNING fingerprint";
+    private static final String MERGE_SQL = "INSERT INTO transactions (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM " + STAGING_TABLE + " ON CONFLICT DO NOTHING RETURNING fingerprint";
+    // The date lets PostgreSQL probe only the partition holding each row
+    private static final String LOOKUP_SQL = "SELECT fingerprint FROM transactions"
+            + " WHERE (fingerprint, transaction_date) IN (SELECT * FROM unnest(CAST(? AS bytea[]), CAST(? AS date[])))";
+    // Rows written outside the importer; of several identical rows only the first gets a fingerprint
+    private static final String BACKFILL_SQL = "UPDATE transactions t SET fingerprint = f.fp"
+            + " FROM (SELECT id, transaction_date, fp, row_number() OVER (PARTITION BY fp ORDER BY id) AS n"
+            + " FROM (SELECT id, transaction_date, " + TransactionFingerprint.SQL + " AS fp"
+            + " FROM transactions WHERE fingerprint IS NULL) x) f"
+            + " WHERE t.id = f.id AND t.transaction_date = f.transaction_date AND f.n = 1"
+            + " AND NOT EXISTS (SELECT 1 FROM transactions e WHERE e.fingerprint = f.fp)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportedFileRepository fileRepository;
+    private final long expectedRows;
+    private final double falsePositiveRate;
+    private final Counter knownRows;
+    private final Counter falsePositives;
+    private volatile BloomFilter bloom;
+    
+    public ImportDeduplicator(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ImportedFileRepository fileRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${import.dedup.bloom.expected-rows:10000000}") long expectedRows,
+                              @Value("${import.dedup.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fileRepository = fileRepository;
+        this.expectedRows = expectedRows;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloom = new BloomFilter(expectedRows, falsePositiveRate);
+        this.knownRows = Counter.builder("erp.import.dedup.lookups")
+                .description("Import rows the Bloom filter flagged, by whether the table had them")
+                .tag("result", "duplicate")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("erp.import.dedup.lookups")
+                .description("Import rows the Bloom filter flagged, by whether the table had them")
+                .tag("result", "false_positive")
+                .register(meterRegistry);
+        Gauge.builder("erp.import.dedup.bloom.rows", this, d -> d.bloom.insertions())
+                .description("Fingerprints in the import Bloom filter")
+                .register(meterRegistry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            Integer filled = transactionTemplate.execute(status -> jdbcTemplate.update(BACKFILL_SQL));
+            if (filled != null && filled > 0) {
+                log.info("Fingerprinted {} transactions written outside the importer", filled);
+            }
+        } catch (DataAccessException e) {
+            // An import racing the backfill; those rows stay unfingerprinted until the next start
+            log.warn("Transaction fingerprint backfill failed: {}", e.getMessage());
+        }
+        reload();
+    }
+    
+    /**
+     * Rebuilds the Bloom filter from the fingerprints in the table, sized for at least twice their number.
+     */
+    public void reload() {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE fingerprint IS NOT NULL", Long.class);
+        BloomFilter filter = new BloomFilter(Math.max(expectedRows, 2 * (rows != null ? rows : 0)), falsePositiveRate);
+        // A cursor needs a transaction; the fetch size keeps memory flat however large the table
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT fingerprint FROM transactions WHERE fingerprint IS NOT NULL");
+            statement.setFetchSize(10_000);
+            return statement;
+        }, (RowCallbackHandler) rs -> filter.put(rs.getBytes(1))));
+        bloom = filter;
+        log.info("Import Bloom filter loaded with {} fingerprints", filter.insertions());
+    }
+    
+    /**
+     * Fingerprints the chunk and removes the rows that are already in the table or earlier in the chunk.
+     * Runs in the import transaction, so rows written by earlier chunks of the same import count.
+     *
+     * @return rows removed
+     */
+    int dropDuplicates(List<Transaction> chunk) {
+        BloomFilter filter = bloom;
+        Set<ByteBuffer> seen = new HashSet<>(chunk.size() * 2);
+        List<Transaction> flagged = new ArrayList<>();
+        int before = chunk.size();
+        retain(chunk, t -> {
+            byte[] fingerprint = TransactionFingerprint.of(t);
+            t.setFingerprint(fingerprint);
+            if (!seen.add(ByteBuffer.wrap(fingerprint))) {
+                return false;
+            }
+            if (filter.mightContain(fingerprint)) {
+                flagged.add(t);
+            }
+            return true;
+        });
+        if (!flagged.isEmpty()) {
+            Set<ByteBuffer> existing = lookup(flagged);
+            knownRows.increment(existing.size());
+            falsePositives.increment(flagged.size() - existing.size());
+            if (!existing.isEmpty()) {
+                retain(chunk, t -> !existing.contains(ByteBuffer.wrap(t.getFingerprint())));
+            }
+        }
+        return before - chunk.size();
+    }
+    
+    /**
+     * Inserts a fingerprinted chunk in one statement, skipping rows that conflict (another import
+     * committed them first). The chunk is left holding only the rows inserted.
+     *
+     * @return rows skipped
+     */
+    int insert(List<Transaction> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        Set<ByteBuffer> inserted = new HashSet<>(chunk.size() * 2);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
+            int size = chunk.size();
+            String[] dates = new String[size];
+            String[] customers = new String[size], types = new String[size], products = new String[size],
+                    statuses = new String[size], departments = new String[size];
+            long[] revenues = new long[size], costs = new long[size], profits = new long[size], forecasts = new long[size];
+            byte[][] fingerprints = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                Transaction t = chunk.get(i);
+                dates[i] = t.getTransactionDate() != null ? t.getTransactionDate().toString() : null;
+                customers[i] = t.getCustomerName();
+                types[i] = t.getTransactionType();
+                revenues[i] = t.getRevenueUnits();
+                costs[i] = t.getCostUnits();
+                products[i] = t.getProduct();
+                statuses[i] = t.getOrderStatus();
+                departments[i] = t.getDepartment();
+                profits[i] = t.getProfitUnits();
+                forecasts[i] = t.getForecastedRevenueUnits();
+                fingerprints[i] = t.getFingerprint();
+            }
+            statement.setArray(1, connection.createArrayOf("text", dates));
+            statement.setArray(2, connection.createArrayOf("text", customers));
+            statement.setArray(3, connection.createArrayOf("text", types));
+            PGConnection pg = connection.unwrap(PGConnection.class);
+            statement.setArray(4, pg.createArrayOf("int8", revenues));
+            statement.setArray(5, pg.createArrayOf("int8", costs));
+            statement.setArray(6, connection.createArrayOf("text", products));
+            statement.setArray(7, connection.createArrayOf("text", statuses));
+            statement.setArray(8, connection.createArrayOf("text", departments));
+            statement.setArray(9, pg.createArrayOf("int8", profits));
+            statement.setArray(10, pg.createArrayOf("int8", forecasts));
+            statement.setArray(11, connection.createArrayOf("bytea", fingerprints));
+            return statement;
+        }, (RowCallbackHandler) rs -> inserted.add(ByteBuffer.wrap(rs.getBytes(1))));
+        return keepInserted(chunk, inserted);
+    }
+    
+    /**
+     * Creates the session-local table a COPY import stages each chunk in; dropped at commit.
+     */
+    void createStagingTable() {
+        jdbcTemplate.execute("CREATE TEMP TABLE " + STAGING_TABLE + " ON COMMIT DROP AS SELECT " + COLUMNS
+                + " FROM transactions WITH NO DATA");
+    }
+    
+    /**
+     * Moves the rows staged for {@code chunk} into the transactions table, skipping conflicts, and empties
+     * the staging table. The chunk is left holding only the rows inserted.
+     *
+     * @return rows skipped
+     */
+    int mergeStaged(List<Transaction> chunk) {
+        Set<ByteBuffer> inserted = new HashSet<>(chunk.size() * 2);
+        jdbcTemplate.query(MERGE_SQL, (RowCallbackHandler) rs -> inserted.add(ByteBuffer.wrap(rs.getBytes(1))));
+        jdbcTemplate.execute("TRUNCATE " + STAGING_TABLE);
+        return keepInserted(chunk, inserted);
+    }
+    
+    /**
+     * Adds rows inserted without going through {@link #insert} or {@link #mergeStaged} (their fingerprints
+     * computed by {@link TransactionFingerprint#SQL}) to the Bloom filter.
+     */
+    void remember(List<Transaction> inserted) {
+        BloomFilter filter = bloom;
+        for (Transaction t : inserted) {
+            filter.put(t.getFingerprint());
+        }
+    }
+    
+    /**
+     * Hex SHA-256 of the file's bytes.
+     */
+    public String fileHash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    public Optional<ImportedFile> findImported(String hash) {
+        return fileRepository.findById(hash);
+    }
+    
+    /**
+     * Records a file as imported. Runs in the import transaction, so only committed imports are remembered.
+     */
+    void recordImport(String hash, String filename, long sizeBytes, long written, long duplicates, long rejected,
+                      LocalDate firstDate, LocalDate lastDate) {
+        fileRepository.record(hash, filename, sizeBytes, written, duplicates, rejected, firstDate, lastDate,
+                LocalDateTime.now());
+    }
+    
+    /**
+     * Forgets every fingerprint and file; for use when the transactions table is emptied.
+     */
+    void clear() {
+        fileRepository.deleteAllInBatch();
+        bloom = new BloomFilter(expectedRows, falsePositiveRate);
+    }
+    
+    /**
+     * Forgets files with rows in months before {@code monthStart} (retention), so they can be imported again.
+     * Their fingerprints stay in the Bloom filter, which only costs a lookup.
+     */
+    void purgeBefore(LocalDate monthStart) {
+        fileRepository.deleteBefore(monthStart);
+    }
+    
+    private Set<ByteBuffer> lookup(List<Transaction> rows) {
+        Set<ByteBuffer> found = new HashSet<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(LOOKUP_SQL);
+            byte[][] fingerprints = new byte[rows.size()][];
+            String[] dates = new String[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                fingerprints[i] = rows.get(i).getFingerprint();
+                dates[i] = rows.get(i).getTransactionDate().toString();
+            }
+            statement.setArray(1, connection.createArrayOf("bytea", fingerprints));
+            statement.setArray(2, connection.createArrayOf("text", dates));
+            return statement;
+        }, (RowCallbackHandler) rs -> found.add(ByteBuffer.wrap(rs.getBytes(1))));
+        return found;
+    }
+    
+    private int keepInserted(List<Transaction> chunk, Set<ByteBuffer> inserted) {
+        BloomFilter filter = bloom;
+        int before = chunk.size();
+        retain(chunk, t -> inserted.contains(ByteBuffer.wrap(t.getFingerprint())));
+        for (Transaction t : chunk) {
+            filter.put(t.getFingerprint());
+        }
+        return before - chunk.size();
+    }
+    
+    // In-place filter that tests each row exactly once, in order
+    private static void retain(List<Transaction> rows, Predicate<Transaction> keep) {
+        int kept = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Transaction row = rows.get(i);
+            if (keep.test(row)) {
+                rows.set(kept++, row);
+            }
+        }
+        rows.subList(kept, rows.size()).clear();
+    }
+    
+    private static String amount(String cents) {
+        return "NULLIF(" + cents + ", " + Transaction.NO_AMOUNT + ") * " + Money.toBigDecimal(1, Money.DEFAULT_SCALE);
+    }
+}
@@ -0,0 +1,386 @@
+package com.erp.service;
+
+import com.erp.entity.ImportJob;
+import com.erp.repository.ImportJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs CSV imports in the background.
+ *
+ * A submitted file is spooled to {@code import.jobs.spool-dir} and processed on a virtual thread;
+ * at most {@code import.jobs.concurrency} imports run at once and at most {@code import.jobs.max-pending}
+ * are accepted (queued or running) per node. Jobs are recorded in the import_jobs table. Because an
+ * import commits all-or-nothing and its job is marked completed in the same transaction, a job found
+ * unfinished after a restart is simply run again from its spool file. A node finds its jobs by
+ * {@code import.jobs.node-id}, which defaults to an id kept in the spool dir, so a node that keeps its spool
+ * dir (a recreated container with the same volume) resumes them.
+ */
+@Service
+public class ImportJobService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+    private static final List<String> UNFINISHED = List.of(ImportJob.QUEUED, ImportJob.ENRICHING, ImportJob.WRITING);
+    
+    private final ImportJobRepository jobRepository;
+    private final DataImportService dataImportService;
+    private final ObjectMapper objectMapper;
+    private final Path spoolDir;
+    private final int maxPending;
+    private final String node;
+    
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentMap<String, RunningJob> running = new ConcurrentHashMap<>();
+    // Jobs accepted and not yet finished on this node; reserved before a job is spooled
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shuttingDown;
+    
+    public ImportJobService(ImportJobRepository jobRepository,
+                            DataImportService dataImportService,
+                            ObjectMapper objectMapper,
+                            @Value("${import.jobs.spool-dir:${java.io.tmpdir}/erp-import-jobs}") Path spoolDir,
+                            @Value("${import.jobs.concurrency:2}") int concurrency,
+                            @Value("${import.jobs.max-pending:16}") int maxPending,
+                            @Value("${import.jobs.node-id:}") String nodeId) {
+        this.jobRepository = jobRepository;
+        this.dataImportService = dataImportService;
+        this.objectMapper = objectMapper;
+        this.spoolDir = spoolDir;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(concurrency, true);
+        this.node = nodeId.isBlank() ? spoolNodeId(spoolDir) : nodeId;
+    }
+    
+    /**
+     * Re-queues the jobs this node had accepted but not finished before it stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (ImportJob job : jobRepository.findByNodeAndPhaseIn(node, UNFINISHED)) {
+            if (!Files.exists(Path.of(job.getSpoolPath()))) {
+                job.setPhase(ImportJob.FAILED);
+                job.setError("Spool file missing after restart");
+                job.setFinishedAt(LocalDateTime.now());
+                jobRepository.save(job);
+                continue;
+            }
+            job.setPhase(ImportJob.QUEUED);
+            jobRepository.save(job);
+            log.info("Resuming import job {} ({})", job.getId(), job.getFilename());
+            // Accepted before the restart, so not held to max-pending
+            pending.incrementAndGet();
+            schedule(job);
+        }
+    }
+    
+    /**
+     * Spools the upload and queues it.
+     *
+     * @throws RejectedExecutionException if this node already has {@code max-pending} jobs
+     */
+    public JobStatus submit(MultipartFile file, String mode) throws IOException {
+        if (!reserve()) {
+            throw new RejectedExecutionException("Too many import jobs in progress, retry later");
+        }
+        String id = UUID.randomUUID().toString();
+        Path spool = spoolDir.resolve(id + ".csv");
+        ImportJob job = new ImportJob();
+        try {
+            Files.createDirectories(spoolDir);
+            file.transferTo(spool.toFile());
+            
+            job.setId(id);
+            job.setFilename(file.getOriginalFilename());
+            job.setMode(mode);
+            job.setPhase(ImportJob.QUEUED);
+            job.setNode(node);
+            job.setSpoolPath(spool.toString());
+            job = jobRepository.save(job);
+        } catch (IOException | RuntimeException e) {
+            pending.decrementAndGet();
+            deleteSpool(spool);
+            throw e;
+        }
+        schedule(job);
+        return toStatus(job, running.get(id));
+    }
+    
+    // Takes one of the max-pending slots, checked and taken in one step so concurrent uploads cannot overshoot
+    private boolean reserve() {
+        int current;
+        do {
+            current = pending.get();
+            if (current >= maxPending) {
+                return false;
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    public Optional<JobStatus> status(String id) {
+        return jobRepository.findById(id).map(job -> toStatus(job, running.get(id)));
+    }
+    
+    /**
+     * Cancels a queued or running job. A running import stops at its next chunk and rolls back.
+     *
+     * @throws IllegalStateException if the job already finished or runs on another node
+     */
+    public Optional<JobStatus> cancel(String id) {
+        Optional<ImportJob> found = jobRepository.findById(id);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        ImportJob job = found.get();
+        if (job.isFinished()) {
+            throw new IllegalStateException("Import job already " + job.getPhase());
+        }
+        RunningJob active = running.get(id);
+        if (active == null) {
+            throw new IllegalStateException("Import job is owned by node " + job.getNode());
+        }
+        active.cancelled = true;
+        return Optional.of(toStatus(job, active));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted imports roll back and stay unfinished, so the next start resumes them
+        shuttingDown = true;
+        executor.shutdownNow();
+    }
+    
+    // Runs a job holding a reserved slot; the slot is given back when the job ends or cannot be started
+    private void schedule(ImportJob job) {
+        RunningJob active = new RunningJob(job.getId());
+        running.put(job.getId(), active);
+        try {
+            executor.execute(() -> run(job, active));
+        } catch (RejectedExecutionException e) {
+            running.remove(job.getId()); // shutting down; resumed on the next start
+            pending.decrementAndGet();
+        }
+    }
+    
+    private void run(ImportJob queued, RunningJob active) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            running.remove(queued.getId());
+            pending.decrementAndGet();
+            return;
+        }
+        String id = queued.getId();
+        Path spool = Path.of(queued.getSpoolPath());
+        try {
+            if (active.cancelled) {
+                finish(id, ImportJob.CANCELLED, null);
+                deleteSpool(spool);
+                return;
+            }
+            update(id, job -> {
+                job.setStartedAt(LocalDateTime.now());
+                job.setAttempts(job.getAttempts() + 1);
+                job.setRowsParsed(0L);
+                job.setRowsWritten(0L);
+                job.setRowsRejected(0L);
+                job.setRowsDuplicate(0L);
+            });
+            active.startedNanos = System.nanoTime();
+            
+            if ("copy".equals(queued.getMode())) {
+                dataImportService.importCSVCopy(spool, queued.getFilename(), active);
+            } else if ("staging".equals(queued.getMode())) {
+                // Rejected rows are kept under the job id
+                dataImportService.importCSVStaged(spool, queued.getFilename(), id, active);
+            } else {
+                dataImportService.importCSV(spool, queued.getFilename(), active);
+            }
+            deleteSpool(spool);
+        } catch (CancellationException e) {
+            finish(id, ImportJob.CANCELLED, null);
+            deleteSpool(spool);
+        } catch (Exception e) {
+            if (shuttingDown) {
+                log.info("Import job {} interrupted by shutdown, will resume on restart", id);
+                return;
+            }
+            log.warn("Import job {} failed: {}", id, e.getMessage());
+            finish(id, ImportJob.FAILED, e.getMessage());
+            deleteSpool(spool);
+        } finally {
+            permits.release();
+            running.remove(id);
+            pending.decrementAndGet();
+        }
+    }
+    
+    private void finish(String id, String phase, String error) {
+        update(id, job -> {
+            job.setPhase(phase);
+            job.setError(error != null && error.length() > 2000 ? error.substring(0, 2000) : error);
+            job.setFinishedAt(LocalDateTime.now());
+        });
+    }
+    
+    // Always re-reads the row: the import itself marks it completed through a bulk update
+    private void update(String id, Consumer<ImportJob> change) {
+        jobRepository.findById(id).ifPresent(job -> {
+            change.accept(job);
+            jobRepository.save(job);
+        });
+    }
+    
+    private static void deleteSpool(Path spool) {
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}: {}", spool, e.getMessage());
+        }
+    }
+    
+    private JobStatus toStatus(ImportJob job, RunningJob active) {
+        long parsed = job.getRowsParsed();
+        long written = job.getRowsWritten();
+        long rejected = job.getRowsRejected();
+        long duplicates = job.getRowsDuplicate();
+        String phase = job.getPhase();
+        double seconds = 0;
+        if (active != null && !job.isFinished()) {
+            // Live counters: the row is only updated at phase changes and on completion
+            phase = active.phase;
+            parsed = active.parsed;
+            written = active.written;
+            rejected = active.rejected;
+            duplicates = active.duplicates;
+            if (active.startedNanos > 0) {
+                seconds = (System.nanoTime() - active.startedNanos) / 1e9;
+            }
+        } else if (job.getStartedAt() != null && job.getFinishedAt() != null) {
+            seconds = Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis() / 1000.0;
+        }
+        double rowsPerSecond = seconds > 0 ? written / seconds : 0;
+        return new JobStatus(job.getId(), job.getFilename(), job.getMode(), phase,
+                active != null && active.cancelled && !job.isFinished(),
+                parsed, written, rejected, duplicates, Math.round(rowsPerSecond), job.getAttempts(),
+                job.getCreatedAt(), job.getStartedAt(), job.getFinishedAt(), job.getError(),
+                readRejected(job.getRejectedRows()));
+    }
+    
+    private List<DataImportService.RejectedRow> readRejected(String json) {
+        if (json == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<DataImportService.RejectedRow>>() {});
+        } catch (JsonProcessingException e) {
+            return List.of();
+        }
+    }
+    
+    // The node id kept in the spool dir, created on first start
+    private static String spoolNodeId(Path spoolDir) {
+        Path file = spoolDir.resolve("node-id");
+        try {
+            Files.createDirectories(spoolDir);
+            try {
+                Files.writeString(file, UUID.randomUUID().toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                // Kept from an earlier start
+            }
+            String id = Files.readString(file, StandardCharsets.UTF_8).strip();
+            if (id.isEmpty()) {
+                throw new IllegalStateException("Empty import node id in " + file + ", delete it or set import.jobs.node-id");
+            }
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot keep the import node id in " + file + ", set import.jobs.node-id", e);
+        }
+    }
+    
+    /**
+     * Job state as reported by the jobs API.
+     */
+    public record JobStatus(String id, String filename, String mode, String phase, boolean cancelRequested,
+                            long rowsParsed, long rowsWritten, long rowsRejected, long rowsDuplicate,
+                            long rowsPerSecond, int attempts,
+                            LocalDateTime createdAt, LocalDateTime startedAt, LocalDateTime finishedAt,
+                            String error, List<DataImportService.RejectedRow> rejectedRows) {}
+    
+    /**
+     * In-memory progress of a job on this node; also the listener its import reports to.
+     */
+    private final class RunningJob implements ImportListener {
+        private final String id;
+        private volatile String phase = ImportJob.QUEUED;
+        private volatile long parsed;
+        private volatile long written;
+        private volatile long rejected;
+        private volatile long duplicates;
+        private volatile long startedNanos;
+        private volatile boolean cancelled;
+        
+        RunningJob(String id) {
+            this.id = id;
+        }
+        
+        @Override
+        public void phase(String phase) {
+            checkCancelled();
+            this.phase = phase;
+            update(id, job -> job.setPhase(phase));
+        }
+        
+        @Override
+        public void progress(long parsed, long written, long rejected, long duplicates) {
+            checkCancelled();
+            this.parsed = parsed;
+            this.written = written;
+            this.rejected = rejected;
+            this.duplicates = duplicates;
+        }
+        
+        @Override
+        public void beforeCommit(long written, long rejected, long duplicates, List<DataImportService.RejectedRow> rejectedRows) {
+            checkCancelled();
+            String json;
+            try {
+                json = rejectedRows.isEmpty() ? null : objectMapper.writeValueAsString(rejectedRows);
+            } catch (JsonProcessingException e) {
+                json = null;
+            }
+            jobRepository.markCompleted(id, Math.max(parsed, written + rejected + duplicates), written, rejected,
+                    duplicates, json, LocalDateTime.now());
+        }
+        
+        private void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException("Import job cancelled");
+            }
+        }
+    }
+}
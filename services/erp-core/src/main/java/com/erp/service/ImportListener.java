@@ -0,0 +1,28 @@
+package com.erp.service;
+
+import java.util.List;
+
+/**
+ * Receives progress from a running CSV import. Calls come from the importing thread; an exception
+ * thrown from any method aborts the import and rolls it back.
+ */
+public interface ImportListener {
+    
+    ImportListener NONE = new ImportListener() {};
+    
+    /**
+     * The import entered a phase: {@code enriching} (AI engine round trip) or {@code writing}.
+     */
+    default void phase(String phase) {}
+    
+    /**
+     * Running totals, reported after every chunk; duplicates are rows skipped as already imported.
+     */
+    default void progress(long parsed, long written, long rejected, long duplicates) {}
+    
+    /**
+     * Called inside the import transaction just before it commits, so work done here commits
+     * (or rolls back) together with the imported rows.
+     */
+    default void beforeCommit(long written, long rejected, long duplicates, List<DataImportService.RejectedRow> rejectedRows) {}
+}
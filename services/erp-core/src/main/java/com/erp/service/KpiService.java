@@ -0,0 +1,221 @@
+package com.erp.service;
+
+import com.erp.repository.SalesOrderRepository;
+import com.erp.repository.WarehouseRepository;
+import com.erp.repository.projection.TransactionTotals;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dashboard KPIs (revenue, profit, orders, inventory units) for the trailing {@code dashboard.kpi.period-days}
+ * ending today, each compared with the period before it.
+ *
+ * The figures are computed off the request path into an immutable {@link Snapshot} that readers get from
+ * memory: every {@code dashboard.kpi.refresh-interval}, and {@code dashboard.kpi.event-delay} after a
+ * {@link DataChangedEvent} on a table they depend on (changes arriving meanwhile share that refresh).
+ * Inventory has no history in the database, so its previous value comes from stock levels sampled by
+ * earlier refreshes and is unknown until this node has been up for a whole period. Each new snapshot is
+ * published as an application event.
+ */
+@Service
+public class KpiService {
+    
+    private static final Logger log = LoggerFactory.getLogger(KpiService.class);
+    
+    private static final Set<String> SOURCES = Set.of("transactions", "sales_orders", "warehouses");
+    // Inventory samples kept per period
+    private static final int SAMPLES_PER_PERIOD = 720;
+    
+    private final TransactionAnalyticsService analyticsService;
+    private final SalesOrderRepository salesOrderRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final TaskScheduler taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int periodDays;
+    private final Duration eventDelay;
+    private final Duration sampleInterval;
+    
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final Deque<StockSample> stockSamples = new ArrayDeque<>();
+    private final Counter failures;
+    private volatile Snapshot snapshot;
+    
+    public KpiService(TransactionAnalyticsService analyticsService,
+                      SalesOrderRepository salesOrderRepository,
+                      WarehouseRepository warehouseRepository,
+                      TaskScheduler taskScheduler,
+                      ApplicationEventPublisher eventPublisher,
+                      MeterRegistry meterRegistry,
+                      @Value("${dashboard.kpi.period-days:30}") int periodDays,
+                      @Value("${dashboard.kpi.event-delay:PT2S}") Duration eventDelay) {
+        this.analyticsService = analyticsService;
+        this.salesOrderRepository = salesOrderRepository;
+        this.warehouseRepository = warehouseRepository;
+        this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.periodDays = periodDays;
+        this.eventDelay = eventDelay;
+        this.sampleInterval = Duration.ofDays(periodDays).dividedBy(SAMPLES_PER_PERIOD);
+        
+        this.failures = Counter.builder("erp.dashboard.kpi.refresh.failures")
+                .description("KPI snapshot refreshes that failed; the previous snapshot stays in use")
+                .register(meterRegistry);
+        Gauge.builder("erp.dashboard.kpi.staleness", this, KpiService::stalenessSeconds)
+                .description("Time since the KPI snapshot being served was computed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * The latest snapshot; only the first call after startup may have to compute it.
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : refresh("on_demand");
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshOnStartup() {
+        refresh("startup");
+    }
+    
+    @Scheduled(fixedDelayString = "${dashboard.kpi.refresh-interval:PT1M}",
+            initialDelayString = "${dashboard.kpi.refresh-interval:PT1M}")
+    public void refreshOnSchedule() {
+        refresh("scheduled");
+    }
+    
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        if (SOURCES.contains(event.table()) && refreshPending.compareAndSet(false, true)) {
+            taskScheduler.schedule(() -> {
+                // Cleared first so that a change made while refreshing schedules another refresh
+                refreshPending.set(false);
+                refresh("event");
+            }, Instant.now().plus(eventDelay));
+        }
+    }
+    
+    /**
+     * Recomputes the snapshot. On failure the previous snapshot is kept and returned.
+     */
+    public synchronized Snapshot refresh(String trigger) {
+        long started = System.nanoTime();
+        try {
+            Instant now = Instant.now();
+            LocalDate end = LocalDate.now();
+            LocalDate start = end.minusDays(periodDays - 1L);
+            LocalDate previousEnd = start.minusDays(1);
+            LocalDate previousStart = previousEnd.minusDays(periodDays - 1L);
+            
+            TransactionTotals totals = analyticsService.sumTotals(start, end, null);
+            TransactionTotals previousTotals = analyticsService.sumTotals(previousStart, previousEnd, null);
+            long orders = salesOrderRepository.countOrdersBetween(start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+            long previousOrders = salesOrderRepository.countOrdersBetween(previousStart.atStartOfDay(), start.atStartOfDay());
+            Long stock = warehouseRepository.getTotalStock();
+            long inventory = stock != null ? stock : 0;
+            Long previousInventory = sampleStock(now, inventory);
+            
+            Snapshot refreshed = new Snapshot(
+                    Kpi.of(amount(totals.getRevenue()), amount(previousTotals.getRevenue())),
+                    Kpi.of(amount(totals.getProfit()), amount(previousTotals.getProfit())),
+                    Kpi.of(BigDecimal.valueOf(orders), BigDecimal.valueOf(previousOrders)),
+                    Kpi.of(BigDecimal.valueOf(inventory), previousInventory != null ? BigDecimal.valueOf(previousInventory) : null),
+                    start, end, previousStart, previousEnd, now,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            snapshot = refreshed;
+            eventPublisher.publishEvent(refreshed);
+            return refreshed;
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("KPI snapshot refresh ({}) failed: {}", trigger, e.getMessage());
+            return snapshot;
+        } finally {
+            Timer.builder("erp.dashboard.kpi.refresh")
+                    .description("Time to recompute the KPI snapshot")
+                    .tag("trigger", trigger)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Records the current stock level and returns the one sampled a period ago, or null if this node has
+     * not been up that long.
+     */
+    private Long sampleStock(Instant now, long units) {
+        StockSample last = stockSamples.peekLast();
+        if (last == null || !last.at().plus(sampleInterval).isAfter(now)) {
+            stockSamples.addLast(new StockSample(now, units));
+        }
+        Instant periodAgo = now.minus(Duration.ofDays(periodDays));
+        // Keep the newest sample at or before a period ago and everything after it
+        StockSample oldest = stockSamples.pollFirst();
+        while (!stockSamples.isEmpty() && !stockSamples.peekFirst().at().isAfter(periodAgo)) {
+            oldest = stockSamples.pollFirst();
+        }
+        stockSamples.addFirst(oldest);
+        return !oldest.at().isAfter(periodAgo) ? oldest.units() : null;
+    }
+    
+    private double stalenessSeconds() {
+        Snapshot current = snapshot;
+        return current != null ? Duration.between(current.refreshedAt(), Instant.now()).toMillis() / 1000.0 : Double.NaN;
+    }
+    
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    
+    private record StockSample(Instant at, long units) {}
+    
+    /**
+     * The KPIs of one refresh; periods are inclusive.
+     */
+    public record Snapshot(Kpi revenue, Kpi profit, Kpi orders, Kpi inventory,
+                           LocalDate periodStart, LocalDate periodEnd,
+                           LocalDate previousPeriodStart, LocalDate previousPeriodEnd,
+                           Instant refreshedAt, long refreshMillis) {}
+    
+    /**
+     * A KPI's value in the current period and the previous one, with the change between them in percent.
+     * The change is null when the previous value is unknown or zero.
+     */
+    public record Kpi(BigDecimal value, BigDecimal previous, Double change, String trend) {
+        
+        static Kpi of(BigDecimal value, BigDecimal previous) {
+            if (previous == null) {
+                return new Kpi(value, null, null, "flat");
+            }
+            int direction = value.compareTo(previous);
+            Double change = previous.signum() == 0 ? null
+                    : value.subtract(previous).multiply(BigDecimal.valueOf(100))
+                            .divide(previous.abs(), 1, RoundingMode.HALF_UP).doubleValue();
+            return new Kpi(value, previous, change, direction > 0 ? "up" : direction < 0 ? "down" : "flat");
+        }
+    }
+}
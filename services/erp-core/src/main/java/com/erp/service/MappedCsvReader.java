@@ -0,0 +1,503 @@
+package com.erp.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parses a CSV file on several threads straight from memory-mapped segments.
+ *
+ * The file is cut at record boundaries into segments, each mapped with {@link FileChannel#map} and
+ * tokenized on the shared parser executor ({@link CsvTokenizer}, RFC 4180) into a reused {@link CsvRow},
+ * so amounts and dates never become Strings. Quoted fields may span lines: a first pass counts quotes per
+ * segment in parallel, so each cut is moved to a line break after an even number of quotes, where the
+ * tokenizer ends records too. Mapped rows come back in chunks
+ * through a bounded queue: chunks of one segment stay in file order, but segments interleave, and a slow
+ * consumer holds the workers back instead of letting them buffer the file.
+ *
+ * Malformed records and rows the mapper rejects with {@link IllegalArgumentException} are counted and
+ * reported with the line they start on and, when known, the column; mappers see that line as {@link CsvRow#line()}.
+ * The first record is a header and is skipped, after an optional UTF-8 byte order mark; blank lines are ignored.
+ */
+final class MappedCsvReader<T> implements RowCounts, AutoCloseable {
+    
+    /**
+     * Builds a value from one line; may return null to emit nothing. Throws
+     * {@link IllegalArgumentException} to reject the line.
+     */
+    interface RowMapper<T> {
+        T map(CsvRow row);
+    }
+    
+    // Mappings are limited to 2 GB; smaller segments also spread large files over the workers
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int WINDOW_BYTES = 1 << 20;
+    
+    private final FileChannel channel;
+    private final char delimiter;
+    private final RowMapper<T> mapper;
+    private final int chunkSize;
+    private final int rejectedDetailsLimit;
+    private final List<Segment> segments;
+    private final long firstLine;
+    private final ExecutorService workers;
+    // This reader's segment tasks; the executor is shared, so closing cancels these rather than shutting it down
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private final BlockingQueue<List<T>> chunks;
+    private final List<T> end = new ArrayList<>(0); // identity marker, queued once all segments are done
+    private final AtomicInteger remaining;
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile Throwable failure;
+    private boolean finished;
+    
+    private MappedCsvReader(FileChannel channel, ExecutorService workers, Layout layout, int threads, char delimiter,
+                            int chunkSize, int rejectedDetailsLimit, RowMapper<T> mapper) {
+        this.channel = channel;
+        this.workers = workers;
+        this.segments = layout.segments();
+        this.firstLine = layout.firstLine();
+        this.delimiter = delimiter;
+        this.chunkSize = chunkSize;
+        this.rejectedDetailsLimit = rejectedDetailsLimit;
+        this.mapper = mapper;
+        this.chunks = new ArrayBlockingQueue<>(threads * 2 + 1);
+        this.remaining = new AtomicInteger(segments.size());
+    }
+    
+    /**
+     * Maps {@code file} and starts parsing it in {@code threads} segments on {@code workers}, the shared
+     * parser executor (see {@link com.erp.config.CsvParserConfig}).
+     */
+    static <T> MappedCsvReader<T> open(Path file, ExecutorService workers, int threads, char delimiter, int chunkSize,
+                                       int rejectedDetailsLimit, RowMapper<T> mapper) throws IOException {
+        new CsvTokenizer(delimiter); // validates the delimiter before any thread starts
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedCsvReader<T> reader;
+        try {
+            reader = new MappedCsvReader<>(channel, workers, split(channel, threads, workers), threads, delimiter,
+                    chunkSize, rejectedDetailsLimit, mapper);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        reader.start();
+        return reader;
+    }
+    
+    /**
+     * Fields of the header record, which {@link #open} skips; empty for an empty file.
+     *
+     * @throws IllegalArgumentException if the header is malformed or longer than 1 MB
+     */
+    static List<String> header(Path file, char delimiter) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(delimiter);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(3);
+            channel.read(head, 0);
+            long bom = CsvTokenizer.bomLength(head.array(), 0, head.position());
+            long end = recordAfter(channel, bom, false);
+            if (end - bom > WINDOW_BYTES) {
+                throw new IllegalArgumentException("CSV header is longer than " + WINDOW_BYTES + " bytes");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - bom));
+            while (bytes.hasRemaining() && channel.read(bytes, bom + bytes.position()) > 0) {
+                // FileChannel may return fewer bytes than asked for
+            }
+            List<String> fields = new ArrayList<>();
+            CsvRow row = new CsvRow();
+            if (bytes.position() == 0 || tokenizer.next(bytes.array(), 0, bytes.position(), true, row) < 0 || row.isBlank()) {
+                return fields;
+            }
+            if (row.errorReason() != null) {
+                throw new IllegalArgumentException("Malformed CSV header: " + row.errorReason());
+            }
+            for (int i = 0; i < row.size(); i++) {
+                fields.add(row.text(i).strip());
+            }
+            return fields;
+        }
+    }
+    
+    /**
+     * Next chunk of mapped rows, or null once the whole file has been parsed.
+     *
+     * @throws IOException if a worker failed; the failure is rethrown as is when unchecked
+     */
+    List<T> nextChunk() throws IOException {
+        if (finished) {
+            return null;
+        }
+        List<T> chunk;
+        try {
+            chunk = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing CSV");
+        }
+        if (chunk != end) {
+            return chunk;
+        }
+        finished = true;
+        Throwable error = failure;
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error instanceof UncheckedIOException io) {
+            throw io.getCause();
+        }
+        if (error instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (error != null) {
+            throw new IllegalStateException("CSV parsing failed", error);
+        }
+        return null;
+    }
+    
+    /**
+     * The mapped rows one by one; wraps {@link #nextChunk()} failures in {@link UncheckedIOException}.
+     */
+    Iterator<T> rows() {
+        return new Iterator<>() {
+            private Iterator<T> current = Collections.emptyIterator();
+            
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    List<T> chunk;
+                    try {
+                        chunk = nextChunk();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (chunk == null) {
+                        return false;
+                    }
+                    current = chunk.iterator();
+                }
+                return true;
+            }
+            
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+    
+    /** Non-blank records parsed so far, rejected ones included. */
+    @Override
+    public long parsedCount() {
+        return parsed.get();
+    }
+    
+    @Override
+    public long rejectedCount() {
+        return rejected.get();
+    }
+    
+    /**
+     * Rejected records in file order, at most {@code rejectedDetailsLimit}. Complete once
+     * {@link #nextChunk()} has returned null.
+     */
+    @Override
+    public List<DataImportService.RejectedRow> rejectedRows() {
+        List<DataImportService.RejectedRow> rows = new ArrayList<>();
+        long segmentLine = firstLine;
+        for (Segment segment : segments) {
+            for (DataImportService.RejectedRow row : segment.rejected) {
+                if (rows.size() == rejectedDetailsLimit) {
+                    return rows;
+                }
+                rows.add(new DataImportService.RejectedRow(segmentLine + row.line() - 1, row.column(), row.reason()));
+            }
+            segmentLine += segment.lines;
+        }
+        return rows;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        // Unblocks workers waiting on a full queue when the consumer stops early
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+        channel.close();
+    }
+    
+    private void start() {
+        if (segments.isEmpty()) {
+            chunks.add(end);
+            return;
+        }
+        for (Segment segment : segments) {
+            tasks.add(workers.submit(() -> parse(segment)));
+        }
+    }
+    
+    private void parse(Segment segment) {
+        try {
+            new Worker(segment).run();
+        } catch (InterruptedException e) {
+            return; // closed by the consumer
+        } catch (Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        try {
+            if (failure != null || remaining.decrementAndGet() == 0) {
+                chunks.put(end);
+            }
+        } catch (InterruptedException e) {
+            // closed by the consumer
+        }
+    }
+    
+    private record Layout(List<Segment> segments, long firstLine) {}
+    
+    // Segment boundaries fall just after a line break outside quotes, so every segment holds whole records
+    private static Layout split(FileChannel channel, int threads, ExecutorService workers) throws IOException {
+        long size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate(3);
+        channel.read(head, 0);
+        long bom = CsvTokenizer.bomLength(head.array(), 0, head.position());
+        long start = recordAfter(channel, bom, false); // skip the header
+        long firstLine = 1 + count(channel, bom, start, (byte) '\n');
+        List<Segment> segments = new ArrayList<>();
+        if (start >= size) {
+            return new Layout(segments, firstLine);
+        }
+        long data = size - start;
+        int count = (int) Math.max(threads, (data + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES);
+        long[] cuts = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            cuts[i] = start + data * i / count;
+        }
+        
+        // Whether a cut falls inside quotes follows from the parity of the quotes before it
+        List<Callable<Long>> counts = new ArrayList<>();
+        for (int i = 0; i < count - 1; i++) {
+            long from = cuts[i];
+            long to = cuts[i + 1];
+            counts.add(() -> count(channel, from, to, CsvTokenizer.QUOTE));
+        }
+        List<Future<Long>> quotes;
+        try {
+            quotes = workers.invokeAll(counts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while splitting CSV");
+        }
+        
+        long from = start;
+        long quotesBefore = 0;
+        for (int i = 1; i <= count && from < size; i++) {
+            long to = size;
+            if (i < count) {
+                quotesBefore += get(quotes.get(i - 1));
+                to = recordAfter(channel, cuts[i], (quotesBefore & 1) == 1);
+            }
+            if (to > from) {
+                segments.add(new Segment(from, to - from));
+                from = to;
+            }
+        }
+        
+        // Line numbers for the mapper: each segment starts after the line breaks of those before it
+        List<Callable<Long>> lines = new ArrayList<>();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            Segment segment = segments.get(i);
+            lines.add(() -> count(channel, segment.start, segment.start + segment.length, (byte) '\n'));
+        }
+        List<Future<Long>> lineCounts;
+        try {
+            lineCounts = workers.invokeAll(lines);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while splitting CSV");
+        }
+        long line = firstLine;
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).firstLine = line;
+            if (i < lineCounts.size()) {
+                line += get(lineCounts.get(i));
+            }
+        }
+        return new Layout(segments, firstLine);
+    }
+    
+    private static long get(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while splitting CSV");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Could not split CSV", e.getCause());
+        }
+    }
+    
+    // Position just past the first line break at or after position that is outside quotes, or the end of the file
+    private static long recordAfter(FileChannel channel, long position, boolean quoted) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == CsvTokenizer.QUOTE) {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    return position + i + 1;
+                }
+            }
+            position += Math.max(read, 0);
+        }
+        return size;
+    }
+    
+    private static long count(FileChannel channel, long from, long to, byte value) throws IOException {
+        if (to <= from) {
+            return 0;
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        byte[] window = new byte[(int) Math.min(WINDOW_BYTES, to - from)];
+        long found = 0;
+        for (int position = 0; position < mapped.limit(); position += window.length) {
+            int read = Math.min(window.length, mapped.limit() - position);
+            mapped.get(position, window, 0, read);
+            for (int i = 0; i < read; i++) {
+                if (window[i] == value) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+    
+    private static final class Segment {
+        final long start;
+        final long length;
+        final List<DataImportService.RejectedRow> rejected = new ArrayList<>(); // line numbers within the segment
+        long firstLine;
+        long lines;
+        
+        Segment(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+    
+    private final class Worker {
+        private final Segment segment;
+        private final CsvTokenizer tokenizer = new CsvTokenizer(delimiter);
+        private final CsvRow row = new CsvRow();
+        private List<T> chunk = new ArrayList<>(chunkSize);
+        private long lines;
+        private long rowsParsed;
+        private long rowsRejected;
+        
+        Worker(Segment segment) {
+            this.segment = segment;
+        }
+        
+        void run() throws IOException, InterruptedException {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, segment.start, segment.length);
+            int length = (int) segment.length;
+            // Records are tokenized in a heap window copied in bulk from the mapping; a record cut by the
+            // window edge moves to the front and the window is refilled behind it
+            byte[] window = new byte[Math.min(WINDOW_BYTES, Math.max(length, 1))];
+            int filled = 0;
+            int position = 0;
+            while (true) {
+                int read = Math.min(window.length - filled, length - position);
+                mapped.get(position, window, filled, read);
+                position += read;
+                filled += read;
+                boolean last = position == length;
+                int recordStart = 0;
+                while (recordStart < filled) {
+                    int next = tokenizer.next(window, recordStart, filled, last, row);
+                    if (next < 0) {
+                        break;
+                    }
+                    record();
+                    recordStart = next;
+                }
+                if (last) {
+                    break;
+                }
+                int carry = filled - recordStart;
+                if (carry == window.length) {
+                    window = Arrays.copyOf(window, window.length * 2);
+                } else {
+                    System.arraycopy(window, recordStart, window, 0, carry);
+                }
+                filled = carry;
+            }
+            segment.lines = lines;
+            emit();
+        }
+        
+        private void record() throws InterruptedException {
+            long line = lines + 1;
+            lines += 1 + row.newlines();
+            if (row.isBlank()) {
+                return;
+            }
+            rowsParsed++;
+            row.line(segment.firstLine + line - 1);
+            if (row.errorReason() != null) {
+                reject(line, row.errorColumn() + 1, row.errorReason());
+            } else {
+                try {
+                    T value = mapper.map(row);
+                    if (value != null) {
+                        chunk.add(value);
+                    }
+                } catch (IllegalArgumentException e) {
+                    reject(line, e instanceof CsvFieldException field ? field.getColumn() + 1 : null, e.getMessage());
+                }
+            }
+            if (chunk.size() == chunkSize) {
+                emit();
+            }
+        }
+        
+        private void reject(long line, Integer column, String reason) {
+            rowsRejected++;
+            if (segment.rejected.size() < rejectedDetailsLimit) {
+                segment.rejected.add(new DataImportService.RejectedRow(line, column, reason));
+            }
+        }
+        
+        private void emit() throws InterruptedException {
+            parsed.addAndGet(rowsParsed);
+            rejected.addAndGet(rowsRejected);
+            rowsParsed = 0;
+            rowsRejected = 0;
+            if (!chunk.isEmpty()) {
+                chunks.put(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+    }
+}
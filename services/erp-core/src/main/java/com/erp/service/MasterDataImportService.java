@@ -0,0 +1,421 @@
+package com.erp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loads master data (customers, products, suppliers, warehouses, employees) from CSV.
+ *
+ * Headers are matched to the entity's fields ({@link MasterDataSchema}), optionally through a mapping from
+ * header to field. Rows are validated as they are parsed; invalid ones are skipped and reported like in the
+ * transactions import. Valid rows are upserted on the entity's natural key in chunks of {@code import.chunk-size},
+ * each with one set-based UPDATE of the rows that exist and one INSERT of the rest, all in one transaction.
+ * An empty field leaves an existing row's value alone and gives a new row the column's default.
+ * The file is parsed on one thread so rows reach the table in file order: of several rows with the same key,
+ * the last one wins, and the repeats are counted apart from the inserted and updated rows.
+ */
+@Service
+public class MasterDataImportService {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UploadSpool uploadSpool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService csvParsers;
+    private final int chunkSize;
+    private final int rejectedDetailsLimit;
+    private final char delimiter;
+    
+    public MasterDataImportService(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   UploadSpool uploadSpool,
+                                   ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry,
+                                   @Qualifier("csvParserExecutor") ExecutorService csvParsers,
+                                   @Value("${import.chunk-size:5000}") int chunkSize,
+                                   @Value("${import.rejected-details-limit:100}") int rejectedDetailsLimit,
+                                   @Value("${import.delimiter:,}") char delimiter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.uploadSpool = uploadSpool;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.csvParsers = csvParsers;
+        this.chunkSize = chunkSize;
+        this.rejectedDetailsLimit = rejectedDetailsLimit;
+        this.delimiter = delimiter;
+    }
+    
+    /**
+     * Loads {@code file} into {@code entity}'s table.
+     *
+     * @param mapping CSV header to field name (or column name); a blank field skips the column. Headers not
+     *                in the mapping are matched to fields by name, and ignored when nothing matches.
+     * @throws IllegalArgumentException for an unknown entity, a bad mapping or a file lacking a required column
+     */
+    public LoadResult importCSV(String entity, MultipartFile file, Map<String, String> mapping) throws IOException {
+        MasterDataSchema schema = MasterDataSchema.forEntity(entity);
+        Path spool = uploadSpool.spool(file);
+        try {
+            return importCSV(schema, spool, mapping != null ? mapping : Map.of());
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+    
+    private LoadResult importCSV(MasterDataSchema schema, Path file, Map<String, String> mapping) throws IOException {
+        long started = System.nanoTime();
+        Layout layout = Layout.resolve(schema, MappedCsvReader.header(file, delimiter), mapping);
+        Statements statements = new Statements(schema, layout);
+        RowParser parser = new RowParser(schema, layout, loadUniqueValues(schema, layout));
+        int key = schema.key().index;
+        
+        Loaded loaded = transactionTemplate.execute(status -> {
+            try (MappedCsvReader<Object[]> reader = MappedCsvReader.open(file, csvParsers, 1, delimiter, chunkSize,
+                    rejectedDetailsLimit, parser::parse)) {
+                long inserted = 0;
+                long updated = 0;
+                long duplicatesInFile = 0;
+                Set<String> written = new HashSet<>();
+                List<Object[]> chunk;
+                while ((chunk = reader.nextChunk()) != null) {
+                    // An UPDATE must not see a key twice, so only the last row per key is written
+                    Map<String, Object[]> rows = new LinkedHashMap<>(chunk.size() * 2);
+                    for (Object[] values : chunk) {
+                        rows.put((String) values[key], values);
+                    }
+                    duplicatesInFile += chunk.size() - rows.size();
+                    // Keys an earlier chunk wrote are updated again, but that is still the file repeating itself
+                    Set<String> repeated = new HashSet<>();
+                    for (String k : rows.keySet()) {
+                        if (!written.add(k)) {
+                            repeated.add(k);
+                        }
+                    }
+                    duplicatesInFile += repeated.size();
+                    Set<String> existing = update(statements, rows.values());
+                    rows.keySet().removeAll(existing);
+                    Set<String> added = insert(statements, rows.values());
+                    rows.keySet().removeAll(added);
+                    // Inserted by someone else since the UPDATE; they exist now
+                    Set<String> raced = update(statements, rows.values());
+                    inserted += added.size();
+                    existing.removeAll(repeated);
+                    updated += existing.size() + raced.size();
+                }
+                return new Loaded(inserted, updated, duplicatesInFile, reader.rejectedCount(), reader.rejectedRows());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (loaded != null && loaded.inserted() + loaded.updated() + loaded.duplicatesInFile() > 0) {
+            eventPublisher.publishEvent(new DataChangedEvent(schema.table));
+        }
+        return result(schema, layout, started, loaded != null ? loaded : new Loaded(0, 0, 0, 0, List.of()));
+    }
+    
+    /**
+     * Outcome of one bulk load: rows inserted and updated, rows repeating a key that appeared earlier in the
+     * file, rejects, end-to-end throughput, and which CSV column went to which field.
+     */
+    public record LoadResult(String entity, long inserted, long updated, long duplicatesInFile, long durationMillis,
+                             double rowsPerSecond, long rejectedCount, List<DataImportService.RejectedRow> rejectedRows,
+                             Map<String, String> columns, List<String> ignoredColumns) {}
+    
+    private record Loaded(long inserted, long updated, long duplicatesInFile, long rejectedCount,
+                          List<DataImportService.RejectedRow> rejectedRows) {}
+    
+    private LoadResult result(MasterDataSchema schema, Layout layout, long startedNanos, Loaded loaded) {
+        long elapsedNanos = System.nanoTime() - startedNanos;
+        long written = loaded.inserted() + loaded.updated() + loaded.duplicatesInFile();
+        double rowsPerSecond = elapsedNanos > 0 ? written * 1e9 / elapsedNanos : 0;
+        Counter.builder("erp.import.master.rows")
+                .description("Master data rows loaded from CSV")
+                .tag("entity", schema.table)
+                .tag("result", "inserted")
+                .register(meterRegistry)
+                .increment(loaded.inserted());
+        Counter.builder("erp.import.master.rows")
+                .description("Master data rows loaded from CSV")
+                .tag("entity", schema.table)
+                .tag("result", "updated")
+                .register(meterRegistry)
+                .increment(loaded.updated());
+        Counter.builder("erp.import.master.rejected")
+                .description("Master data CSV rows rejected by validation")
+                .tag("entity", schema.table)
+                .register(meterRegistry)
+                .increment(loaded.rejectedCount());
+        Timer.builder("erp.import.master.duration")
+                .description("End-to-end master data load time")
+                .tag("entity", schema.table)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("erp.import.master.throughput")
+                .description("Rows per second of each master data load")
+                .baseUnit("rows/s")
+                .tag("entity", schema.table)
+                .register(meterRegistry)
+                .record(rowsPerSecond);
+        return new LoadResult(schema.table, loaded.inserted(), loaded.updated(), loaded.duplicatesInFile(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond, loaded.rejectedCount(), loaded.rejectedRows(),
+                layout.columns, layout.ignored);
+    }
+    
+    // Keys of the rows updated
+    private Set<String> update(Statements statements, Collection<Object[]> rows) {
+        return rows.isEmpty() ? Set.of() : keys(statements.update, statements, rows);
+    }
+    
+    // Keys of the rows inserted; rows whose key appeared meanwhile are left out
+    private Set<String> insert(Statements statements, Collection<Object[]> rows) {
+        return rows.isEmpty() ? Set.of() : keys(statements.insert, statements, rows);
+    }
+    
+    private Set<String> keys(String sql, Statements statements, Collection<Object[]> rows) {
+        Set<String> keys = new HashSet<>(rows.size() * 2);
+        jdbcTemplate.query(connection -> statements.bind(connection, sql, rows),
+                (RowCallbackHandler) rs -> keys.add(rs.getString(1)));
+        return keys;
+    }
+    
+    // Owners of the values already in the table, for the file's columns that must be unique besides the key
+    private Map<MasterDataSchema.Column, UniqueValues> loadUniqueValues(MasterDataSchema schema, Layout layout) {
+        Map<MasterDataSchema.Column, UniqueValues> unique = new HashMap<>();
+        for (MasterDataSchema.Column column : schema.columns) {
+            if (column.unique && layout.fieldOf[column.index] >= 0) {
+                UniqueValues values = new UniqueValues();
+                jdbcTemplate.query("SELECT " + schema.key().name + ", " + column.name + " FROM " + schema.table
+                        + " WHERE " + column.name + " IS NOT NULL",
+                        (RowCallbackHandler) rs -> values.claim(rs.getString(2), rs.getString(1)));
+                unique.put(column, values);
+            }
+        }
+        return unique;
+    }
+    
+    /**
+     * Where each field comes from in the file: {@code fieldOf[column]} is the CSV field, or -1. A column is
+     * supplied when the file has it or it is derived from one the file has; only supplied columns are written.
+     */
+    private static final class Layout {
+        final int[] fieldOf;
+        final boolean[] supplied;
+        final Map<String, String> columns = new LinkedHashMap<>();
+        final List<String> ignored = new ArrayList<>();
+        
+        private Layout(int size) {
+            fieldOf = new int[size];
+            supplied = new boolean[size];
+            Arrays.fill(fieldOf, -1);
+        }
+        
+        static Layout resolve(MasterDataSchema schema, List<String> header, Map<String, String> mapping) {
+            if (header.isEmpty()) {
+                throw new IllegalArgumentException("CSV file has no header");
+            }
+            for (String mapped : mapping.keySet()) {
+                if (!header.contains(mapped.strip())) {
+                    throw new IllegalArgumentException("mapping names column \"" + mapped + "\", which the file does not have");
+                }
+            }
+            Map<String, String> targets = new HashMap<>();
+            mapping.forEach((from, to) -> targets.put(from.strip(), to));
+            
+            Layout layout = new Layout(schema.columns.size());
+            for (int field = 0; field < header.size(); field++) {
+                String name = header.get(field);
+                boolean explicit = targets.containsKey(name);
+                String target = explicit ? targets.get(name) : name;
+                if (target == null || target.isBlank()) {
+                    layout.ignored.add(name);
+                    continue;
+                }
+                MasterDataSchema.Column column = schema.find(target);
+                if (column == null) {
+                    if (explicit) {
+                        throw new IllegalArgumentException("mapping: " + schema.table + " has no field \"" + target + "\"");
+                    }
+                    layout.ignored.add(name);
+                    continue;
+                }
+                if (layout.fieldOf[column.index] >= 0) {
+                    throw new IllegalArgumentException("Columns \"" + header.get(layout.fieldOf[column.index]) + "\" and \""
+                            + name + "\" both map to " + column.property);
+                }
+                layout.fieldOf[column.index] = field;
+                layout.columns.put(name, column.property);
+            }
+            
+            for (MasterDataSchema.Column column : schema.columns) {
+                if (column.required && layout.fieldOf[column.index] < 0) {
+                    throw new IllegalArgumentException("CSV has no column for required field " + column.property);
+                }
+                layout.supplied[column.index] = layout.fieldOf[column.index] >= 0
+                        || column.derive != null && layout.fieldOf[column.source.index] >= 0;
+            }
+            return layout;
+        }
+    }
+    
+    /**
+     * Maps CSV rows to values indexed like the schema's columns. Runs on the single parser thread.
+     */
+    private static final class RowParser {
+        private final MasterDataSchema schema;
+        private final Layout layout;
+        private final Map<MasterDataSchema.Column, UniqueValues> unique;
+        private final MasterDataSchema.Column key;
+        
+        RowParser(MasterDataSchema schema, Layout layout, Map<MasterDataSchema.Column, UniqueValues> unique) {
+            this.schema = schema;
+            this.layout = layout;
+            this.unique = unique;
+            this.key = schema.key();
+        }
+        
+        Object[] parse(CsvRow row) {
+            List<MasterDataSchema.Column> columns = schema.columns;
+            Object[] values = new Object[columns.size()];
+            for (MasterDataSchema.Column column : columns) {
+                int field = layout.fieldOf[column.index];
+                if (field >= 0) {
+                    values[column.index] = column.read(row, field);
+                }
+            }
+            for (MasterDataSchema.Column column : columns) {
+                if (column.derive != null && values[column.index] == null && values[column.source.index] != null) {
+                    values[column.index] = column.derive.apply(values[column.source.index]);
+                }
+            }
+            // Checked last, so a row rejected for another reason claims nothing
+            String keyValue = (String) values[key.index];
+            for (Map.Entry<MasterDataSchema.Column, UniqueValues> entry : unique.entrySet()) {
+                MasterDataSchema.Column column = entry.getKey();
+                String value = (String) values[column.index];
+                String owner = value != null ? entry.getValue().owner(value) : null;
+                if (owner != null && !owner.equals(keyValue)) {
+                    throw new CsvFieldException(layout.fieldOf[column.index], column.property + ": \"" + value
+                            + "\" already belongs to " + key.property + " " + owner);
+                }
+            }
+            for (Map.Entry<MasterDataSchema.Column, UniqueValues> entry : unique.entrySet()) {
+                String value = (String) values[entry.getKey().index];
+                if (value != null) {
+                    entry.getValue().claim(value, keyValue);
+                }
+            }
+            return values;
+        }
+    }
+    
+    /**
+     * Which key holds each value of a column that is unique in the table, so a row taking another row's value
+     * is rejected on its own instead of failing the whole load on the constraint.
+     */
+    private static final class UniqueValues {
+        private final Map<String, String> ownerByValue = new HashMap<>();
+        private final Map<String, String> valueByOwner = new HashMap<>();
+        
+        String owner(String value) {
+            return ownerByValue.get(value);
+        }
+        
+        void claim(String value, String owner) {
+            String previous = valueByOwner.put(owner, value);
+            if (previous != null && !previous.equals(value)) {
+                ownerByValue.remove(previous);
+            }
+            ownerByValue.put(value, owner);
+        }
+    }
+    
+    /**
+     * The two statements of a chunk, over one text array per supplied column. Both return the keys they wrote.
+     */
+    private static final class Statements {
+        final List<MasterDataSchema.Column> supplied;
+        final String update;
+        final String insert;
+        
+        Statements(MasterDataSchema schema, Layout layout) {
+            supplied = schema.columns.stream().filter(c -> layout.supplied[c.index]).collect(Collectors.toList());
+            String key = schema.key().name;
+            String source = supplied.stream().map(c -> "CAST(? AS " + c.type.sql + "[])")
+                    .collect(Collectors.joining(", ", "unnest(", ")"))
+                    + supplied.stream().map(c -> c.name).collect(Collectors.joining(", ", " AS v(", ")"));
+            
+            List<String> assignments = new ArrayList<>();
+            for (MasterDataSchema.Column column : supplied) {
+                if (!column.name.equals(key)) {
+                    assignments.add(column.name + " = COALESCE(v." + column.name + ", t." + column.name + ")");
+                }
+            }
+            if (schema.hasUpdatedAt) {
+                assignments.add("updated_at = now()");
+            }
+            update = "UPDATE " + schema.table + " t SET " + String.join(", ", assignments) + " FROM " + source
+                    + " WHERE t." + key + " = v." + key + " RETURNING t." + key;
+            
+            List<String> targets = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            for (MasterDataSchema.Column column : schema.columns) {
+                if (layout.supplied[column.index]) {
+                    targets.add(column.name);
+                    values.add(column.defaultSql != null
+                            ? "COALESCE(v." + column.name + ", " + column.defaultSql + ")" : "v." + column.name);
+                } else if (column.defaultSql != null) {
+                    targets.add(column.name);
+                    values.add(column.defaultSql);
+                }
+            }
+            if (schema.hasUpdatedAt) {
+                targets.add("updated_at");
+                values.add("now()");
+            }
+            insert = "INSERT INTO " + schema.table + " (" + String.join(", ", targets) + ") SELECT "
+                    + String.join(", ", values) + " FROM " + source
+                    + " ON CONFLICT (" + key + ") DO NOTHING RETURNING " + key;
+        }
+        
+        PreparedStatement bind(Connection connection, String sql, Collection<Object[]> rows) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (int i = 0; i < supplied.size(); i++) {
+                int index = supplied.get(i).index;
+                String[] column = new String[rows.size()];
+                int row = 0;
+                for (Object[] values : rows) {
+                    Object value = values[index];
+                    column[row++] = value instanceof BigDecimal amount ? amount.toPlainString()
+                            : value != null ? value.toString() : null;
+                }
+                statement.setArray(i + 1, connection.createArrayOf("text", column));
+            }
+            return statement;
+        }
+    }
+}
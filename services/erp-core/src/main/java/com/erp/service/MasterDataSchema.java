@@ -0,0 +1,348 @@
+package com.erp.service;
+
+import com.erp.entity.Customer;
+import com.erp.entity.Money;
+import com.erp.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A master-data table as seen by the bulk loader ({@link MasterDataImportService}): its columns, how CSV
+ * values are checked and converted for each, what a new row gets for columns the file leaves out, and the
+ * natural key rows are upserted on.
+ *
+ * CSV headers match a column by name ignoring case, spaces and underscores, so {@code warehouse_code},
+ * {@code warehouseCode} and {@code Warehouse Code} all name the same column.
+ */
+final class MasterDataSchema {
+    
+    enum Type {
+        TEXT("text"), EMAIL("text"), AMOUNT("numeric"), INTEGER("integer"), DATE("date"), TIMESTAMP("timestamp");
+        
+        final String sql;
+        
+        Type(String sql) {
+            this.sql = sql;
+        }
+    }
+    
+    static final class Column {
+        final int index;
+        final String name;
+        final String property;
+        final Type type;
+        final int maxLength;
+        boolean required;
+        boolean unique;
+        int precision = 38;
+        Set<String> allowed;
+        String defaultSql;
+        Column source;
+        Function<Object, Object> derive;
+        
+        Column(int index, String name, Type type, int maxLength) {
+            this.index = index;
+            this.name = name;
+            this.property = camelCase(name);
+            this.type = type;
+            this.maxLength = maxLength;
+        }
+        
+        /**
+         * Converts field {@code field} of {@code row}; null when empty.
+         *
+         * @throws CsvFieldException if the value is missing, malformed or out of range
+         */
+        Object read(CsvRow row, int field) {
+            if (field >= row.size() || row.isEmpty(field)) {
+                return missing(field);
+            }
+            switch (type) {
+                case AMOUNT -> {
+                    long units;
+                    try {
+                        units = row.units(field, Money.DEFAULT_SCALE);
+                    } catch (NumberFormatException e) {
+                        throw new CsvFieldException(field, property + ": " + e.getMessage());
+                    }
+                    BigDecimal amount = Money.toBigDecimal(units, Money.DEFAULT_SCALE);
+                    if (amount.signum() < 0) {
+                        throw new CsvFieldException(field, property + ": must not be negative");
+                    }
+                    if (amount.precision() - amount.scale() > precision - Money.DEFAULT_SCALE) {
+                        throw new CsvFieldException(field, property + ": too large");
+                    }
+                    return amount;
+                }
+                case INTEGER -> {
+                    String text = row.text(field).strip();
+                    int value;
+                    try {
+                        value = Integer.parseInt(text);
+                    } catch (NumberFormatException e) {
+                        throw new CsvFieldException(field, property + ": invalid integer \"" + text + "\"");
+                    }
+                    if (value < 0) {
+                        throw new CsvFieldException(field, property + ": must not be negative");
+                    }
+                    return value;
+                }
+                case DATE -> {
+                    try {
+                        return row.date(field);
+                    } catch (DateTimeException e) {
+                        throw new CsvFieldException(field, property + ": invalid date \"" + row.text(field) + "\"");
+                    }
+                }
+                case TIMESTAMP -> {
+                    String text = row.text(field).strip();
+                    try {
+                        return text.length() == 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text);
+                    } catch (DateTimeException e) {
+                        throw new CsvFieldException(field, property + ": invalid timestamp \"" + text + "\"");
+                    }
+                }
+                default -> {
+                    String text = row.text(field).strip();
+                    if (text.isEmpty()) {
+                        return missing(field);
+                    }
+                    if (text.codePointCount(0, text.length()) > maxLength) {
+                        throw new CsvFieldException(field, property + ": longer than " + maxLength + " characters");
+                    }
+                    if (type == Type.EMAIL && !isEmail(text)) {
+                        throw new CsvFieldException(field, property + ": invalid email \"" + text + "\"");
+                    }
+                    if (allowed != null) {
+                        text = text.toLowerCase(Locale.ROOT);
+                        if (!allowed.contains(text)) {
+                            throw new CsvFieldException(field, property + ": must be one of " + String.join(", ", allowed));
+                        }
+                    }
+                    return text;
+                }
+            }
+        }
+        
+        private Object missing(int field) {
+            if (required) {
+                throw new CsvFieldException(field, property + ": required");
+            }
+            return null;
+        }
+        
+        // Only catches obvious mistakes; the mail server is the real judge
+        private static boolean isEmail(String text) {
+            int at = text.indexOf('@');
+            return at > 0 && at == text.lastIndexOf('@') && text.indexOf('.', at) > at + 1
+                    && !text.endsWith(".") && text.chars().noneMatch(Character::isWhitespace);
+        }
+    }
+    
+    private static final Map<String, MasterDataSchema> ENTITIES = new LinkedHashMap<>();
+    
+    static {
+        register(new MasterDataSchema("customers", "email", false)
+                .column("name", Type.TEXT, 255).required()
+                .column("email", Type.EMAIL, 255).required()
+                .column("phone", Type.TEXT, 255)
+                .column("location", Type.TEXT, 255)
+                .column("total_spent", Type.AMOUNT).orDefault("0")
+                .column("order_count", Type.INTEGER).orDefault("0")
+                .column("level", Type.TEXT, 255).oneOf("diamond", "gold", "silver", "new")
+                        .derivedFrom("total_spent", spent -> Customer.levelFor((BigDecimal) spent)).orDefault("'new'")
+                .column("created_at", Type.TIMESTAMP).orDefault("now()")
+                .column("last_purchase_at", Type.TIMESTAMP));
+        register(new MasterDataSchema("products", "sku", true)
+                .column("name", Type.TEXT, 255).required()
+                .column("sku", Type.TEXT, 255).required()
+                .column("category", Type.TEXT, 255)
+                .column("price", Type.AMOUNT).required()
+                .column("stock", Type.INTEGER).required()
+                .column("reorder_level", Type.INTEGER)
+                .column("sold_count", Type.INTEGER).orDefault("0")
+                .column("status", Type.TEXT, 255).oneOf("active", "low", "out")
+                        .derivedFrom("stock", stock -> Product.statusFor((Integer) stock))
+                .column("created_at", Type.TIMESTAMP).orDefault("now()"));
+        register(new MasterDataSchema("suppliers", "email", true)
+                .column("name", Type.TEXT, 255).required()
+                .column("email", Type.EMAIL, 100).required()
+                .column("phone", Type.TEXT, 20)
+                .column("address", Type.TEXT, 255)
+                .column("city", Type.TEXT, 100)
+                .column("country", Type.TEXT, 100)
+                .column("tax_id", Type.TEXT, 50)
+                .column("contact_person", Type.TEXT, 100)
+                .column("total_purchased", Type.AMOUNT).precision(15).orDefault("0")
+                .column("purchase_order_count", Type.INTEGER).orDefault("0")
+                .column("rating", Type.TEXT, 50).oneOf("excellent", "good", "average", "poor").orDefault("'average'")
+                .column("status", Type.TEXT, 50).oneOf("active", "inactive", "blocked").orDefault("'active'")
+                .column("notes", Type.TEXT, Integer.MAX_VALUE)
+                .column("created_at", Type.TIMESTAMP).orDefault("now()"));
+        register(new MasterDataSchema("warehouses", "warehouse_code", true)
+                .column("warehouse_code", Type.TEXT, 50).required()
+                .column("name", Type.TEXT, 255).required()
+                .column("location", Type.TEXT, 255)
+                .column("city", Type.TEXT, 100)
+                .column("country", Type.TEXT, 100)
+                .column("manager", Type.TEXT, 100)
+                .column("phone", Type.TEXT, 20)
+                .column("email", Type.EMAIL, 100)
+                .column("capacity", Type.INTEGER)
+                .column("current_stock", Type.INTEGER).orDefault("0")
+                .column("type", Type.TEXT, 50).oneOf("main", "regional", "distribution", "retail").orDefault("'main'")
+                .column("status", Type.TEXT, 50).oneOf("active", "inactive", "maintenance").orDefault("'active'")
+                .column("notes", Type.TEXT, Integer.MAX_VALUE)
+                .column("created_at", Type.TIMESTAMP).orDefault("now()"));
+        register(new MasterDataSchema("employees", "employee_id", true)
+                .column("employee_id", Type.TEXT, 50).required()
+                .column("first_name", Type.TEXT, 100).required()
+                .column("last_name", Type.TEXT, 100).required()
+                .column("email", Type.EMAIL, 100).unique()
+                .column("phone", Type.TEXT, 20)
+                .column("date_of_birth", Type.DATE)
+                .column("gender", Type.TEXT, 10)
+                .column("address", Type.TEXT, 255)
+                .column("city", Type.TEXT, 100)
+                .column("department", Type.TEXT, 100)
+                .column("position", Type.TEXT, 100)
+                .column("hire_date", Type.DATE)
+                .column("salary", Type.AMOUNT).precision(15)
+                .column("employment_type", Type.TEXT, 50).oneOf("full-time", "part-time", "contract", "intern")
+                        .orDefault("'full-time'")
+                .column("status", Type.TEXT, 50).oneOf("active", "on-leave", "resigned", "terminated").orDefault("'active'")
+                .column("manager", Type.TEXT, 100)
+                .column("notes", Type.TEXT, Integer.MAX_VALUE)
+                .column("created_at", Type.TIMESTAMP).orDefault("now()"));
+    }
+    
+    final String table;
+    final boolean hasUpdatedAt;
+    final List<Column> columns = new ArrayList<>();
+    private final String keyName;
+    
+    private MasterDataSchema(String table, String keyName, boolean hasUpdatedAt) {
+        this.table = table;
+        this.keyName = keyName;
+        this.hasUpdatedAt = hasUpdatedAt;
+    }
+    
+    /**
+     * The schema for {@code entity}, by table name ({@code customers}) or singular ({@code customer}).
+     *
+     * @throws IllegalArgumentException for anything else
+     */
+    static MasterDataSchema forEntity(String entity) {
+        MasterDataSchema schema = ENTITIES.get(entity.toLowerCase(Locale.ROOT));
+        if (schema == null) {
+            schema = ENTITIES.get(entity.toLowerCase(Locale.ROOT) + "s");
+        }
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown entity " + entity + ", expected one of "
+                    + String.join(", ", ENTITIES.keySet()));
+        }
+        return schema;
+    }
+    
+    Column key() {
+        return column(keyName);
+    }
+    
+    /**
+     * The column a CSV header or mapping target names, or null.
+     */
+    Column find(String name) {
+        String wanted = normalize(name);
+        for (Column column : columns) {
+            if (normalize(column.name).equals(wanted)) {
+                return column;
+            }
+        }
+        return null;
+    }
+    
+    private static void register(MasterDataSchema schema) {
+        ENTITIES.put(schema.table, schema);
+    }
+    
+    private Column column(String name) {
+        return columns.stream().filter(c -> c.name.equals(name)).findFirst().orElseThrow();
+    }
+    
+    private Column last() {
+        return columns.get(columns.size() - 1);
+    }
+    
+    private MasterDataSchema column(String name, Type type) {
+        return column(name, type, 0);
+    }
+    
+    private MasterDataSchema column(String name, Type type, int maxLength) {
+        columns.add(new Column(columns.size(), name, type, maxLength));
+        return this;
+    }
+    
+    private MasterDataSchema required() {
+        last().required = true;
+        return this;
+    }
+    
+    // Unique in the table besides the natural key
+    private MasterDataSchema unique() {
+        last().unique = true;
+        return this;
+    }
+    
+    private MasterDataSchema precision(int precision) {
+        last().precision = precision;
+        return this;
+    }
+    
+    private MasterDataSchema oneOf(String... values) {
+        last().allowed = new LinkedHashSet<>(List.of(values));
+        return this;
+    }
+    
+    // Value of a new row when the file has no column for it
+    private MasterDataSchema orDefault(String sql) {
+        last().defaultSql = sql;
+        return this;
+    }
+    
+    // Computed from another column the way the entity does, unless the file supplies it
+    private MasterDataSchema derivedFrom(String source, Function<Object, Object> derive) {
+        last().source = column(source);
+        last().derive = derive;
+        return this;
+    }
+    
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+    
+    private static String camelCase(String name) {
+        StringBuilder camel = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                camel.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return camel.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.erp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fork/join group-by over an index range of row-level data.
+ *
+ * The range is split in halves until a slice is at most {@code analytics.parallel.threshold}
+ * rows; each slice fills its own {@link AnalyticsAccumulator} per group and the partial
+ * results are merged on join. Work runs on a dedicated pool sized by
+ * {@code analytics.parallel.parallelism} (0 = available processors) so analytics never
+ * compete with the common pool. Ranges below the threshold run on the calling thread.
+ */
+@Component
+public class ParallelAggregator {
+    
+    /**
+     * Accumulates rows [from, to) into the group accumulators of one slice.
+     */
+    @FunctionalInterface
+    public interface SliceAggregation {
+        void accumulate(int from, int to, AnalyticsAccumulator[] groups);
+    }
+    
+    private final ForkJoinPool pool;
+    private final int threshold;
+    
+    public ParallelAggregator(@Value("${analytics.parallel.parallelism:0}") int parallelism,
+                              @Value("${analytics.parallel.threshold:65536}") int threshold) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        this.pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("analytics-fj-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.threshold = Math.max(threshold, 1024);
+    }
+    
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+    
+    public AnalyticsAccumulator[] aggregate(int from, int to, int groups, SliceAggregation aggregation) {
+        if (to - from <= threshold || pool.getParallelism() == 1) {
+            AnalyticsAccumulator[] result = AnalyticsAccumulator.newGroups(groups);
+            aggregation.accumulate(from, to, result);
+            return result;
+        }
+        return pool.invoke(new SliceTask(from, to, groups, aggregation));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+    
+    private final class SliceTask extends RecursiveTask<AnalyticsAccumulator[]> {
+        private final int from;
+        private final int to;
+        private final int groups;
+        private final SliceAggregation aggregation;
+        
+        SliceTask(int from, int to, int groups, SliceAggregation aggregation) {
+            this.from = from;
+            this.to = to;
+            this.groups = groups;
+            this.aggregation = aggregation;
+        }
+        
+        @Override
+        protected AnalyticsAccumulator[] compute() {
+            if (to - from <= threshold) {
+                AnalyticsAccumulator[] result = AnalyticsAccumulator.newGroups(groups);
+                aggregation.accumulate(from, to, result);
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            SliceTask left = new SliceTask(from, mid, groups, aggregation);
+            left.fork();
+            AnalyticsAccumulator[] right = new SliceTask(mid, to, groups, aggregation).compute();
+            AnalyticsAccumulator[] merged = left.join();
+            for (int g = 0; g < groups; g++) {
+                merged[g].merge(right[g]);
+            }
+            return merged;
+        }
+    }
+}
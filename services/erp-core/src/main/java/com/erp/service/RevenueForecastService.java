@@ -0,0 +1,242 @@
+package com.erp.service;
+
+import com.erp.repository.projection.MonthlyMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Monthly revenue forecasts, overall or for one department, from Holt-Winters (additive and multiplicative
+ * seasonality) and ARIMA models fitted to the revenue of each complete month.
+ *
+ * Fitted models are cached per series. A {@link DataChangedEvent} on transactions only marks the cache
+ * stale: the next forecast of a series re-reads its monthly revenue (one rollup or column store query) and,
+ * if any month changed, refits from the first changed month on (see {@link HoltWinters#refit}). Series
+ * whose months did not change keep their models, and until the next change (or the next month) forecasts
+ * read no data.
+ */
+@Service
+public class RevenueForecastService {
+    
+    // Months per season
+    private static final int PERIOD = 12;
+    private static final Map<Integer, Double> Z_BY_CONFIDENCE = Map.of(80, 1.2816, 90, 1.6449, 95, 1.9600, 99, 2.5758);
+    private static final List<String> MODELS = List.of("auto", "holt-winters-additive", "holt-winters-multiplicative", "arima");
+    
+    private final TransactionAnalyticsService analyticsService;
+    private final MeterRegistry meterRegistry;
+    
+    // Bumped by every change to transactions; series fitted at an older version are re-read
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    
+    private final Counter hits;
+    private final Counter refreshes;
+    
+    public RevenueForecastService(TransactionAnalyticsService analyticsService, MeterRegistry meterRegistry) {
+        this.analyticsService = analyticsService;
+        this.meterRegistry = meterRegistry;
+        
+        this.hits = Counter.builder("erp.forecast.requests")
+                .description("Revenue forecasts served")
+                .tag("result", "cached")
+                .register(meterRegistry);
+        this.refreshes = Counter.builder("erp.forecast.requests")
+                .description("Revenue forecasts served")
+                .tag("result", "reread")
+                .register(meterRegistry);
+        Gauge.builder("erp.forecast.series", series, Map::size)
+                .description("Revenue series with fitted forecast models")
+                .register(meterRegistry);
+    }
+    
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        if ("transactions".equals(event.table())) {
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Forecasts the {@code horizon} months after the last complete month with revenue.
+     *
+     * @param department null for all departments
+     * @param model      auto (the fitted model with the least one-step-ahead error), holt-winters-additive,
+     *                   holt-winters-multiplicative or arima
+     * @param confidence of the prediction intervals, in percent: 80, 90, 95 or 99
+     * @throws IllegalArgumentException for an unknown model or confidence, or too few months for the model asked for
+     */
+    public RevenueForecast forecast(String department, String model, int horizon, int confidence) {
+        if (!MODELS.contains(model)) {
+            throw new IllegalArgumentException("Unknown model: " + model + ", expected one of " + MODELS);
+        }
+        Double z = Z_BY_CONFIDENCE.get(confidence);
+        if (z == null) {
+            throw new IllegalArgumentException("confidence must be one of " + new TreeSet<>(Z_BY_CONFIDENCE.keySet()));
+        }
+        String key = department != null ? department : "";
+        Series cached = series.get(key);
+        Fitted fitted;
+        if (cached != null && cached.version == version.get() && YearMonth.now().equals(cached.month)) {
+            hits.increment();
+            fitted = cached.fitted;
+        } else {
+            refreshes.increment();
+            fitted = refresh(key, department);
+        }
+        
+        ForecastModel chosen = fitted.choose(model);
+        if (chosen == null && !model.equals("auto")) {
+            int needed = model.equals("arima") ? 4 : 2 * PERIOD;
+            throw new IllegalArgumentException(fitted.values.length < needed
+                    ? model + " needs " + needed + " complete months of revenue, there are " + fitted.values.length
+                    : model + " needs revenue above zero in every month");
+        }
+        return new RevenueForecast(department, chosen != null ? chosen.name() : null, confidence,
+                fitted.start, fitted.values, chosen != null ? chosen.forecast(horizon, z) : null);
+    }
+    
+    private Fitted refresh(String key, String department) {
+        // Serializes refits of one series; requests for others proceed
+        Series entry = series.computeIfAbsent(key, k -> new Series());
+        synchronized (entry) {
+            // Read first, so that a change landing while the series is read makes the next request re-read it
+            long current = version.get();
+            YearMonth month = YearMonth.now();
+            if (entry.version == current && month.equals(entry.month)) {
+                return entry.fitted;
+            }
+            Fitted previous = entry.fitted;
+            Fitted next = revise(previous, load(department));
+            if (next.values.length == 0) {
+                // Nothing to forecast; not kept, so unknown departments do not pile up
+                series.remove(key);
+                return next;
+            }
+            entry.fitted = next;
+            entry.month = month;
+            entry.version = current;
+            return next;
+        }
+    }
+    
+    // Revenue of each month from the first with transactions to the last complete one, gaps as zero
+    private Fitted load(String department) {
+        List<MonthlyMetrics> months = analyticsService.sumByMonth(null, null, department);
+        if (months.isEmpty()) {
+            return Fitted.EMPTY;
+        }
+        YearMonth first = YearMonth.of(months.get(0).getYear(), months.get(0).getMonth());
+        MonthlyMetrics lastMetrics = months.get(months.size() - 1);
+        YearMonth last = YearMonth.of(lastMetrics.getYear(), lastMetrics.getMonth());
+        // The current month is still filling up; forecasting from it would read as a drop
+        YearMonth lastComplete = YearMonth.now().minusMonths(1);
+        if (last.isAfter(lastComplete)) {
+            last = lastComplete;
+        }
+        int length = (int) Math.max(0, first.until(last, ChronoUnit.MONTHS) + 1);
+        double[] values = new double[length];
+        for (MonthlyMetrics month : months) {
+            long index = first.until(YearMonth.of(month.getYear(), month.getMonth()), ChronoUnit.MONTHS);
+            if (index < length && month.getRevenue() != null) {
+                values[(int) index] = month.getRevenue().doubleValue();
+            }
+        }
+        return new Fitted(first, values, null, null, null);
+    }
+    
+    // The models of previous brought up to date with its revision, refitted from the first changed month on
+    private Fitted revise(Fitted previous, Fitted revised) {
+        int firstChanged = previous.firstChanged(revised);
+        if (firstChanged < 0) {
+            return previous;
+        }
+        double[] y = revised.values;
+        HoltWinters additive = timed("holt-winters-additive", () -> previous.additive != null
+                ? previous.additive.refit(y, firstChanged) : HoltWinters.fit(y, PERIOD, false));
+        HoltWinters multiplicative = timed("holt-winters-multiplicative", () -> previous.multiplicative != null
+                ? previous.multiplicative.refit(y, firstChanged) : HoltWinters.fit(y, PERIOD, true));
+        Arima arima = timed("arima", () -> Arima.fit(y));
+        return new Fitted(revised.start, y, additive, multiplicative, arima);
+    }
+    
+    private <T extends ForecastModel> T timed(String model, Supplier<T> fit) {
+        long started = System.nanoTime();
+        try {
+            return fit.get();
+        } finally {
+            Timer.builder("erp.forecast.fit")
+                    .description("Time to fit or refit a revenue forecast model")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private static final class Series {
+        private volatile Fitted fitted = Fitted.EMPTY;
+        // The month it was read in; a new one completes the last month of the series
+        private volatile YearMonth month;
+        private volatile long version = -1;
+    }
+    
+    /**
+     * A series and the models fitted to it; a model is null when the series is too short (or, for
+     * multiplicative seasonality, not positive) for it.
+     */
+    private record Fitted(YearMonth start, double[] values, HoltWinters additive, HoltWinters multiplicative, Arima arima) {
+        
+        static final Fitted EMPTY = new Fitted(null, new double[0], null, null, null);
+        
+        // Index of the first month that differs from revised, -1 if none
+        int firstChanged(Fitted revised) {
+            if (!Objects.equals(start, revised.start)) {
+                return 0;
+            }
+            int common = Math.min(values.length, revised.values.length);
+            for (int i = 0; i < common; i++) {
+                if (Double.compare(values[i], revised.values[i]) != 0) {
+                    return i;
+                }
+            }
+            return values.length == revised.values.length ? -1 : common;
+        }
+        
+        ForecastModel choose(String model) {
+            return switch (model) {
+                case "holt-winters-additive" -> additive;
+                case "holt-winters-multiplicative" -> multiplicative;
+                case "arima" -> arima;
+                default -> {
+                    // Compare on the months every fitted model predicts
+                    List<ForecastModel> fitted = new ArrayList<>();
+                    for (ForecastModel candidate : new ForecastModel[] {additive, multiplicative, arima}) {
+                        if (candidate != null) {
+                            fitted.add(candidate);
+                        }
+                    }
+                    int from = fitted.stream().mapToInt(ForecastModel::firstPredicted).max().orElse(0);
+                    yield fitted.stream().min(Comparator.comparingDouble(candidate -> candidate.meanSquaredError(from))).orElse(null);
+                }
+            };
+        }
+    }
+    
+    /**
+     * Monthly revenue from {@code start} and the forecast of the months after it; {@code model} and
+     * {@code forecast} are null when no model fits so few months.
+     */
+    public record RevenueForecast(String department, String model, int confidence, YearMonth start, double[] actual,
+                                  ForecastModel.Forecast forecast) {}
+}
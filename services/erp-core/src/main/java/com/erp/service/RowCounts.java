@@ -0,0 +1,17 @@
+package com.erp.service;
+
+import java.util.List;
+
+/**
+ * Running tallies of a row source feeding an import.
+ */
+interface RowCounts {
+    
+    /** Rows read so far, rejected ones included. */
+    long parsedCount();
+    
+    long rejectedCount();
+    
+    /** Rejected rows in file order, capped at the source's detail limit; complete once the source is exhausted. */
+    List<DataImportService.RejectedRow> rejectedRows();
+}
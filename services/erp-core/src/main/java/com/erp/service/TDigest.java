@@ -0,0 +1,232 @@
+package com.erp.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest for streaming quantile estimates.
+ *
+ * Values are buffered and periodically folded into at most ~compression centroids,
+ * kept small near the tails (k1 scale function) so p95/p99 stay accurate. Digests
+ * merge by re-clustering their centroids, which is what makes per-month digests
+ * combinable over arbitrary month ranges.
+ */
+public final class TDigest {
+    
+    public static final double DEFAULT_COMPRESSION = 100;
+    
+    private final double compression;
+    
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private double totalWeight;
+    
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+    
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression must be at least 10");
+        }
+        this.compression = compression;
+        int bufferSize = (int) (5 * compression);
+        this.bufferMeans = new double[bufferSize];
+        this.bufferWeights = new double[bufferSize];
+    }
+    
+    public void add(double value) {
+        add(value, 1);
+    }
+    
+    private void add(double mean, double weight) {
+        if (Double.isNaN(mean)) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+    
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.means.length; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        // Centroids carry their own spread; keep the other digest's true extremes
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    
+    public long count() {
+        compress();
+        return Math.round(totalWeight);
+    }
+    
+    /**
+     * Estimated value at quantile q (0..1), or NaN for an empty digest.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be between 0 and 1");
+        }
+        compress();
+        int n = means.length;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (n == 1) {
+            return means[0];
+        }
+        
+        double index = q * totalWeight;
+        double firstHalf = weights[0] / 2;
+        if (index < firstHalf) {
+            // Between the minimum and the first centroid's centre
+            return min + (means[0] - min) * (index / firstHalf);
+        }
+        
+        double cumulative = firstHalf;
+        for (int i = 0; i < n - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step > index) {
+                double fraction = (index - cumulative) / step;
+                return means[i] + (means[i + 1] - means[i]) * fraction;
+            }
+            cumulative += step;
+        }
+        
+        double lastHalf = weights[n - 1] / 2;
+        double fraction = Math.min(1, (index - cumulative) / lastHalf);
+        return means[n - 1] + (max - means[n - 1]) * fraction;
+    }
+    
+    /**
+     * Serialized form: compression, min, max, centroid count, then (mean, weight) pairs.
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(28 + 16 * means.length);
+        buffer.putDouble(compression).putDouble(min).putDouble(max).putInt(means.length);
+        for (int i = 0; i < means.length; i++) {
+            buffer.putDouble(means[i]).putDouble(weights[i]);
+        }
+        return buffer.array();
+    }
+    
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(buffer.getDouble());
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int n = buffer.getInt();
+        if (n < 0 || buffer.remaining() != 16 * n) {
+            throw new IllegalArgumentException("Invalid t-digest encoding");
+        }
+        digest.means = new double[n];
+        digest.weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            digest.means[i] = buffer.getDouble();
+            digest.weights[i] = buffer.getDouble();
+            digest.totalWeight += digest.weights[i];
+        }
+        digest.min = min;
+        digest.max = max;
+        return digest;
+    }
+    
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = means.length + buffered;
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, means.length, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, means.length, buffered);
+        buffered = 0;
+        sortByMean(allMeans, allWeights, 0, n - 1);
+        
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += allWeights[i];
+        }
+        
+        // Sweep in mean order, merging neighbours while the cluster stays within one k unit
+        double[] newMeans = new double[n];
+        double[] newWeights = new double[n];
+        int out = 0;
+        newMeans[0] = allMeans[0];
+        newWeights[0] = allWeights[0];
+        double weightSoFar = 0;
+        double limit = total * qLimit(0);
+        for (int i = 1; i < n; i++) {
+            double proposed = weightSoFar + newWeights[out] + allWeights[i];
+            if (proposed <= limit) {
+                newWeights[out] += allWeights[i];
+                newMeans[out] += (allMeans[i] - newMeans[out]) * allWeights[i] / newWeights[out];
+            } else {
+                weightSoFar += newWeights[out];
+                limit = total * qLimit(weightSoFar / total);
+                out++;
+                newMeans[out] = allMeans[i];
+                newWeights[out] = allWeights[i];
+            }
+        }
+        
+        means = Arrays.copyOf(newMeans, out + 1);
+        weights = Arrays.copyOf(newWeights, out + 1);
+        totalWeight = total;
+    }
+    
+    // Largest quantile a cluster starting at q may reach: k1(q) = c/(2pi) * asin(2q - 1)
+    private double qLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, q) - 1) + 1;
+        if (k >= compression / 4) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+    
+    private static void sortByMean(double[] means, double[] weights, int lo, int hi) {
+        while (lo < hi) {
+            double pivot = means[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (means[i] < pivot) i++;
+                while (means[j] > pivot) j--;
+                if (i <= j) {
+                    double m = means[i];
+                    means[i] = means[j];
+                    means[j] = m;
+                    double w = weights[i];
+                    weights[i] = weights[j];
+                    weights[j] = w;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half to bound stack depth
+            if (j - lo < hi - i) {
+                sortByMean(means, weights, lo, j);
+                lo = i;
+            } else {
+                sortByMean(means, weights, i, hi);
+                hi = j;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.erp.service;
+
+/**
+ * Single-pass top-K selection over primitive scores.
+ *
+ * Keeps a bounded min-heap of (id, score) pairs, so memory is O(k) no matter
+ * how many candidates are offered. Ids are caller-defined (a dictionary code,
+ * a list index...), which keeps the hot loop free of boxing.
+ */
+public final class TopK {
+    
+    /** Upper bound for any client supplied "limit" on top-N endpoints. */
+    public static final int MAX_LIMIT = 1000;
+    
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+    
+    public TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be >= 0");
+        }
+        this.ids = new int[k];
+        this.scores = new double[k];
+    }
+    
+    /**
+     * Validates a client supplied limit and caps it at {@link #MAX_LIMIT}.
+     */
+    public static int checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+    
+    public void offer(int id, double score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && score > scores[0]) {
+            // Beats the smallest kept score: replace the heap root
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Ids of the kept entries, highest score first. Does not modify the heap.
+     */
+    public int[] idsDescending() {
+        int[] heapIds = ids.clone();
+        double[] heapScores = scores.clone();
+        int[] result = new int[size];
+        // Pop the minimum repeatedly and fill the result from the back
+        for (int n = size; n > 0; n--) {
+            result[n - 1] = heapIds[0];
+            heapIds[0] = heapIds[n - 1];
+            heapScores[0] = heapScores[n - 1];
+            siftDown(heapIds, heapScores, 0, n - 1);
+        }
+        return result;
+    }
+    
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) {
+                break;
+            }
+            swap(ids, scores, i, parent);
+            i = parent;
+        }
+    }
+    
+    private void siftDown(int i, int n) {
+        siftDown(ids, scores, i, n);
+    }
+    
+    private static void siftDown(int[] ids, double[] scores, int i, int n) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= n) {
+                return;
+            }
+            int smallest = left + 1 < n && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[i] <= scores[smallest]) {
+                return;
+            }
+            swap(ids, scores, i, smallest);
+            i = smallest;
+        }
+    }
+    
+    private static void swap(int[] ids, double[] scores, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,97 @@
+package com.erp.service;
+
+import com.erp.repository.TransactionRepository;
+import com.erp.repository.TransactionRollupRepository;
+import com.erp.repository.projection.DepartmentMetrics;
+import com.erp.repository.projection.MonthlyMetrics;
+import com.erp.repository.projection.ProductRevenue;
+import com.erp.repository.projection.TransactionTotals;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+/**
+ * Picks the cheapest source able to answer a transaction analytics query:
+ * the in-memory column store when enabled and loaded, the monthly rollup when
+ * the date range is month aligned, and the raw transactions table otherwise.
+ * Date bounds are inclusive and apply only when non-null.
+ */
+@Service
+public class TransactionAnalyticsService {
+    
+    private final TransactionRepository transactionRepository;
+    private final TransactionRollupRepository rollupRepository;
+    private final TransactionRollupService rollupService;
+    private final TransactionColumnStore columnStore;
+    
+    public TransactionAnalyticsService(TransactionRepository transactionRepository,
+                                       TransactionRollupRepository rollupRepository,
+                                       TransactionRollupService rollupService,
+                                       ObjectProvider<TransactionColumnStore> columnStore) {
+        this.transactionRepository = transactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.rollupService = rollupService;
+        this.columnStore = columnStore.getIfAvailable();
+    }
+    
+    public List<ProductRevenue> sumRevenueByProduct(LocalDate startDate, LocalDate endDate, String department, int limit) {
+        if (useColumnStore()) {
+            return columnStore.sumRevenueByProduct(startDate, endDate, department, limit);
+        }
+        Pageable page = limit == Integer.MAX_VALUE ? Pageable.unpaged() : PageRequest.of(0, limit);
+        if (useRollup(startDate, endDate)) {
+            return rollupRepository.sumRevenueByProduct(startDate, endDate, department, page);
+        }
+        return transactionRepository.sumRevenueByProduct(TransactionRepository.lowerBound(startDate),
+                TransactionRepository.upperBound(endDate), department, page);
+    }
+    
+    public List<DepartmentMetrics> sumByDepartment(LocalDate startDate, LocalDate endDate, String department) {
+        if (useColumnStore()) {
+            return columnStore.sumByDepartment(startDate, endDate, department);
+        }
+        if (useRollup(startDate, endDate)) {
+            return rollupRepository.sumByDepartment(startDate, endDate, department);
+        }
+        return transactionRepository.sumByDepartment(TransactionRepository.lowerBound(startDate),
+                TransactionRepository.upperBound(endDate), department);
+    }
+    
+    public List<MonthlyMetrics> sumByMonth(LocalDate startDate, LocalDate endDate, String department) {
+        if (useColumnStore()) {
+            return columnStore.sumByMonth(startDate, endDate, department);
+        }
+        if (useRollup(startDate, endDate)) {
+            return rollupRepository.sumByMonth(startDate, endDate, department);
+        }
+        return transactionRepository.sumByMonth(TransactionRepository.lowerBound(startDate),
+                TransactionRepository.upperBound(endDate), department);
+    }
+    
+    public TransactionTotals sumTotals(LocalDate startDate, LocalDate endDate, String department) {
+        if (useColumnStore()) {
+            return columnStore.sumTotals(startDate, endDate, department);
+        }
+        if (useRollup(startDate, endDate)) {
+            return rollupRepository.sumTotals(startDate, endDate, department);
+        }
+        return transactionRepository.sumTotals(TransactionRepository.lowerBound(startDate),
+                TransactionRepository.upperBound(endDate), department);
+    }
+    
+    private boolean useColumnStore() {
+        return columnStore != null && columnStore.isLoaded();
+    }
+    
+    // Rollup buckets are whole months: the range must start on a first and end on a last day
+    private boolean useRollup(LocalDate startDate, LocalDate endDate) {
+        return rollupService.isReady()
+                && (startDate == null || startDate.getDayOfMonth() == 1)
+                && (endDate == null || endDate.equals(endDate.with(TemporalAdjusters.lastDayOfMonth())));
+    }
+}
@@ -0,0 +1,574 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import com.erp.repository.TransactionRepository;
+import com.erp.repository.projection.DepartmentMetrics;
+import com.erp.repository.projection.MonthlyMetrics;
+import com.erp.repository.projection.ProductRevenue;
+import com.erp.repository.projection.TransactionTotals;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory columnar copy of the transactions fact table.
+ *
+ * Amounts are kept as long cents, product/department/type/status are
+ * dictionary encoded and rows are sorted by transaction date, so a date
+ * range resolves to an index range by binary search and analytics run as
+ * primitive loops over that range, split across cores by {@link ParallelAggregator}
+ * when the range is large. Readers work on an immutable snapshot; imports
+ * publish a new snapshot by merging their (sorted) batch in, and a reload
+ * builds its snapshot and dictionaries aside and swaps them in.
+ *
+ * Enabled with {@code analytics.column-store.enabled=true}.
+ */
+@Service
+@ConditionalOnProperty(name = "analytics.column-store.enabled", havingValue = "true")
+public class TransactionColumnStore {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransactionColumnStore.class);
+    
+    // int day + 3 long amounts + int product + 3 short codes
+    private static final int BYTES_PER_ROW = 4 + 3 * 8 + 4 + 3 * 2;
+    
+    private final TransactionRepository transactionRepository;
+    private final ParallelAggregator aggregator;
+    
+    // Held shared by an import from just before its database commit until its rows are published, and
+    // exclusively by load and clear, so an import is either in the table a reload reads or published after it
+    private final ReadWriteLock publishing = new ReentrantReadWriteLock();
+    
+    private volatile Encoding encoding = new Encoding();
+    private volatile Columns columns = Columns.EMPTY;
+    private volatile boolean loaded;
+    
+    public TransactionColumnStore(TransactionRepository transactionRepository, ParallelAggregator aggregator,
+                                  MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.aggregator = aggregator;
+        Gauge.builder("erp.analytics.column_store.bytes", this, TransactionColumnStore::memoryFootprintBytes)
+                .description("Estimated heap held by the transaction column store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("erp.analytics.column_store.rows", this, store -> store.columns.size)
+                .description("Rows held by the transaction column store")
+                .register(meterRegistry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long started = System.currentTimeMillis();
+        publishing.writeLock().lock();
+        try {
+            // Queries keep the current snapshot, and imports staging meanwhile their encoding, until the swap
+            Batch batch = new Batch(new Encoding(), 1024);
+            try (Stream<Object[]> rows = transactionRepository.streamColumnRows()) {
+                rows.forEach(row -> batch.add((LocalDate) row[0], toCents((BigDecimal) row[1]), toCents((BigDecimal) row[2]),
+                        toCents((BigDecimal) row[3]), (String) row[4], (String) row[5], (String) row[6], (String) row[7]));
+            }
+            // Rows arrive ordered by date, no merge needed
+            Columns reloaded = batch.toColumns();
+            synchronized (this) {
+                encoding = batch.encoding;
+                columns = reloaded;
+                loaded = true;
+            }
+        } finally {
+            publishing.writeLock().unlock();
+        }
+        log.info("Transaction column store loaded {} rows ({} bytes) in {} ms",
+                columns.size, memoryFootprintBytes(), System.currentTimeMillis() - started);
+    }
+    
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * Starts an append that is fed chunk by chunk with {@link #stage} and published in one step by
+     * {@link #publishOnCommit}, so an import only keeps the compact column form of its rows.
+     */
+    public synchronized Staging newStaging() {
+        return new Staging(new Batch(encoding, 1024));
+    }
+    
+    public synchronized void stage(Staging staging, List<Transaction> transactions) {
+        for (Transaction t : transactions) {
+            staging.batch.add(t.getTransactionDate(), orZero(t.getRevenueUnits()), orZero(t.getCostUnits()),
+                    orZero(t.getProfitUnits()), t.getProduct(), t.getDepartment(), t.getTransactionType(), t.getOrderStatus());
+        }
+    }
+    
+    /**
+     * Publishes the staged rows once the current transaction, which wrote them, commits. Call from
+     * inside the import transaction; nothing is published if it rolls back.
+     */
+    public void publishOnCommit(Staging staging) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean holding;
+            
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                publishing.readLock().lock();
+                holding = true;
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        publish(staging);
+                    }
+                } catch (RuntimeException e) {
+                    // The rows are in the table; analytics go back to SQL until the next load
+                    log.error("Could not publish imported rows to the column store", e);
+                    loaded = false;
+                } finally {
+                    if (holding) {
+                        publishing.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+    
+    private synchronized void publish(Staging staging) {
+        Batch batch = staging.batch;
+        if (batch.encoding != encoding) {
+            // Staged before a reload or clear and committed after it, so not in the reloaded rows
+            batch = batch.reencode(encoding);
+        }
+        batch.sortByDay();
+        columns = Columns.merge(columns, batch.toColumns());
+    }
+    
+    public void clear() {
+        publishing.writeLock().lock();
+        try {
+            synchronized (this) {
+                encoding = new Encoding();
+                columns = Columns.EMPTY;
+            }
+        } finally {
+            publishing.writeLock().unlock();
+        }
+    }
+    
+    public long memoryFootprintBytes() {
+        return (long) columns.size * BYTES_PER_ROW + encoding.footprintBytes();
+    }
+    
+    // Analytics queries (same shapes as the TransactionRepository aggregations)
+    
+    public List<ProductRevenue> sumRevenueByProduct(LocalDate startDate, LocalDate endDate, String department, int limit) {
+        Columns c = columns;
+        Scan scan = c.scan(startDate, endDate, department);
+        AnalyticsAccumulator[] byProduct = aggregator.aggregate(scan.from, scan.to, c.productNames.length,
+                (from, to, groups) -> {
+                    for (int i = from; i < to; i++) {
+                        if (scan.accepts(c.department[i])) {
+                            groups[c.product[i]].add(c.revenue[i], c.cost[i], c.profit[i]);
+                        }
+                    }
+                });
+        
+        TopK top = new TopK(Math.min(limit, byProduct.length));
+        for (int code = 0; code < byProduct.length; code++) {
+            if (!byProduct[code].isEmpty()) {
+                top.offer(code, byProduct[code].revenue());
+            }
+        }
+        
+        List<ProductRevenue> result = new ArrayList<>(top.size());
+        for (int code : top.idsDescending()) {
+            result.add(new ProductRow(c.productNames[code], cents(byProduct[code].revenue())));
+        }
+        return result;
+    }
+    
+    public List<DepartmentMetrics> sumByDepartment(LocalDate startDate, LocalDate endDate, String department) {
+        Columns c = columns;
+        Scan scan = c.scan(startDate, endDate, department);
+        AnalyticsAccumulator[] byDepartment = aggregator.aggregate(scan.from, scan.to, c.departmentNames.length,
+                (from, to, groups) -> {
+                    for (int i = from; i < to; i++) {
+                        short code = c.department[i];
+                        if (scan.accepts(code)) {
+                            groups[code].add(c.revenue[i], c.cost[i], c.profit[i]);
+                        }
+                    }
+                });
+        
+        List<DepartmentMetrics> result = new ArrayList<>();
+        for (int code = 0; code < byDepartment.length; code++) {
+            AnalyticsAccumulator acc = byDepartment[code];
+            if (!acc.isEmpty()) {
+                result.add(new DepartmentRow(c.departmentNames[code],
+                        cents(acc.revenue()), cents(acc.profit()), cents(acc.cost()), acc.count()));
+            }
+        }
+        result.sort(Comparator.comparing(DepartmentMetrics::getRevenue).reversed());
+        return result;
+    }
+    
+    public List<MonthlyMetrics> sumByMonth(LocalDate startDate, LocalDate endDate, String department) {
+        Columns c = columns;
+        Scan scan = c.scan(startDate, endDate, department);
+        if (scan.from == scan.to) {
+            return List.of();
+        }
+        
+        // Rows are date ordered, so each month is one contiguous run: month m covers
+        // [monthStarts[m], monthStarts[m + 1]) and a slice only needs its first month's position
+        LocalDate firstMonth = LocalDate.ofEpochDay(c.day[scan.from]).withDayOfMonth(1);
+        LocalDate lastMonth = LocalDate.ofEpochDay(c.day[scan.to - 1]).withDayOfMonth(1);
+        int months = (int) (lastMonth.getYear() * 12L + lastMonth.getMonthValue()
+                - firstMonth.getYear() * 12L - firstMonth.getMonthValue()) + 1;
+        int[] monthStarts = new int[months + 1];
+        for (int m = 0; m < months; m++) {
+            monthStarts[m] = Math.max(scan.from, lowerBound(c.day, c.size, firstMonth.plusMonths(m).toEpochDay()));
+        }
+        monthStarts[months] = scan.to;
+        
+        AnalyticsAccumulator[] byMonth = aggregator.aggregate(scan.from, scan.to, months, (from, to, groups) -> {
+            int m = Math.max(0, Arrays.binarySearch(monthStarts, from));
+            while (m + 1 < monthStarts.length && monthStarts[m + 1] <= from) {
+                m++;
+            }
+            for (int i = from; i < to; i++) {
+                while (i >= monthStarts[m + 1]) {
+                    m++;
+                }
+                if (scan.accepts(c.department[i])) {
+                    groups[m].add(c.revenue[i], c.cost[i], c.profit[i]);
+                }
+            }
+        });
+        
+        List<MonthlyMetrics> result = new ArrayList<>();
+        for (int m = 0; m < months; m++) {
+            AnalyticsAccumulator acc = byMonth[m];
+            if (!acc.isEmpty()) {
+                LocalDate month = firstMonth.plusMonths(m);
+                result.add(new MonthRow(month.getYear(), month.getMonthValue(),
+                        cents(acc.revenue()), cents(acc.profit()), cents(acc.cost())));
+            }
+        }
+        return result;
+    }
+    
+    public TransactionTotals sumTotals(LocalDate startDate, LocalDate endDate, String department) {
+        Columns c = columns;
+        Scan scan = c.scan(startDate, endDate, department);
+        AnalyticsAccumulator total = aggregator.aggregate(scan.from, scan.to, 1, (from, to, groups) -> {
+            AnalyticsAccumulator acc = groups[0];
+            for (int i = from; i < to; i++) {
+                if (scan.accepts(c.department[i])) {
+                    acc.add(c.revenue[i], c.cost[i], c.profit[i]);
+                }
+            }
+        })[0];
+        boolean any = !total.isEmpty();
+        return new TotalsRow(any ? cents(total.revenue()) : null, any ? cents(total.profit()) : null,
+                any ? cents(total.cost()) : null, total.count());
+    }
+    
+    private static BigDecimal cents(long value) {
+        return Money.toBigDecimal(value, Money.DEFAULT_SCALE);
+    }
+    
+    private static long toCents(BigDecimal value) {
+        return Money.units(value, Money.DEFAULT_SCALE);
+    }
+    
+    private static long orZero(long units) {
+        return units != Transaction.NO_AMOUNT ? units : 0;
+    }
+    
+    private static int lowerBound(int[] days, int size, long day) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+    
+    /**
+     * Mutable string dictionary, only touched under the store lock once published.
+     * Codes are stable for its lifetime; a reload or clear starts a new one.
+     */
+    private static final class Dictionary {
+        private final String column;
+        private final int maxCodes;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private long footprint;
+        
+        Dictionary(String column, int maxCodes) {
+            this.column = column;
+            this.maxCodes = maxCodes;
+        }
+        
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (values.size() == maxCodes) {
+                    throw new IllegalStateException("Column store holds at most " + maxCodes + " distinct " + column + " values");
+                }
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+                footprint += 64 + (value != null ? 2L * value.length() : 0); // map entry + string
+            }
+            return code;
+        }
+        
+        String[] names() {
+            return values.toArray(new String[0]);
+        }
+        
+        long footprintBytes() {
+            return footprint;
+        }
+    }
+    
+    /** The dictionaries one snapshot's codes refer to; short codes cap the three small ones. */
+    private static final class Encoding {
+        final Dictionary products = new Dictionary("product", Integer.MAX_VALUE);
+        final Dictionary departments = new Dictionary("department", Short.MAX_VALUE + 1);
+        final Dictionary types = new Dictionary("transaction type", Short.MAX_VALUE + 1);
+        final Dictionary statuses = new Dictionary("order status", Short.MAX_VALUE + 1);
+        
+        Dictionaries names() {
+            return new Dictionaries(products.names(), departments.names(), types.names(), statuses.names());
+        }
+        
+        long footprintBytes() {
+            return products.footprintBytes() + departments.footprintBytes()
+                    + types.footprintBytes() + statuses.footprintBytes();
+        }
+    }
+    
+    /**
+     * Rows staged for one import, encoded against the dictionaries current when it started.
+     */
+    public static final class Staging {
+        private final Batch batch;
+        
+        private Staging(Batch batch) {
+            this.batch = batch;
+        }
+    }
+    
+    private record Dictionaries(String[] products, String[] departments, String[] types, String[] statuses) {}
+    
+    /** Growable row buffer used while loading and appending. */
+    private static final class Batch {
+        private final Encoding encoding;
+        private int size;
+        private int[] day;
+        private long[] revenue, cost, profit;
+        private int[] product;
+        private short[] department, type, status;
+        
+        Batch(Encoding encoding, int capacity) {
+            this.encoding = encoding;
+            capacity = Math.max(capacity, 16);
+            day = new int[capacity];
+            revenue = new long[capacity];
+            cost = new long[capacity];
+            profit = new long[capacity];
+            product = new int[capacity];
+            department = new short[capacity];
+            type = new short[capacity];
+            status = new short[capacity];
+        }
+        
+        void add(LocalDate date, long rowRevenue, long rowCost, long rowProfit,
+                 String rowProduct, String rowDepartment, String rowType, String rowStatus) {
+            if (date == null) {
+                return; // not addressable by any date range
+            }
+            if (size == day.length) {
+                int capacity = size * 2;
+                day = Arrays.copyOf(day, capacity);
+                revenue = Arrays.copyOf(revenue, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+                profit = Arrays.copyOf(profit, capacity);
+                product = Arrays.copyOf(product, capacity);
+                department = Arrays.copyOf(department, capacity);
+                type = Arrays.copyOf(type, capacity);
+                status = Arrays.copyOf(status, capacity);
+            }
+            day[size] = (int) date.toEpochDay();
+            revenue[size] = rowRevenue;
+            cost[size] = rowCost;
+            profit[size] = rowProfit;
+            product[size] = encoding.products.encode(rowProduct);
+            department[size] = (short) encoding.departments.encode(rowDepartment);
+            type[size] = (short) encoding.types.encode(rowType);
+            status[size] = (short) encoding.statuses.encode(rowStatus);
+            size++;
+        }
+        
+        Batch reencode(Encoding target) {
+            Dictionaries names = encoding.names();
+            Batch copy = new Batch(target, size);
+            for (int i = 0; i < size; i++) {
+                copy.add(LocalDate.ofEpochDay(day[i]), revenue[i], cost[i], profit[i], names.products()[product[i]],
+                        names.departments()[department[i]], names.types()[type[i]], names.statuses()[status[i]]);
+            }
+            return copy;
+        }
+        
+        void sortByDay() {
+            // Pack (day, index) into one long so the sort stays primitive
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) day[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedDay = new int[size];
+            long[] sortedRevenue = new long[size], sortedCost = new long[size], sortedProfit = new long[size];
+            int[] sortedProduct = new int[size];
+            short[] sortedDepartment = new short[size], sortedType = new short[size], sortedStatus = new short[size];
+            for (int i = 0; i < size; i++) {
+                int src = (int) keys[i];
+                sortedDay[i] = day[src];
+                sortedRevenue[i] = revenue[src];
+                sortedCost[i] = cost[src];
+                sortedProfit[i] = profit[src];
+                sortedProduct[i] = product[src];
+                sortedDepartment[i] = department[src];
+                sortedType[i] = type[src];
+                sortedStatus[i] = status[src];
+            }
+            day = sortedDay;
+            revenue = sortedRevenue;
+            cost = sortedCost;
+            profit = sortedProfit;
+            product = sortedProduct;
+            department = sortedDepartment;
+            type = sortedType;
+            status = sortedStatus;
+        }
+        
+        Columns toColumns() {
+            Dictionaries dictionaries = encoding.names();
+            return new Columns(size, Arrays.copyOf(day, size), Arrays.copyOf(revenue, size),
+                    Arrays.copyOf(cost, size), Arrays.copyOf(profit, size), Arrays.copyOf(product, size),
+                    Arrays.copyOf(department, size), Arrays.copyOf(type, size), Arrays.copyOf(status, size),
+                    dictionaries.products(), dictionaries.departments(), dictionaries.types(), dictionaries.statuses());
+        }
+    }
+    
+    /** Immutable, date-sorted snapshot of all columns. */
+    private record Columns(int size, int[] day, long[] revenue, long[] cost, long[] profit, int[] product,
+                           short[] department, short[] type, short[] status,
+                           String[] productNames, String[] departmentNames, String[] typeNames, String[] statusNames) {
+        
+        static final Columns EMPTY = new Columns(0, new int[0], new long[0], new long[0], new long[0], new int[0],
+                new short[0], new short[0], new short[0], new String[0], new String[0], new String[0], new String[0]);
+        
+        static Columns merge(Columns a, Columns b) {
+            int size = a.size + b.size;
+            int[] day = new int[size];
+            long[] revenue = new long[size], cost = new long[size], profit = new long[size];
+            int[] product = new int[size];
+            short[] department = new short[size], type = new short[size], status = new short[size];
+            int i = 0, j = 0;
+            for (int k = 0; k < size; k++) {
+                Columns src;
+                int at;
+                if (j >= b.size || (i < a.size && a.day[i] <= b.day[j])) {
+                    src = a;
+                    at = i++;
+                } else {
+                    src = b;
+                    at = j++;
+                }
+                day[k] = src.day[at];
+                revenue[k] = src.revenue[at];
+                cost[k] = src.cost[at];
+                profit[k] = src.profit[at];
+                product[k] = src.product[at];
+                department[k] = src.department[at];
+                type[k] = src.type[at];
+                status[k] = src.status[at];
+            }
+            // b was encoded after a, so its dictionaries are a superset
+            return new Columns(size, day, revenue, cost, profit, product, department, type, status,
+                    b.productNames, b.departmentNames, b.typeNames, b.statusNames);
+        }
+        
+        Scan scan(LocalDate startDate, LocalDate endDate, String departmentFilter) {
+            int from = startDate != null ? lowerBound(day, size, startDate.toEpochDay()) : 0;
+            int to = endDate != null ? lowerBound(day, size, endDate.toEpochDay() + 1) : size;
+            boolean[] mask = null;
+            if (departmentFilter != null) {
+                mask = new boolean[departmentNames.length];
+                for (int code = 0; code < departmentNames.length; code++) {
+                    mask[code] = departmentFilter.equalsIgnoreCase(departmentNames[code]);
+                }
+            }
+            return new Scan(from, Math.max(from, to), mask);
+        }
+    }
+    
+    /** Index range [from, to) plus an optional department code mask. */
+    private record Scan(int from, int to, boolean[] departmentMask) {
+        boolean accepts(short departmentCode) {
+            return departmentMask == null || departmentMask[departmentCode];
+        }
+    }
+    
+    private record ProductRow(String name, BigDecimal value) implements ProductRevenue {
+        public String getName() { return name; }
+        public BigDecimal getValue() { return value; }
+    }
+    
+    private record DepartmentRow(String name, BigDecimal revenue, BigDecimal profit, BigDecimal cost,
+                                 Long transactions) implements DepartmentMetrics {
+        public String getName() { return name; }
+        public BigDecimal getRevenue() { return revenue; }
+        public BigDecimal getProfit() { return profit; }
+        public BigDecimal getCost() { return cost; }
+        public Long getTransactions() { return transactions; }
+    }
+    
+    private record MonthRow(Integer year, Integer month, BigDecimal revenue, BigDecimal profit,
+                            BigDecimal cost) implements MonthlyMetrics {
+        public Integer getYear() { return year; }
+        public Integer getMonth() { return month; }
+        public BigDecimal getRevenue() { return revenue; }
+        public BigDecimal getProfit() { return profit; }
+        public BigDecimal getCost() { return cost; }
+    }
+    
+    private record TotalsRow(BigDecimal revenue, BigDecimal profit, BigDecimal cost,
+                             Long transactions) implements TransactionTotals {
+        public BigDecimal getRevenue() { return revenue; }
+        public BigDecimal getProfit() { return profit; }
+        public BigDecimal getCost() { return cost; }
+        public Long getTransactions() { return transactions; }
+    }
+}
@@ -0,0 +1,197 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Streams transactions into PostgreSQL with {@code COPY ... FROM STDIN} (CSV format), either into the
+ * transactions table or into a table with the same import columns (see {@link ImportDeduplicator#COLUMNS}).
+ *
+ * Rows are encoded into a reusable buffer and handed to the driver in blocks, so memory does not
+ * grow with the number of rows. Ids come from the column default. The copy runs on the caller's
+ * connection and therefore in its transaction; {@link #finish()} completes it, {@link #close()}
+ * without finishing cancels it.
+ */
+final class TransactionCopyWriter implements AutoCloseable {
+    
+    private static final String COPY_SQL = "COPY %s (" + ImportDeduplicator.COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_AMOUNT_BYTES = 21 + Money.DEFAULT_SCALE;
+    
+    private final CopyIn copyIn;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean finished;
+    
+    private TransactionCopyWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+    
+    static TransactionCopyWriter open(Connection connection, String table) throws SQLException {
+        return new TransactionCopyWriter(connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn(String.format(COPY_SQL, table)));
+    }
+    
+    void write(Transaction t) throws SQLException {
+        writeDate(t.getTransactionDate());
+        writeText(t.getCustomerName());
+        writeText(t.getTransactionType());
+        writeAmount(t.getRevenueUnits());
+        writeAmount(t.getCostUnits());
+        writeText(t.getProduct());
+        writeText(t.getOrderStatus());
+        writeText(t.getDepartment());
+        writeAmount(t.getProfitUnits());
+        writeAmount(t.getForecastedRevenueUnits());
+        writeBytes(t.getFingerprint());
+        buffer[position - 1] = '\n'; // replaces the trailing delimiter
+    }
+    
+    /**
+     * Ends the copy.
+     *
+     * @return rows written by the server
+     */
+    long finish() throws SQLException {
+        flush();
+        finished = true;
+        return copyIn.endCopy();
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        if (!finished && copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+    
+    private void writeDate(LocalDate date) throws SQLException {
+        if (date == null) {
+            delimiter();
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            writeAscii(date.toString());
+            delimiter();
+            return;
+        }
+        ensure(11);
+        position = digits(year, 4, position);
+        buffer[position++] = '-';
+        position = digits(date.getMonthValue(), 2, position);
+        buffer[position++] = '-';
+        position = digits(date.getDayOfMonth(), 2, position);
+        delimiter();
+    }
+    
+    private void writeAmount(long units) throws SQLException {
+        if (units != Transaction.NO_AMOUNT) {
+            ensure(MAX_AMOUNT_BYTES);
+            position = Money.writeUnits(units, Money.DEFAULT_SCALE, buffer, position);
+        }
+        delimiter();
+    }
+    
+    // Always quoted: in COPY CSV an unquoted empty field is NULL, a quoted one is ''
+    private void writeText(String value) throws SQLException {
+        if (value == null) {
+            delimiter();
+            return;
+        }
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                put('"');
+                put('"');
+            } else if (c < 0x80) {
+                put(c);
+            } else {
+                int codePoint = value.codePointAt(i);
+                i += Character.charCount(codePoint) - 1;
+                writeUtf8(codePoint);
+            }
+        }
+        put('"');
+        delimiter();
+    }
+    
+    // bytea in hex format: \x followed by two digits per byte
+    private void writeBytes(byte[] value) throws SQLException {
+        if (value != null) {
+            ensure(2 + 2 * value.length);
+            buffer[position++] = '\\';
+            buffer[position++] = 'x';
+            for (byte b : value) {
+                buffer[position++] = HEX[(b >> 4) & 0xF];
+                buffer[position++] = HEX[b & 0xF];
+            }
+        }
+        delimiter();
+    }
+    
+    private void writeUtf8(int codePoint) throws SQLException {
+        if (Character.isSurrogate((char) codePoint) && codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            put('?'); // unpaired surrogate, as String.getBytes would encode it
+            return;
+        }
+        ensure(4);
+        if (codePoint < 0x800) {
+            buffer[position++] = (byte) (0xC0 | codePoint >> 6);
+        } else if (codePoint < 0x10000) {
+            buffer[position++] = (byte) (0xE0 | codePoint >> 12);
+            buffer[position++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        } else {
+            buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+            buffer[position++] = (byte) (0x80 | (codePoint >> 12 & 0x3F));
+            buffer[position++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+        }
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+    
+    private void writeAscii(String text) throws SQLException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+    
+    private int digits(int value, int width, int at) {
+        for (int i = width - 1; i >= 0; i--) {
+            buffer[at + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + width;
+    }
+    
+    private void delimiter() throws SQLException {
+        put(',');
+    }
+    
+    private void put(char c) throws SQLException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+    
+    private void ensure(int bytes) throws SQLException {
+        if (position + bytes > buffer.length) {
+            flush();
+        }
+    }
+    
+    private void flush() throws SQLException {
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
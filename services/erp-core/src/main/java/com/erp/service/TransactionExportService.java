@@ -0,0 +1,167 @@
+package com.erp.service;
+
+import com.erp.entity.Transaction;
+import com.erp.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams transactions out as CSV or NDJSON straight from a forward-only cursor.
+ *
+ * Rows are fetched {@code export.fetch-size} at a time and the persistence context is
+ * cleared every {@code export.clear-interval} rows, so heap use does not grow with the
+ * export size. Output is flushed at the same interval so clients see bytes early.
+ */
+@Service
+public class TransactionExportService {
+    
+    public enum Format { CSV, NDJSON }
+    
+    // Same column order as the CSV importer, so exports can be re-imported
+    private static final String CSV_HEADER = "transaction_date,customer_name,transaction_type,revenue,cost,"
+            + "product,order_status,department,profit,forecasted_revenue";
+    
+    private static final String EXPORT_QUERY = "SELECT t FROM Transaction t" + TransactionRepository.ANALYTICS_FILTER
+            + " AND (CAST(:type AS String) IS NULL OR LOWER(t.transactionType) = LOWER(CAST(:type AS String)))"
+            + " ORDER BY t.transactionDate, t.id";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final int clearInterval;
+    
+    public TransactionExportService(ObjectMapper objectMapper,
+                                    @Value("${export.fetch-size:1000}") int fetchSize,
+                                    @Value("${export.clear-interval:1000}") int clearInterval) {
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.clearInterval = Math.max(clearInterval, 1);
+    }
+    
+    /**
+     * Writes all matching rows to {@code out}. Null filters are ignored.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long export(LocalDate startDate, LocalDate endDate, String department, String type,
+                       Format format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024, true) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = null;
+        if (format == Format.NDJSON) {
+            json = objectMapper.getFactory().createGenerator(writer);
+            json.setRootValueSeparator(null); // lines are separated explicitly below
+        }
+        
+        TypedQuery<Transaction> query = entityManager.createQuery(EXPORT_QUERY, Transaction.class)
+                .setParameter("startDate", TransactionRepository.lowerBound(startDate))
+                .setParameter("endDate", TransactionRepository.upperBound(endDate))
+                .setParameter("department", department)
+                .setParameter("type", type)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        
+        long rows = 0;
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        writer.flush(); // headers go out before the first fetch completes
+        
+        try (Stream<Transaction> stream = query.getResultStream()) {
+            Iterator<Transaction> it = stream.iterator();
+            while (it.hasNext()) {
+                Transaction t = it.next();
+                if (json != null) {
+                    objectMapper.writeValue(json, t);
+                    json.flush();
+                    writer.write('\n');
+                } else {
+                    writeCsvRow(writer, t);
+                }
+                if (++rows % clearInterval == 0) {
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        }
+        
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        return rows;
+    }
+    
+    private static void writeCsvRow(Writer w, Transaction t) throws IOException {
+        w.write(t.getTransactionDate() != null ? t.getTransactionDate().toString() : "");
+        w.write(',');
+        writeCsvField(w, t.getCustomerName());
+        w.write(',');
+        writeCsvField(w, t.getTransactionType());
+        w.write(',');
+        writeDecimal(w, t.getRevenue());
+        w.write(',');
+        writeDecimal(w, t.getCost());
+        w.write(',');
+        writeCsvField(w, t.getProduct());
+        w.write(',');
+        writeCsvField(w, t.getOrderStatus());
+        w.write(',');
+        writeCsvField(w, t.getDepartment());
+        w.write(',');
+        writeDecimal(w, t.getProfit());
+        w.write(',');
+        writeDecimal(w, t.getForecastedRevenue());
+        w.write('\n');
+    }
+    
+    private static void writeDecimal(Writer w, BigDecimal value) throws IOException {
+        if (value != null) {
+            w.write(value.toPlainString());
+        }
+    }
+    
+    // RFC 4180: quote fields containing a delimiter, quote or line break; double embedded quotes
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                w.write('"');
+            }
+            w.write(c);
+        }
+        w.write('"');
+    }
+}
@@ -0,0 +1,84 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Content fingerprint of a transaction, used to recognise rows that were already imported.
+ *
+ * It is the MD5 of the date, customer, product and type (trimmed of spaces and lower-cased) and the
+ * revenue, cost and profit in minor units, joined with {@code |}. Status, department and forecast are
+ * left out, so a re-exported row whose status moved on still counts as the same transaction.
+ * {@link #SQL} computes the same value in PostgreSQL (identical for ASCII text), for rows that
+ * reach the table without going through the importer.
+ */
+final class TransactionFingerprint {
+    
+    static final String SQL = "decode(md5(concat_ws('|', to_char(transaction_date, 'YYYY-MM-DD'),"
+            + " lower(btrim(coalesce(customer_name, ''))), lower(btrim(coalesce(product, ''))),"
+            + " lower(btrim(coalesce(transaction_type, ''))),"
+            + " coalesce(round(revenue * 100)::bigint::text, ''), coalesce(round(cost * 100)::bigint::text, ''),"
+            + " coalesce(round(profit * 100)::bigint::text, ''))), 'hex')";
+    
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    });
+    
+    private TransactionFingerprint() {}
+    
+    static byte[] of(Transaction t) {
+        StringBuilder text = new StringBuilder(128);
+        text.append(t.getTransactionDate() != null ? t.getTransactionDate().toString() : "").append('|');
+        appendText(text, t.getCustomerName()).append('|');
+        appendText(text, t.getProduct()).append('|');
+        appendText(text, t.getTransactionType()).append('|');
+        appendAmount(text, t.getRevenueUnits()).append('|');
+        appendAmount(text, t.getCostUnits()).append('|');
+        appendAmount(text, t.getProfitUnits());
+        return MD5.get().digest(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Same as {@link #of(Transaction)} for a row whose amounts are already in minor units at
+     * {@link Money#DEFAULT_SCALE}.
+     */
+    static byte[] of(LocalDate date, String customer, String product, String type, long revenue, long cost, long profit) {
+        StringBuilder text = new StringBuilder(128);
+        text.append(date).append('|');
+        appendText(text, customer).append('|');
+        appendText(text, product).append('|');
+        appendText(text, type).append('|');
+        text.append(revenue).append('|').append(cost).append('|').append(profit);
+        return MD5.get().digest(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // btrim() only strips spaces, so String.trim() (all control characters) would not match it
+    private static StringBuilder appendText(StringBuilder text, String value) {
+        if (value == null) {
+            return text;
+        }
+        int from = 0;
+        int to = value.length();
+        while (from < to && value.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && value.charAt(to - 1) == ' ') {
+            to--;
+        }
+        return text.append(value.substring(from, to).toLowerCase(Locale.ROOT));
+    }
+    
+    private static StringBuilder appendAmount(StringBuilder text, long units) {
+        return units != Transaction.NO_AMOUNT ? text.append(units) : text;
+    }
+}
@@ -0,0 +1,277 @@
+package com.erp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Manages the transactions table as PostgreSQL range partitions, one per month.
+ *
+ * On startup a plain table (as created by Hibernate) is converted in place, keeping its rows
+ * and id sequence. Partitions are named transactions_pYYYYMM; a default partition catches rows
+ * inserted for months that have no partition yet, and those rows are moved into their own
+ * partition the next time that month is ensured. Imports call {@link #ensurePartitions(Collection)}
+ * with the months they wrote once committed, so new months are split off the default partition
+ * without locking the table for the length of an import. Retention detaches (and optionally drops)
+ * whole months, renaming kept ones to transactions_archive_pYYYYMM so that the month can be
+ * partitioned again.
+ */
+@Service
+@DependsOnDatabaseInitialization
+public class TransactionPartitionManager {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionManager.class);
+    
+    private static final String TABLE = "transactions";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final String ARCHIVE_PREFIX = TABLE + "_archive_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    // Serializes partition DDL across replicas
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('" + TABLE + "_partitions'))";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    
+    private final Set<LocalDate> partitionedMonths = Collections.synchronizedSet(new TreeSet<>());
+    private volatile boolean active;
+    
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${transactions.partitioning.enabled:true}") boolean enabled,
+                                       @Value("${transactions.partitioning.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+    }
+    
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        String relkind = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')",
+                String.class, TABLE);
+        if ("r".equals(relkind)) {
+            convertToPartitioned();
+        } else if (!"p".equals(relkind)) {
+            log.warn("Table {} not found, partitioning disabled", TABLE);
+            return;
+        }
+        active = true;
+        partitionedMonths.addAll(loadPartitionMonths());
+        
+        // Rows that landed in the default partition (seed scripts, manual loads) move to their month
+        List<LocalDate> stray = jdbcTemplate.queryForList("SELECT DISTINCT date_trunc('month', transaction_date)::date FROM "
+                + DEFAULT_PARTITION + " WHERE transaction_date IS NOT NULL", LocalDate.class);
+        List<LocalDate> months = new ArrayList<>(stray);
+        LocalDate current = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        ensurePartitions(months);
+        log.info("Transactions partitioned by month: {} partitions", partitionedMonths.size());
+    }
+    
+    /**
+     * True when the transactions table is range partitioned and managed here.
+     */
+    public boolean isActive() {
+        return active;
+    }
+    
+    /**
+     * Creates the monthly partitions covering the given dates. Runs in its own short transactions
+     * so the parent table lock is not held for the length of an import.
+     */
+    public void ensurePartitions(Collection<LocalDate> dates) {
+        if (!active) {
+            return;
+        }
+        SortedSet<LocalDate> missing = new TreeSet<>();
+        for (LocalDate date : dates) {
+            if (date != null) {
+                LocalDate month = date.withDayOfMonth(1);
+                if (!partitionedMonths.contains(month)) {
+                    missing.add(month);
+                }
+            }
+        }
+        for (LocalDate month : missing) {
+            transactionTemplate.executeWithoutResult(status -> createPartition(month));
+            partitionedMonths.add(month);
+        }
+    }
+    
+    /**
+     * Detaches every monthly partition that ends on or before {@code cutoff}; with {@code drop}
+     * the detached tables are dropped, otherwise they stay behind as standalone archive tables
+     * named transactions_archive_pYYYYMM.
+     *
+     * @throws IllegalStateException if an archive table of the same month already exists
+     *
+     * @return months removed from the transactions table
+     */
+    public List<LocalDate> detachPartitionsBefore(LocalDate cutoff, boolean drop) {
+        if (!active) {
+            throw new IllegalStateException("Transactions table is not partitioned");
+        }
+        List<LocalDate> removed = new ArrayList<>();
+        for (LocalDate month : loadPartitionMonths()) {
+            if (month.plusMonths(1).isAfter(cutoff)) {
+                continue;
+            }
+            String partition = partitionName(month);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute(LOCK_SQL);
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+                if (drop) {
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                } else {
+                    // Frees the partition name for the month's next import
+                    String archive = ARCHIVE_PREFIX + month.format(SUFFIX);
+                    if (exists(archive)) {
+                        throw new IllegalStateException("Cannot archive " + partition + ": " + archive + " already exists");
+                    }
+                    jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + archive);
+                }
+            });
+            partitionedMonths.remove(month);
+            removed.add(month);
+            log.info("{} transactions partition {}", drop ? "Dropped" : "Detached and archived", partition);
+        }
+        return removed;
+    }
+    
+    /**
+     * Partitions with their estimated live row counts, oldest first.
+     */
+    public List<PartitionInfo> listPartitions() {
+        if (!active) {
+            return List.of();
+        }
+        return jdbcTemplate.query("SELECT c.relname, COALESCE(s.n_live_tup, 0) FROM pg_inherits i"
+                        + " JOIN pg_class c ON c.oid = i.inhrelid"
+                        + " LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid"
+                        + " WHERE i.inhparent = to_regclass(?) ORDER BY c.relname",
+                (rs, rowNum) -> new PartitionInfo(rs.getString(1), monthOf(rs.getString(1)), rs.getLong(2)),
+                TABLE);
+    }
+    
+    public record PartitionInfo(String name, LocalDate monthStart, long estimatedRows) {}
+    
+    private void createPartition(LocalDate month) {
+        jdbcTemplate.execute(LOCK_SQL);
+        String partition = partitionName(month);
+        if (exists(partition)) {
+            boolean attached = Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_inherits"
+                    + " WHERE inhrelid = to_regclass(?) AND inhparent = to_regclass(?))", Boolean.class, partition, TABLE));
+            if (attached) {
+                return; // created by another replica
+            }
+            // A standalone table under the partition's name (a manual detach) would leave the month in the default partition
+            throw new IllegalStateException("Table " + partition + " exists but is not a partition of " + TABLE
+                    + "; rename or drop it so the month can be partitioned");
+        }
+        String from = month.toString();
+        String to = month.plusMonths(1).toString();
+        boolean hasStrayRows = Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM "
+                + DEFAULT_PARTITION + " WHERE transaction_date >= ?::date AND transaction_date < ?::date)",
+                Boolean.class, from, to));
+        if (hasStrayRows) {
+            // A new range may not overlap rows held by the default partition: move them first
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + TABLE + " INCLUDING DEFAULTS)");
+            jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE transaction_date >= ?::date AND transaction_date < ?::date RETURNING *)"
+                    + " INSERT INTO " + partition + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        } else {
+            jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        }
+    }
+    
+    private void convertToPartitioned() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK_SQL);
+            String legacy = TABLE + "_unpartitioned";
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + legacy);
+            // The partition key must be part of the primary key, so transaction_date becomes required
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + legacy + " INCLUDING DEFAULTS INCLUDING IDENTITY)"
+                    + " PARTITION BY RANGE (transaction_date)");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN transaction_date SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, transaction_date)");
+            jdbcTemplate.execute("CREATE INDEX idx_" + TABLE + "_date ON " + TABLE + " (transaction_date)");
+            // Import deduplication; the constraint moves over from the legacy table under the same name
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT IF EXISTS uk_" + TABLE + "_fingerprint");
+            jdbcTemplate.execute("CREATE UNIQUE INDEX uk_" + TABLE + "_fingerprint ON " + TABLE
+                    + " (fingerprint, transaction_date)");
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            
+            List<LocalDate> months = jdbcTemplate.queryForList("SELECT DISTINCT date_trunc('month', transaction_date)::date"
+                    + " FROM " + legacy + " WHERE transaction_date IS NOT NULL", LocalDate.class);
+            for (LocalDate month : months) {
+                createPartition(month);
+            }
+            int moved = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + legacy
+                    + " WHERE transaction_date IS NOT NULL");
+            Integer undated = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + legacy
+                    + " WHERE transaction_date IS NULL", Integer.class);
+            if (undated != null && undated > 0) {
+                log.warn("{} transactions without a date were left in {}", undated, legacy);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + legacy);
+                // LIKE ... INCLUDING IDENTITY had to pick a new name while the old sequence existed.
+                // A plain sequence default (Hibernate-managed ids) is shared as is and has no owner.
+                String sequence = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence(?, 'id')", String.class, TABLE);
+                if (sequence != null) {
+                    jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RENAME TO " + TABLE + "_id_seq");
+                }
+            }
+            // Continue identity ids after the migrated rows (no-op without an owned sequence)
+            jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('" + TABLE + "', 'id'),"
+                    + " GREATEST((SELECT MAX(id) FROM " + TABLE + "), 1))");
+            log.info("Converted {} to monthly range partitions, {} rows migrated", TABLE, moved);
+        });
+    }
+    
+    private List<LocalDate> loadPartitionMonths() {
+        List<LocalDate> months = new ArrayList<>();
+        for (PartitionInfo partition : listPartitions()) {
+            if (partition.monthStart() != null) {
+                months.add(partition.monthStart());
+            }
+        }
+        return months;
+    }
+    
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+    
+    static String partitionName(LocalDate month) {
+        return PARTITION_PREFIX + month.format(SUFFIX);
+    }
+    
+    private static LocalDate monthOf(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX) || partitionName.length() != PARTITION_PREFIX.length() + 6) {
+            return null; // default partition or one not managed here
+        }
+        String suffix = partitionName.substring(PARTITION_PREFIX.length());
+        return LocalDate.of(Integer.parseInt(suffix.substring(0, 4)), Integer.parseInt(suffix.substring(4)), 1);
+    }
+}
@@ -0,0 +1,145 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import com.erp.repository.TransactionRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Maintains the transaction_rollups table at (month, department, product, type) grain.
+ *
+ * Imports call {@link #apply(List)} inside their own transaction so raw rows and
+ * buckets commit together; {@link #rebuild()} recomputes everything from the raw table.
+ */
+@Service
+public class TransactionRollupService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransactionRollupService.class);
+    
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator.comparing(BucketKey::monthStart)
+            .thenComparing(BucketKey::department)
+            .thenComparing(BucketKey::product)
+            .thenComparing(BucketKey::transactionType);
+    
+    private final TransactionRollupRepository rollupRepository;
+    private final boolean rebuildOnStartup;
+    
+    private volatile boolean ready;
+    
+    public TransactionRollupService(TransactionRollupRepository rollupRepository,
+                                    @Value("${analytics.rollup.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.rollupRepository = rollupRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void onStartup() {
+        if (rebuildOnStartup) {
+            // Rows seeded outside the importer (data.sql, manual loads) are not in the rollup yet
+            int buckets = rebuildBuckets();
+            log.info("Transaction rollup rebuilt with {} buckets", buckets);
+        }
+        ready = true;
+    }
+    
+    /**
+     * True once the rollup reflects the raw table and can serve analytics.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Upserts the bucket totals accumulated in {@code delta}. Runs in the import's transaction.
+     */
+    @Transactional
+    public void apply(Delta delta) {
+        delta.buckets.forEach((key, bucket) -> rollupRepository.upsertBucket(key.monthStart(), key.department(),
+                key.product(), key.transactionType(), amount(bucket.revenue), amount(bucket.cost),
+                amount(bucket.profit), bucket.count));
+    }
+    
+    @Transactional
+    public int rebuild() {
+        int buckets = rebuildBuckets();
+        ready = true;
+        return buckets;
+    }
+    
+    @Transactional
+    public void clear() {
+        rollupRepository.deleteAllInBatch();
+    }
+    
+    /**
+     * Removes buckets for months before {@code monthStart} (retention).
+     */
+    @Transactional
+    public int purgeBefore(LocalDate monthStart) {
+        return rollupRepository.deleteBefore(monthStart);
+    }
+    
+    private int rebuildBuckets() {
+        rollupRepository.deleteAllInBatch();
+        return rollupRepository.insertFromTransactions();
+    }
+    
+    private static BigDecimal amount(long cents) {
+        return Money.toBigDecimal(cents, Money.DEFAULT_SCALE);
+    }
+    
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+    
+    /**
+     * Bucket totals for the rows of one import, fed chunk by chunk. Its size grows with the
+     * number of distinct buckets, not with the number of rows.
+     */
+    public static final class Delta {
+        private final Map<BucketKey, Bucket> buckets = new TreeMap<>(BUCKET_ORDER); // stable lock order across imports
+        
+        public void addAll(List<Transaction> transactions) {
+            for (Transaction t : transactions) {
+                if (t.getTransactionDate() == null) {
+                    continue;
+                }
+                BucketKey key = new BucketKey(t.getTransactionDate().withDayOfMonth(1), orEmpty(t.getDepartment()),
+                        orEmpty(t.getProduct()), orEmpty(t.getTransactionType()));
+                buckets.computeIfAbsent(key, k -> new Bucket()).add(t);
+            }
+        }
+    }
+    
+    private record BucketKey(LocalDate monthStart, String department, String product, String transactionType) {}
+    
+    // Sums in cents: exact, and no intermediate BigDecimal per row
+    private static final class Bucket {
+        private long revenue;
+        private long cost;
+        private long profit;
+        private long count;
+        
+        void add(Transaction t) {
+            revenue = Math.addExact(revenue, orZero(t.getRevenueUnits()));
+            cost = Math.addExact(cost, orZero(t.getCostUnits()));
+            profit = Math.addExact(profit, orZero(t.getProfitUnits()));
+            count++;
+        }
+        
+        private static long orZero(long units) {
+            return units != Transaction.NO_AMOUNT ? units : 0;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import com.erp.entity.TransactionSketch;
+import com.erp.repository.TransactionRepository;
+import com.erp.repository.TransactionSketchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Maintains per-(month, department) sketches and answers approximate analytics from them.
+ *
+ * A query merges one small sketch per month and department in range, so its cost does not
+ * depend on how many transactions the range covers. Ranges are widened to whole months.
+ */
+@Service
+public class TransactionSketchService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransactionSketchService.class);
+    
+    private final TransactionSketchRepository sketchRepository;
+    private final TransactionRepository transactionRepository;
+    private final boolean rebuildOnStartup;
+    
+    public TransactionSketchService(TransactionSketchRepository sketchRepository,
+                                    TransactionRepository transactionRepository,
+                                    @Value("${analytics.sketches.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.sketchRepository = sketchRepository;
+        this.transactionRepository = transactionRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void onStartup() {
+        if (rebuildOnStartup) {
+            int buckets = rebuild();
+            log.info("Transaction sketches rebuilt with {} buckets", buckets);
+        }
+    }
+    
+    /**
+     * Folds the sketches accumulated in {@code delta} into the stored ones. Runs in the import's
+     * transaction so rows and sketches commit together.
+     */
+    @Transactional
+    public void apply(Delta delta) {
+        Map<BucketKey, Sketches> buckets = new HashMap<>(delta.buckets);
+        if (buckets.isEmpty()) {
+            return;
+        }
+        
+        Set<LocalDate> months = new HashSet<>();
+        buckets.keySet().forEach(key -> months.add(key.monthStart()));
+        List<TransactionSketch> rows = new ArrayList<>();
+        for (TransactionSketch existing : sketchRepository.findForUpdateByMonthStartIn(months)) {
+            Sketches added = buckets.remove(new BucketKey(existing.getMonthStart(), existing.getDepartment()));
+            if (added != null) {
+                Sketches merged = Sketches.from(existing);
+                merged.merge(added);
+                merged.writeTo(existing);
+                rows.add(existing);
+            }
+        }
+        buckets.forEach((key, sketches) -> rows.add(sketches.toEntity(key)));
+        sketchRepository.saveAll(rows);
+    }
+    
+    /**
+     * Recomputes every sketch from the raw table.
+     *
+     * @return number of (month, department) buckets written
+     */
+    @Transactional
+    public int rebuild() {
+        sketchRepository.deleteAllInBatch();
+        Map<BucketKey, Sketches> buckets = new HashMap<>();
+        try (Stream<Object[]> rows = transactionRepository.streamSketchRows()) {
+            rows.forEach(row -> {
+                BucketKey key = new BucketKey(((LocalDate) row[0]).withDayOfMonth(1), orEmpty((String) row[1]));
+                buckets.computeIfAbsent(key, k -> new Sketches())
+                        .add((String) row[2], (BigDecimal) row[3], (BigDecimal) row[4]);
+            });
+        }
+        List<TransactionSketch> entities = new ArrayList<>(buckets.size());
+        buckets.forEach((key, sketches) -> entities.add(sketches.toEntity(key)));
+        sketchRepository.saveAll(entities);
+        return entities.size();
+    }
+    
+    @Transactional
+    public void clear() {
+        sketchRepository.deleteAllInBatch();
+    }
+    
+    /**
+     * Removes sketches for months before {@code monthStart} (retention).
+     */
+    @Transactional
+    public int purgeBefore(LocalDate monthStart) {
+        return sketchRepository.deleteBefore(monthStart);
+    }
+    
+    /**
+     * Merges the stored sketches for the range into per-department, per-month and overall summaries.
+     */
+    @Transactional(readOnly = true)
+    public ApproximateAnalytics summarize(LocalDate startDate, LocalDate endDate, String department) {
+        LocalDate fromMonth = startDate != null ? startDate.withDayOfMonth(1) : null;
+        LocalDate toMonth = endDate != null ? endDate.withDayOfMonth(1) : null;
+        
+        Map<String, Sketches> byDepartment = new TreeMap<>();
+        Map<LocalDate, Sketches> byMonth = new TreeMap<>();
+        Sketches overall = new Sketches();
+        for (TransactionSketch row : sketchRepository.findInRange(fromMonth, toMonth, department)) {
+            Sketches sketches = Sketches.from(row);
+            byDepartment.computeIfAbsent(row.getDepartment(), k -> new Sketches()).merge(sketches);
+            byMonth.computeIfAbsent(row.getMonthStart(), k -> new Sketches()).merge(sketches);
+            overall.merge(sketches);
+        }
+        
+        List<SketchSummary> departments = new ArrayList<>(byDepartment.size());
+        byDepartment.forEach((name, sketches) -> departments.add(sketches.summary(name.isEmpty() ? null : name)));
+        List<SketchSummary> months = new ArrayList<>(byMonth.size());
+        byMonth.forEach((month, sketches) -> months.add(sketches.summary(
+                String.format("%04d-%02d", month.getYear(), month.getMonthValue())))); // YYYY-MM
+        return new ApproximateAnalytics(departments, months, overall.summary("overall"));
+    }
+    
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+    
+    public record ApproximateAnalytics(List<SketchSummary> departments, List<SketchSummary> months,
+                                       SketchSummary overall) {}
+    
+    /**
+     * Estimates for one group. Percentiles are NaN when the group has no values.
+     */
+    public record SketchSummary(String name, long transactions, long uniqueCustomers,
+                                double revenueP50, double revenueP95, double revenueP99,
+                                double profitP50, double profitP95, double profitP99) {}
+    
+    /**
+     * Sketches for the rows of one import, fed chunk by chunk; one small sketch set per
+     * (month, department) however many rows arrive.
+     */
+    public static final class Delta {
+        private final Map<BucketKey, Sketches> buckets = new HashMap<>();
+        
+        public void addAll(List<Transaction> transactions) {
+            for (Transaction t : transactions) {
+                if (t.getTransactionDate() == null) {
+                    continue;
+                }
+                BucketKey key = new BucketKey(t.getTransactionDate().withDayOfMonth(1), orEmpty(t.getDepartment()));
+                buckets.computeIfAbsent(key, k -> new Sketches()).add(t.getCustomerName(), t.getRevenueUnits(), t.getProfitUnits());
+            }
+        }
+    }
+    
+    private record BucketKey(LocalDate monthStart, String department) {}
+    
+    private static final class Sketches {
+        private final HyperLogLog customers;
+        private final TDigest revenue;
+        private final TDigest profit;
+        private long count;
+        
+        Sketches() {
+            this(new HyperLogLog(), new TDigest(), new TDigest(), 0);
+        }
+        
+        private Sketches(HyperLogLog customers, TDigest revenue, TDigest profit, long count) {
+            this.customers = customers;
+            this.revenue = revenue;
+            this.profit = profit;
+            this.count = count;
+        }
+        
+        static Sketches from(TransactionSketch row) {
+            return new Sketches(HyperLogLog.fromBytes(row.getCustomersHll()), TDigest.fromBytes(row.getRevenueDigest()),
+                    TDigest.fromBytes(row.getProfitDigest()), row.getTransactionCount());
+        }
+        
+        void add(String customer, BigDecimal revenueValue, BigDecimal profitValue) {
+            customers.add(customer);
+            if (revenueValue != null) revenue.add(revenueValue.doubleValue());
+            if (profitValue != null) profit.add(profitValue.doubleValue());
+            count++;
+        }
+        
+        // Same for amounts in cents, as imported rows hold them
+        void add(String customer, long revenueUnits, long profitUnits) {
+            customers.add(customer);
+            if (revenueUnits != Transaction.NO_AMOUNT) revenue.add(Money.toDouble(revenueUnits, Money.DEFAULT_SCALE));
+            if (profitUnits != Transaction.NO_AMOUNT) profit.add(Money.toDouble(profitUnits, Money.DEFAULT_SCALE));
+            count++;
+        }
+        
+        void merge(Sketches other) {
+            customers.merge(other.customers);
+            revenue.merge(other.revenue);
+            profit.merge(other.profit);
+            count += other.count;
+        }
+        
+        TransactionSketch toEntity(BucketKey key) {
+            TransactionSketch entity = new TransactionSketch();
+            entity.setMonthStart(key.monthStart());
+            entity.setDepartment(key.department());
+            writeTo(entity);
+            return entity;
+        }
+        
+        void writeTo(TransactionSketch entity) {
+            entity.setTransactionCount(count);
+            entity.setCustomersHll(customers.toBytes());
+            entity.setRevenueDigest(revenue.toBytes());
+            entity.setProfitDigest(profit.toBytes());
+        }
+        
+        SketchSummary summary(String name) {
+            return new SketchSummary(name, count, customers.estimate(),
+                    revenue.quantile(0.5), revenue.quantile(0.95), revenue.quantile(0.99),
+                    profit.quantile(0.5), profit.quantile(0.95), profit.quantile(0.99));
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.erp.service;
+
+import com.erp.entity.Money;
+import com.erp.entity.Transaction;
+import com.erp.repository.ImportRejectedRowRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Set-based import path. The raw CSV fields are copied into an UNLOGGED staging table; type, range and
+ * presence checks then run as one UPDATE over the whole table, and the clean rows are normalized
+ * (trimmed, departments matched to their known spelling), enriched (missing profit from revenue and cost)
+ * and moved into transactions with a single {@code INSERT ... SELECT ... ON CONFLICT DO NOTHING}, which
+ * also skips rows already imported and repeats within the file.
+ *
+ * Everything runs in the caller's transaction, staging table included, so an import commits or disappears
+ * as a whole. Rejected rows are copied to import_rejected_rows with their raw fields, kept for
+ * {@code import.staging.rejects-retention}, and can be downloaded as CSV.
+ *
+ * Each row is written twice, to the staging table and then to transactions, and read once more by the
+ * checks, so a clean file loads at roughly two thirds of the rate of the COPY mode. That is the price of
+ * checks that see the whole file, rejects kept with their raw fields and an all-or-nothing load, for files
+ * whose rejects need reviewing; COPY stays the fast path for trusted ones.
+ */
+@Service
+public class TransactionStagingService {
+    
+    static final int FIELDS = 10;
+    
+    private static final String RAW_COLUMNS = "transaction_date, customer_name, transaction_type, revenue, cost,"
+            + " product, order_status, department, profit, forecasted_revenue";
+    private static final String CSV_HEADER = "line,column,reason," + RAW_COLUMNS.replace(" ", "");
+    private static final String AMOUNT = "numeric(38,2)";
+    
+    // Checked in order; a row is reported with the first check it fails. Rows short of fields fail the
+    // first one, so the others only see NULL fields where it has already matched
+    private static final List<Check> CHECKS = List.of(
+            new Check(null, "fields < " + FIELDS, "'Expected " + FIELDS + " columns, found ' || fields"),
+            new Check(1, "NOT " + isDate("transaction_date"),
+                    "'transaction_date: invalid date \"' || coalesce(transaction_date, '') || '\"'"),
+            // Valid dates are yyyy-MM-dd, so they compare as text; the upper bound is ten years from now
+            new Check(1, "btrim(transaction_date) COLLATE \"C\" NOT BETWEEN '1900-01-01' AND '%2$s'",
+                    "'transaction_date: out of range'"),
+            required(2, "customer_name"),
+            required(3, "transaction_type"),
+            required(4, "revenue"),
+            invalidAmount(4, "revenue"),
+            negative(4, "revenue"),
+            required(5, "cost"),
+            invalidAmount(5, "cost"),
+            negative(5, "cost"),
+            required(6, "product"),
+            invalidAmount(9, "profit"),
+            invalidAmount(10, "forecasted_revenue"));
+    
+    private static final String VALIDATE_SQL = "UPDATE %1$s SET"
+            + CHECKS.stream().map(c -> " WHEN " + c.condition() + " THEN " + c.column())
+                    .collect(Collectors.joining("", " reject_column = CASE", " END,"))
+            + CHECKS.stream().map(c -> " WHEN " + c.condition() + " THEN " + c.reason())
+                    .collect(Collectors.joining("", " reject_reason = CASE", " END"))
+            + CHECKS.stream().map(c -> "(" + c.condition() + ")").collect(Collectors.joining(" OR ", " WHERE ", ""));
+    
+    // Departments are matched once per distinct spelling in the file: runs of whitespace collapsed, then the
+    // spelling already in the rollups wins over a different case. OFFSET 0 keeps the matching from being pulled
+    // up into the join, which would run the regular expression on every row. Of two repeats in the file the
+    // first is kept, as a freshly copied table is read back in file order
+    private static final String MERGE_SQL = "INSERT INTO transactions (" + ImportDeduplicator.COLUMNS + ")"
+            + " SELECT transaction_date, customer_name, transaction_type, revenue, cost, product, order_status,"
+            + " department, profit, forecasted_revenue, coalesce(fingerprint, " + TransactionFingerprint.SQL + ")"
+            + " FROM (SELECT s.fingerprint, CAST(btrim(s.transaction_date) AS date) AS transaction_date,"
+            + " btrim(s.customer_name) AS customer_name, btrim(s.transaction_type) AS transaction_type,"
+            + " CAST(btrim(s.revenue) AS " + AMOUNT + ") AS revenue, CAST(btrim(s.cost) AS " + AMOUNT + ") AS cost,"
+            + " btrim(s.product) AS product, btrim(s.order_status) AS order_status, d.department,"
+            + " coalesce(CAST(NULLIF(btrim(s.profit), '') AS " + AMOUNT + "),"
+            + " CAST(btrim(s.revenue) AS " + AMOUNT + ") - CAST(btrim(s.cost) AS " + AMOUNT + ")) AS profit,"
+            + " coalesce(CAST(NULLIF(btrim(s.forecasted_revenue), '') AS " + AMOUNT + "), 0) AS forecasted_revenue"
+            + " FROM %1$s s JOIN (SELECT r.raw, coalesce(k.department, r.collapsed) AS department"
+            + " FROM (SELECT raw, regexp_replace(btrim(raw), '\\s+', ' ', 'g') AS collapsed"
+            + " FROM (SELECT DISTINCT department AS raw FROM %1$s) x) r"
+            + " LEFT JOIN (SELECT DISTINCT ON (lower(department)) department FROM transaction_rollups"
+            + " WHERE department <> '' ORDER BY lower(department), department) k ON lower(k.department) = lower(r.collapsed)"
+            + " OFFSET 0) d"
+            + " ON d.raw = s.department"
+            + " WHERE s.reject_reason IS NULL) v"
+            + " ON CONFLICT DO NOTHING RETURNING transaction_date, customer_name, transaction_type, " + units("revenue")
+            + ", " + units("cost") + ", product, order_status, department, " + units("profit") + ", "
+            + units("forecasted_revenue") + ", fingerprint";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportRejectedRowRepository rejectedRepository;
+    private final Duration rejectsRetention;
+    
+    public TransactionStagingService(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     ImportRejectedRowRepository rejectedRepository,
+                                     @Value("${import.staging.rejects-retention:P7D}") Duration rejectsRetention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rejectedRepository = rejectedRepository;
+        this.rejectsRetention = rejectsRetention;
+    }
+    
+    /**
+     * Creates the staging table of one import and drops expired rejected rows.
+     *
+     * @return the table name
+     */
+    String create(String importId) {
+        rejectedRepository.deleteCreatedBefore(LocalDateTime.now().minus(rejectsRetention));
+        String table = "transactions_staging_" + importId.replaceAll("[^A-Za-z0-9]", "").toLowerCase();
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE " + table + " (line bigint NOT NULL, fields integer NOT NULL, fingerprint bytea, "
+                + RAW_COLUMNS.replace(",", " text,") + " text, reject_column integer, reject_reason text)");
+        return table;
+    }
+    
+    void drop(String table) {
+        jdbcTemplate.execute("DROP TABLE " + table);
+    }
+    
+    /**
+     * Starts a COPY of {@link #encode encoded} rows into {@code table} on the caller's connection.
+     */
+    static Copy openCopy(Connection connection, String table) throws SQLException {
+        return new Copy(connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + table + " (line, fields, fingerprint, " + RAW_COLUMNS + ") FROM STDIN WITH (FORMAT csv)"));
+    }
+    
+    /**
+     * One staging row in COPY CSV format: the line, the field count, the fingerprint and the first
+     * {@value #FIELDS} fields, quoted so that empty fields stay empty strings and missing ones become NULL.
+     * Runs on the parser threads, so the consumer only forwards bytes and the merge only computes the
+     * fingerprints of rows the Java parser could not read.
+     */
+    static byte[] encode(CsvRow row) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(160);
+        byte[] text = (row.line() + "," + row.size() + ",").getBytes(StandardCharsets.US_ASCII);
+        out.write(text, 0, text.length);
+        byte[] fingerprint = fingerprint(row);
+        if (fingerprint != null) {
+            text = ("\\x" + HexFormat.of().formatHex(fingerprint)).getBytes(StandardCharsets.US_ASCII);
+            out.write(text, 0, text.length);
+        }
+        for (int i = 0; i < FIELDS; i++) {
+            out.write(',');
+            if (i < row.size()) {
+                row.writeQuoted(i, out);
+            }
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+    
+    // As the clean row will hold it; anything the parser rejects is left to the checks and the SQL fingerprint
+    private static byte[] fingerprint(CsvRow row) {
+        if (row.size() < FIELDS) {
+            return null;
+        }
+        try {
+            long revenue = row.units(3, Money.DEFAULT_SCALE);
+            long cost = row.units(4, Money.DEFAULT_SCALE);
+            long profit = row.isEmpty(8) ? revenue - cost : row.units(8, Money.DEFAULT_SCALE);
+            return TransactionFingerprint.of(row.date(0), row.text(1), row.text(5), row.text(2), revenue, cost, profit);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Marks every staged row that fails a check with its column and reason.
+     *
+     * @return rows rejected
+     */
+    long validate(String table) {
+        return jdbcTemplate.update(String.format(VALIDATE_SQL, table, LocalDate.now().plusYears(10)));
+    }
+    
+    /**
+     * Moves the clean rows into transactions in one statement and hands the rows actually inserted to
+     * {@code inserted}, {@code chunkSize} at a time, as they stream back.
+     *
+     * @return rows inserted
+     */
+    long merge(String table, int chunkSize, Consumer<List<Transaction>> inserted) {
+        long[] count = new long[1];
+        List<List<Transaction>> chunk = new ArrayList<>(1);
+        chunk.add(new ArrayList<>(chunkSize));
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(String.format(MERGE_SQL, table));
+            statement.setFetchSize(chunkSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            Transaction t = new Transaction();
+            t.setTransactionDate(rs.getObject(1, LocalDate.class));
+            t.setCustomerName(rs.getString(2));
+            t.setTransactionType(rs.getString(3));
+            t.setRevenueUnits(units(rs, 4));
+            t.setCostUnits(units(rs, 5));
+            t.setProduct(rs.getString(6));
+            t.setOrderStatus(rs.getString(7));
+            t.setDepartment(rs.getString(8));
+            t.setProfitUnits(units(rs, 9));
+            t.setForecastedRevenueUnits(units(rs, 10));
+            t.setFingerprint(rs.getBytes(11));
+            chunk.get(0).add(t);
+            count[0]++;
+            if (chunk.get(0).size() == chunkSize) {
+                inserted.accept(chunk.get(0));
+                chunk.set(0, new ArrayList<>(chunkSize));
+            }
+        });
+        if (!chunk.get(0).isEmpty()) {
+            inserted.accept(chunk.get(0));
+        }
+        return count[0];
+    }
+    
+    /**
+     * The first {@code limit} rejected rows in file order: those the checks rejected and the malformed
+     * records the parser reported.
+     */
+    List<DataImportService.RejectedRow> rejectedRows(String table, List<DataImportService.RejectedRow> malformed, int limit) {
+        List<DataImportService.RejectedRow> rows = new ArrayList<>(malformed);
+        jdbcTemplate.query("SELECT line, reject_column, reject_reason FROM " + table
+                + " WHERE reject_reason IS NOT NULL ORDER BY line LIMIT " + limit,
+                (RowCallbackHandler) rs -> rows.add(new DataImportService.RejectedRow(rs.getLong(1),
+                        (Integer) rs.getObject(2), rs.getString(3))));
+        rows.sort(Comparator.comparingLong(DataImportService.RejectedRow::line));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+    
+    /**
+     * Keeps the rejected rows of an import for download. Malformed records have no fields to keep, and only
+     * those the parser reported in detail are kept.
+     */
+    void retainRejects(String table, String importId, List<DataImportService.RejectedRow> malformed) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO import_rejected_rows (import_id, line, column_number, reason, "
+                + RAW_COLUMNS + ", created_at) SELECT ?, line, reject_column, reject_reason, " + RAW_COLUMNS
+                + ", ? FROM " + table + " WHERE reject_reason IS NOT NULL", importId, now);
+        jdbcTemplate.batchUpdate("INSERT INTO import_rejected_rows (import_id, line, column_number, reason, created_at)"
+                + " VALUES (?, ?, ?, ?, ?)", malformed, malformed.size() + 1, (statement, row) -> {
+            statement.setString(1, importId);
+            statement.setLong(2, row.line());
+            statement.setObject(3, row.column(), Types.INTEGER);
+            statement.setString(4, row.reason());
+            statement.setObject(5, now);
+        });
+    }
+    
+    public boolean hasRejects(String importId) {
+        return rejectedRepository.existsByImportId(importId);
+    }
+    
+    /**
+     * Writes the rejected rows of an import as CSV, in file order: line, column and reason, then the raw
+     * fields in the import's column order.
+     *
+     * @return rows written
+     */
+    public long writeRejects(String importId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long[] rows = new long[1];
+        // A cursor needs a transaction; the fetch size keeps memory flat however many rows were rejected
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT line, column_number, reason, "
+                    + RAW_COLUMNS + " FROM import_rejected_rows WHERE import_id = ? ORDER BY line");
+            statement.setString(1, importId);
+            statement.setFetchSize(1000);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                writer.write(Long.toString(rs.getLong(1)));
+                writer.write(',');
+                Object column = rs.getObject(2);
+                if (column != null) {
+                    writer.write(column.toString());
+                }
+                for (int i = 3; i <= 3 + FIELDS; i++) {
+                    writer.write(',');
+                    writeCsvField(writer, rs.getString(i));
+                }
+                writer.write('\n');
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        writer.flush();
+        return rows[0];
+    }
+    
+    public void clearRejects() {
+        rejectedRepository.truncate();
+    }
+    
+    /**
+     * Buffers encoded rows into COPY data messages. {@link #finish()} completes the copy,
+     * {@link #close()} without finishing cancels it.
+     */
+    static final class Copy implements AutoCloseable {
+        private final CopyIn copyIn;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private boolean finished;
+        
+        private Copy(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+        
+        void write(byte[] row) throws SQLException {
+            if (position + row.length > buffer.length) {
+                flush();
+            }
+            if (row.length > buffer.length) {
+                copyIn.writeToCopy(row, 0, row.length);
+                return;
+            }
+            System.arraycopy(row, 0, buffer, position, row.length);
+            position += row.length;
+        }
+        
+        /**
+         * @return rows copied
+         */
+        long finish() throws SQLException {
+            flush();
+            finished = true;
+            return copyIn.endCopy();
+        }
+        
+        @Override
+        public void close() throws SQLException {
+            if (!finished && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+        
+        private void flush() throws SQLException {
+            if (position > 0) {
+                copyIn.writeToCopy(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+    
+    private record Check(Integer column, String condition, String reason) {}
+    
+    // Amounts come back as minor units, read without a BigDecimal per value
+    private static String units(String column) {
+        return "CAST(" + column + " * " + Money.rescale(1, 0, Money.DEFAULT_SCALE) + " AS bigint)";
+    }
+    
+    private static long units(ResultSet rs, int column) throws SQLException {
+        long units = rs.getLong(column);
+        return rs.wasNull() ? Transaction.NO_AMOUNT : units;
+    }
+    
+    private static Check required(int column, String field) {
+        return new Check(column, "btrim(" + field + ") = ''", "'" + field + ": required'");
+    }
+    
+    // Blank optional amounts are filled in later; blank required ones fail required() first
+    private static Check invalidAmount(int column, String field) {
+        return new Check(column, "NOT " + isAmount(field) + " AND ltrim(" + field + ") <> ''",
+                "'" + field + ": invalid amount \"' || " + field + " || '\"'");
+    }
+    
+    private static Check negative(int column, String field) {
+        return new Check(column, "CASE WHEN ltrim(" + field + ") LIKE '-%%' AND " + isAmount(field)
+                + " THEN CAST(btrim(" + field + ") AS " + AMOUNT + ") < 0 ELSE false END", "'" + field + ": must not be negative'");
+    }
+    
+    // ISO yyyy-MM-dd only: PostgreSQL would also take other formats, read according to DateStyle. Checked as
+    // text so that no input can make the statement fail (PostgreSQL 15 has no pg_input_is_valid); the CASE
+    // keeps the year from being read before it is known to be digits
+    private static String isDate(String field) {
+        String date = "btrim(" + field + ")";
+        String month = "substr(" + date + ", 6, 2) COLLATE \"C\"";
+        String year = "CAST(substr(" + date + ", 1, 4) AS integer)";
+        String leap = "(" + year + " %% 4 = 0 AND (" + year + " %% 100 <> 0 OR " + year + " %% 400 = 0))";
+        return "(CASE WHEN " + date + " LIKE '____-__-__' AND translate(" + date + ", '0123456789', '') = '--'"
+                + " THEN " + month + " BETWEEN '01' AND '12' AND substr(" + date + ", 9, 2) COLLATE \"C\" BETWEEN '01' AND"
+                + " CASE WHEN " + month + " = '02' THEN CASE WHEN " + leap + " THEN '29' ELSE '28' END"
+                + " WHEN " + month + " IN ('04', '06', '09', '11') THEN '30' ELSE '31' END"
+                + " ELSE false END)";
+    }
+    
+    // Decimals as Money.parseUnits reads them (no NaN, Infinity, hexadecimal or underscore forms, which numeric
+    // also accepts) within the range of long cents, which the merge reads them back as. The cheap character
+    // test runs first; the cast only sees text the pattern has matched, whose exponent keeps it in numeric's range
+    private static String isAmount(String field) {
+        String amount = "btrim(" + field + ")";
+        return "(CASE WHEN ltrim(" + field + ", ' 0123456789.eE+-') = ''"
+                + " AND " + amount + " ~ '^[+-]?([0-9]+[.]?[0-9]*|[.][0-9]+)([eE][+-]?[0-9]{1,3})?$'"
+                + " THEN abs(round(CAST(" + amount + " AS numeric), " + Money.DEFAULT_SCALE + ")) <= "
+                + Money.toBigDecimal(Long.MAX_VALUE, Money.DEFAULT_SCALE).toPlainString()
+                + " ELSE false END)";
+    }
+    
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            w.write('"');
+            w.write(value.replace("\"", "\"\""));
+            w.write('"');
+        } else {
+            w.write(value);
+        }
+    }
+}
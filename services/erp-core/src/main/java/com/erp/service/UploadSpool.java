@@ -0,0 +1,206 @@
+package com.erp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps uploads on disk and bounds how many bytes of them are in flight.
+ *
+ * Multipart bodies are written by the servlet container straight into {@code import.upload.spool-dir}
+ * (see application.properties), and {@link #spool} moves the part to a file the importers map, so an upload
+ * is never held in memory. Each upload reserves its size from a global budget of
+ * {@code import.upload.max-in-flight} bytes before its body is read and keeps it until the request ends;
+ * uploads that do not fit wait in arrival order, and are turned away once {@code max-queued} are waiting
+ * or they have waited {@code queue-timeout}.
+ */
+@Service
+public class UploadSpool {
+    
+    private final Path spoolDir;
+    private final long maxRequestBytes;
+    private final long maxInFlightBytes;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final Duration retryAfter;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long inFlightBytes;
+    
+    private final Counter tooLarge;
+    private final Counter overBudget;
+    private final Timer queueWait;
+    
+    public UploadSpool(MeterRegistry meterRegistry,
+                       @Value("${import.upload.spool-dir:${java.io.tmpdir}/erp-upload-spool}") Path spoolDir,
+                       @Value("${import.upload.max-request-size:1GB}") DataSize maxRequestSize,
+                       @Value("${import.upload.max-in-flight:2GB}") DataSize maxInFlight,
+                       @Value("${import.upload.max-queued:8}") int maxQueued,
+                       @Value("${import.upload.queue-timeout:PT30S}") Duration queueTimeout,
+                       @Value("${import.upload.retry-after:PT30S}") Duration retryAfter) throws IOException {
+        this.spoolDir = Files.createDirectories(spoolDir);
+        this.maxInFlightBytes = maxInFlight.toBytes();
+        // A single upload always fits the budget on its own
+        this.maxRequestBytes = Math.min(maxRequestSize.toBytes(), maxInFlightBytes);
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.retryAfter = retryAfter;
+        
+        this.tooLarge = Counter.builder("erp.upload.rejected")
+                .description("Uploads turned away before their body was read")
+                .tag("reason", "too_large")
+                .register(meterRegistry);
+        this.overBudget = Counter.builder("erp.upload.rejected")
+                .description("Uploads turned away before their body was read")
+                .tag("reason", "over_budget")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("erp.upload.queue.wait")
+                .description("Time uploads waited for the in-flight byte budget")
+                .register(meterRegistry);
+        Gauge.builder("erp.upload.inflight.bytes", this, UploadSpool::inFlightBytes)
+                .description("Bytes reserved by uploads being received or imported")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("erp.upload.queued", this, UploadSpool::queued)
+                .description("Uploads waiting for the in-flight byte budget")
+                .register(meterRegistry);
+        Gauge.builder("erp.upload.spool.bytes", this, UploadSpool::spooledBytes)
+                .description("Bytes of upload files in the spool directory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    public long maxRequestBytes() {
+        return maxRequestBytes;
+    }
+    
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+    
+    /**
+     * Counts an upload refused for its size alone.
+     */
+    public void rejectTooLarge() {
+        tooLarge.increment();
+    }
+    
+    /**
+     * Reserves {@code bytes} of the in-flight budget, waiting behind earlier uploads for up to
+     * {@code import.upload.queue-timeout}. The reservation must be closed when the request ends.
+     *
+     * @throws RejectedExecutionException if {@code max-queued} uploads are already waiting or the wait times out
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        long needed = Math.min(bytes, maxInFlightBytes);
+        Object ticket = new Object();
+        long started = System.nanoTime();
+        synchronized (this) {
+            if (waiting.isEmpty() && inFlightBytes + needed <= maxInFlightBytes) {
+                inFlightBytes += needed;
+                return new Reservation(needed);
+            }
+            if (waiting.size() >= maxQueued) {
+                overBudget.increment();
+                throw new RejectedExecutionException("Too many uploads in progress, retry later");
+            }
+            waiting.addLast(ticket);
+            try {
+                long deadline = started + queueTimeout.toNanos();
+                while (waiting.peekFirst() != ticket || inFlightBytes + needed > maxInFlightBytes) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        overBudget.increment();
+                        throw new RejectedExecutionException("Too many uploads in progress, retry later");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                inFlightBytes += needed;
+            } finally {
+                waiting.remove(ticket);
+                // The next upload in line may fit now
+                notifyAll();
+                queueWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            return new Reservation(needed);
+        }
+    }
+    
+    /**
+     * Moves the upload to a spool file of its own, for the caller to delete. The container has already
+     * written it to the spool directory, so this is a rename.
+     */
+    public Path spool(MultipartFile file) throws IOException {
+        Path spool = Files.createTempFile(spoolDir, "erp-import-", ".csv");
+        try {
+            // Unlike transferTo(Path), which copies, the File variant lets the container rename its part file
+            file.transferTo(spool.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        return spool;
+    }
+    
+    private synchronized void release(long bytes) {
+        inFlightBytes -= bytes;
+        notifyAll();
+    }
+    
+    private synchronized long inFlightBytes() {
+        return inFlightBytes;
+    }
+    
+    private synchronized int queued() {
+        return waiting.size();
+    }
+    
+    private double spooledBytes() {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    // Deleted while listing
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+    
+    /**
+     * Bytes held from the in-flight budget; closing gives them back.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released;
+        
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+        
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(bytes);
+            }
+        }
+    }
+}
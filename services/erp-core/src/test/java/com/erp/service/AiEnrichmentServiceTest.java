@@ -0,0 +1,131 @@
+package com.erp.service;
+
+import com.erp.entity.Transaction;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AI enrichment against a stub engine on a local port: enriched rows when it answers, direct parsing
+ * when it fails or stalls, and the breaker opening after repeated failures.
+ */
+class AiEnrichmentServiceTest {
+    
+    private static final String CSV = "transaction_date,customer_name,transaction_type,revenue,cost,product,order_status,department,profit,forecasted_revenue\n"
+            + "2024-01-05,Alice,Sale,100.50,40,Widget,Completed,Sales,60.50,0\n"
+            + "2024-01-06,Bob,Sale,20,5,Gadget,Completed,Sales,15,0\n";
+    
+    private static final String ENGINE_RESPONSE = "{\"success\":true,\"valid_rows\":2,\"errors\":[],\"processed_data\":["
+            + "{\"Date\":\"2024-01-05\",\"Customer\":\"Alice\"},{\"Date\":\"2024-01-06\",\"Customer\":\"Bob\"}]}";
+    
+    @TempDir
+    Path dir;
+    
+    private HttpServer server;
+    
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+    
+    @Test
+    void usesEngineRowsWhenItAnswers() throws Exception {
+        AiEnrichmentService service = service(new RestTemplateBuilder(),
+                exchange -> respond(exchange, 200, ENGINE_RESPONSE), Duration.ofSeconds(5), 5);
+        
+        assertThat(customers(service)).containsExactly("engine:Alice", "engine:Bob");
+    }
+    
+    @Test
+    void parsesDirectlyAndOpensBreakerWhenEngineFails() throws Exception {
+        AiEnrichmentService service = service(new RestTemplateBuilder(),
+                exchange -> respond(exchange, 500, "{}"), Duration.ofSeconds(5), 2);
+        
+        assertThat(customers(service)).containsExactly("Alice", "Bob");
+        assertThat(service.isAvailable()).isFalse();
+    }
+    
+    @Test
+    void abandonsCallThatTricklesPastTheTimeout() throws Exception {
+        // Each byte arrives well within the read timeout, which HttpURLConnection applies per read
+        RestTemplateBuilder client = new RestTemplateBuilder().requestFactory(SimpleClientHttpRequestFactory.class);
+        AiEnrichmentService service = service(client, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 300; i++) {
+                    out.write(' ');
+                    out.flush();
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // client gave up
+            }
+        }, Duration.ofMillis(500), 5);
+        
+        long started = System.nanoTime();
+        List<String> customers = customers(service);
+        
+        assertThat(customers).containsExactly("Alice", "Bob");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(5));
+    }
+    
+    private AiEnrichmentService service(RestTemplateBuilder client, HttpHandler engine, Duration timeout,
+                                        int failureThreshold) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/csv/process-csv", engine);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return new AiEnrichmentService(client, new SimpleMeterRegistry(),
+                "http://127.0.0.1:" + server.getAddress().getPort(), true, 100, 4, timeout, 1, Duration.ofMillis(10),
+                failureThreshold, Duration.ofMinutes(1), 100);
+    }
+    
+    private List<String> customers(AiEnrichmentService service) throws IOException {
+        Path file = Files.writeString(dir.resolve("transactions.csv"), CSV);
+        List<String> customers = new ArrayList<>();
+        try (AiEnrichmentService.EnrichedRows rows = service.enrich(file, ',', DataImportService::createTransaction,
+                AiEnrichmentServiceTest::fromEngine)) {
+            rows.forEachRemaining(row -> customers.add(row.getCustomerName()));
+        }
+        return customers;
+    }
+    
+    private static Transaction fromEngine(Map<String, String> row) {
+        Transaction transaction = new Transaction();
+        transaction.setCustomerName("engine:" + row.get("Customer"));
+        return transaction;
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}